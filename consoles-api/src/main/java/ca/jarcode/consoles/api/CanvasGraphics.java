@@ -143,6 +143,91 @@ public interface CanvasGraphics {
 	 */
 	void draw(int x, int y, byte color);
 
+	/**
+	 * Fills the given area with a single color
+	 *
+	 * @param x x position
+	 * @param y y position
+	 * @param w width
+	 * @param h height
+	 * @param color color to fill with
+	 */
+	default void fillRect(int x, int y, int w, int h, byte color) {
+		for (int j = 0; j < h; j++) {
+			for (int i = 0; i < w; i++)
+				draw(x + i, y + j, color);
+		}
+	}
+
+	/**
+	 * Copies an area of row-major pixel data onto the canvas
+	 *
+	 * @param x x position
+	 * @param y y position
+	 * @param src the source pixel data
+	 * @param offset the index of the first pixel in the source array
+	 * @param stride the length of a row in the source array
+	 * @param w width
+	 * @param h height
+	 */
+	default void blit(int x, int y, byte[] src, int offset, int stride, int w, int h) {
+		for (int j = 0; j < h; j++) {
+			for (int i = 0; i < w; i++)
+				draw(x + i, y + j, src[offset + i + (j * stride)]);
+		}
+	}
+
+	/**
+	 * Copies an area of the canvas to another position. The areas may overlap.
+	 *
+	 * @param x x position of the area to copy
+	 * @param y y position of the area to copy
+	 * @param w width
+	 * @param h height
+	 * @param toX x position to copy the area to
+	 * @param toY y position to copy the area to
+	 */
+	default void copyRect(int x, int y, int w, int h, int toX, int toY) {
+		if (w <= 0 || h <= 0)
+			return;
+		// sample the whole area first, so overlapping areas copy correctly
+		byte[] area = new byte[w * h];
+		for (int j = 0; j < h; j++) {
+			for (int i = 0; i < w; i++)
+				area[i + (j * w)] = sample(x + i, y + j);
+		}
+		blit(toX, toY, area, 0, w, w, h);
+	}
+
+	/**
+	 * Shifts the contents of the given area by the given amount, and draws the
+	 * background over the part of the area that was exposed.
+	 *
+	 * @param x x position
+	 * @param y y position
+	 * @param w width
+	 * @param h height
+	 * @param dx amount to shift the contents by on the x axis
+	 * @param dy amount to shift the contents by on the y axis
+	 */
+	default void scroll(int x, int y, int w, int h, int dx, int dy) {
+		int cw = w - Math.abs(dx), ch = h - Math.abs(dy);
+		if (cw <= 0 || ch <= 0) {
+			drawBackground(x, y, w, h);
+			return;
+		}
+		copyRect(x + Math.max(-dx, 0), y + Math.max(-dy, 0), cw, ch, x + Math.max(dx, 0), y + Math.max(dy, 0));
+		// draw the background over the exposed strips
+		if (dy > 0)
+			drawBackground(x, y, w, dy);
+		else if (dy < 0)
+			drawBackground(x, y + h + dy, w, -dy);
+		if (dx > 0)
+			drawBackground(x, y, dx, h);
+		else if (dx < 0)
+			drawBackground(x + w + dx, y, -dx, h);
+	}
+
 	/**
 	 * Draws the given section with the background buffer
 	 *
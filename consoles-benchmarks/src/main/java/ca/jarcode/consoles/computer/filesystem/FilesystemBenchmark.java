@@ -0,0 +1,88 @@
+package ca.jarcode.consoles.computer.filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+Serialization of computer filesystems, which happens for every computer when the
+server saves or shuts down.
+
+Stored files need a running computer to be deserialized (their data lives in separate files),
+so the tree here is made of folders only. This measures the block index and its compression,
+and journaling a single change to the tree (what most saves amount to).
+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FilesystemBenchmark {
+
+	// folders per level of the tree
+	@Param({"4", "8"})
+	public int breadth;
+
+	// empty folders (leaves) in every folder on the last level
+	@Param({"16"})
+	public int leaves;
+
+	private FSFolder root;
+	private byte[] serialized;
+
+	private SerializedFilesystem journal;
+	private FSFolder changed;
+	private boolean writable;
+
+	@Setup
+	public void setup() throws IOException {
+		root = new FSFolder();
+		for (int i = 0; i < breadth; i++) {
+			FSFolder folder = new FSFolder();
+			root.contents.put("dir" + i, folder);
+			for (int j = 0; j < breadth; j++) {
+				FSFolder sub = new FSFolder();
+				folder.contents.put("sub" + j, sub);
+				for (int k = 0; k < leaves; k++)
+					sub.contents.put("leaf" + k, new FSFolder());
+				changed = sub;
+			}
+		}
+		serialized = write();
+		journal = new SerializedFilesystem(null);
+		journal.changes(root);
+	}
+
+	private byte[] write() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		fs.serialize(root);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		fs.writeTo(out);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] serializeAndWrite() throws IOException {
+		return write();
+	}
+
+	@Benchmark
+	public FSBlock readAndDeserialize() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		fs.readFrom(new ByteArrayInputStream(serialized));
+		return fs.deserialize();
+	}
+
+	@Benchmark
+	public byte[] journalOneChange() {
+		writable = !writable;
+		changed.setWritable(FSGroup.ALL, writable);
+		return journal.changes(root);
+	}
+}
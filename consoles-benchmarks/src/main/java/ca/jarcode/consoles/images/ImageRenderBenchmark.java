@@ -0,0 +1,56 @@
+package ca.jarcode.consoles.images;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+RGB to map palette quantization for images.
+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageRenderBenchmark {
+
+	// width and height of the image, in pixels
+	@Param({"128", "512"})
+	public int size;
+
+	@Param({"NONE", "ORDERED", "FLOYD_STEINBERG"})
+	public MapQuantizer.Dither dither;
+
+	private BufferedImage noise, gradient;
+
+	@Setup
+	public void setup() {
+		// build the lookup table outside of the measurements
+		MapQuantizer.prepare();
+		Random random = new Random(0);
+		noise = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		gradient = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				noise.setRGB(x, y, 0xFF000000 | random.nextInt(0xFFFFFF));
+				int c = (x * 255) / size;
+				gradient.setRGB(x, y, 0xFF000000 | (c << 16) | (((y * 255) / size) << 8) | (255 - c));
+			}
+		}
+	}
+
+	@Benchmark
+	public PreparedMapImage renderNoise() {
+		return ImageComponent.render(noise, dither);
+	}
+
+	@Benchmark
+	public PreparedMapImage renderGradient() {
+		return ImageComponent.render(gradient, dither);
+	}
+}
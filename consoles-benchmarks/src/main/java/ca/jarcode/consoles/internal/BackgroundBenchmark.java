@@ -0,0 +1,63 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.api.CanvasGraphics;
+import ca.jarcode.consoles.api.Position2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+
+Background caching, which happens every time a component is added, removed, enabled
+or disabled, and the full background draw that follows it.
+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BackgroundBenchmark {
+
+	// size of the console, in maps
+	@Param({"1", "4"})
+	public int size;
+
+	// amount of components with their own background
+	@Param({"0", "8"})
+	public int components;
+
+	private BenchmarkRenderer renderer;
+	private ConsoleGraphics g;
+
+	@Setup
+	public void setup() {
+		renderer = new BenchmarkRenderer(size, size);
+		int w = renderer.getWidth() / 4, h = renderer.getHeight() / 2;
+		for (int t = 0; t < components; t++) {
+			ConsoleComponent component = new ConsoleComponent(w, h, renderer) {
+				@Override
+				public void paint(CanvasGraphics g, String context) {}
+			};
+			component.setBackground((byte) (t * 4));
+			renderer.putComponent(new Position2D((t % 4) * w, (t / 4) * h), component);
+		}
+		g = renderer.graphics(new ConsoleComponent(renderer.getWidth(), renderer.getHeight(), renderer) {
+			@Override
+			public void paint(CanvasGraphics g, String context) {}
+		});
+	}
+
+	@Benchmark
+	public void cacheBackground() {
+		renderer.recache();
+	}
+
+	@Benchmark
+	public void drawBackground() {
+		// clear the buffer first, so the background is actually written every time
+		g.fillRect(0, 0, renderer.getWidth(), renderer.getHeight(), (byte) 0);
+		g.drawBackground(0, 0, renderer.getWidth(), renderer.getHeight());
+	}
+}
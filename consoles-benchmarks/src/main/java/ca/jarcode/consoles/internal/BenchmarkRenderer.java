@@ -0,0 +1,38 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.api.Position2D;
+
+/*
+
+Stub renderer for benchmarks. There is no server running, so this never creates any
+entities and paints in a single fixed context instead of asking the painter for one.
+
+ */
+public class BenchmarkRenderer extends ConsoleRenderer {
+
+	public static final String CONTEXT = "benchmark";
+
+	public BenchmarkRenderer(int w, int h) {
+		super(w, h);
+	}
+	@Override
+	String getPaintContext() {
+		return CONTEXT;
+	}
+	@Override
+	public void setIdentifier(String identifier) {}
+
+	// painting normally happens through the painter threads, which aren't running here
+	@Override
+	public void repaint() {}
+
+	public ConsoleGraphics graphics(ConsoleComponent component) {
+		return new ConsoleGraphics(this, component, new Position2D(0, 0));
+	}
+	public ConsolePixelBuffer buffer() {
+		return getPixelBuffer();
+	}
+	public void recache() {
+		cacheBackground();
+	}
+}
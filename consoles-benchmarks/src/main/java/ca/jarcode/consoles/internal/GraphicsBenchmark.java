@@ -0,0 +1,65 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.api.CanvasGraphics;
+import ca.jarcode.consoles.util.MonospacedMinecraftFont;
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+
+Text rendering through ConsoleGraphics, which is where terminals and editors spend
+most of their paint time.
+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GraphicsBenchmark {
+
+	private static final String PLAIN = "The quick brown fox jumps over the lazy dog 0123456789";
+	private static final String FORMATTED = ChatColor.RED + "The quick " + ChatColor.GREEN + "brown fox "
+			+ ChatColor.BLUE + "jumps over " + ChatColor.YELLOW + "the lazy dog " + ChatColor.WHITE + "0123456789";
+
+	@Param({"minecraft", "monospaced"})
+	public String font;
+
+	private BenchmarkRenderer renderer;
+	private ConsoleGraphics g;
+	// lines of text that fit on the console
+	private int lines;
+
+	@Setup
+	public void setup() {
+		renderer = new BenchmarkRenderer(4, 3);
+		ConsoleComponent component = new ConsoleComponent(renderer.getWidth(), renderer.getHeight(), renderer) {
+			@Override
+			public void paint(CanvasGraphics g, String context) {}
+		};
+		g = renderer.graphics(component);
+		if (font.equals("monospaced"))
+			g.setFont(MonospacedMinecraftFont.FONT);
+		lines = renderer.getHeight() / 9;
+	}
+
+	@Benchmark
+	public void drawPlainScreen() {
+		// redraw the background so the text is actually written every time
+		g.drawBackground();
+		for (int t = 0; t < lines; t++)
+			g.draw(2, 2 + (t * 9), (byte) 32, PLAIN);
+	}
+
+	@Benchmark
+	public byte drawFormattedScreen() {
+		g.drawBackground();
+		byte color = 32;
+		for (int t = 0; t < lines; t++)
+			color = g.drawFormatted(2, 2 + (t * 9), color, FORMATTED);
+		return color;
+	}
+}
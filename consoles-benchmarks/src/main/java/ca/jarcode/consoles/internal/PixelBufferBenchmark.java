@@ -0,0 +1,65 @@
+package ca.jarcode.consoles.internal;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+
+Raw pixel buffer access. Every drawing operation ends up here, so this is the
+baseline for everything else.
+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PixelBufferBenchmark {
+
+	// size of the console, in maps
+	@Param({"1", "4"})
+	public int size;
+
+	private ConsolePixelBuffer buffer;
+	private int width, height;
+	private byte color = 0;
+
+	@Setup
+	public void setup() {
+		BenchmarkRenderer renderer = new BenchmarkRenderer(size, size);
+		buffer = renderer.buffer();
+		width = renderer.getWidth();
+		height = renderer.getHeight();
+		// make sure the context exists before measuring
+		buffer.set(0, 0, (byte) 1, BenchmarkRenderer.CONTEXT);
+	}
+
+	@Benchmark
+	public void setAll() {
+		// alternate colors so every call actually modifies the buffer
+		color = (byte) (color == 32 ? 119 : 32);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				buffer.set(x, y, color, BenchmarkRenderer.CONTEXT);
+			}
+		}
+	}
+
+	@Benchmark
+	public void getAll(Blackhole hole) {
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				hole.consume(buffer.get(x, y, BenchmarkRenderer.CONTEXT));
+			}
+		}
+	}
+
+	@Benchmark
+	public void fillAll() {
+		color = (byte) (color == 32 ? 119 : 32);
+		buffer.fill(0, 0, width, height, color, BenchmarkRenderer.CONTEXT);
+	}
+}
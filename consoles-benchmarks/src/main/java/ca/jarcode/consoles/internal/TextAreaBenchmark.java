@@ -0,0 +1,57 @@
+package ca.jarcode.consoles.internal;
+
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+
+Word wrapping in ConsoleTextArea, which runs on the main thread for everything that
+is printed to a console or terminal.
+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TextAreaBenchmark {
+
+	private static final String SHORT = "Hello, world!";
+	private static final String WRAPPED = ChatColor.GREEN + "Lorem ipsum dolor sit amet, consectetur adipiscing elit, "
+			+ ChatColor.WHITE + "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim "
+			+ "veniam, quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat.";
+	private static final String UNBROKEN = new String(new char[400]).replace('\0', 'x');
+
+	private BenchmarkRenderer renderer;
+	private ConsoleTextArea area;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		renderer = new BenchmarkRenderer(4, 3);
+		area = ConsoleTextArea.createOver(renderer);
+	}
+
+	@Benchmark
+	public void printShort() {
+		area.println(SHORT);
+	}
+
+	@Benchmark
+	public void printWrapped() {
+		area.println(WRAPPED);
+	}
+
+	@Benchmark
+	public void printUnbroken() {
+		area.println(UNBROKEN);
+	}
+
+	@Benchmark
+	public void printAndPaint() {
+		area.println(WRAPPED);
+		area.paint(renderer.graphics(area), BenchmarkRenderer.CONTEXT);
+	}
+}
@@ -0,0 +1,140 @@
+package ca.jarcode.ascript;
+
+import ca.jarcode.ascript.func.*;
+import ca.jarcode.ascript.interfaces.ScriptValue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+
+A java function that is exposed to scripts, resolved once into a method handle and the
+types of its arguments.
+
+Calls from scripts used to go through Method.invoke (or a chain of instanceof checks for
+lambdas). A binding looks up the method when it is created, so a call only translates the
+arguments it needs (with Script.translate) and invokes the handle.
+
+Bindings are used by the LuaJ engine. Values passed to a binding are not released, that
+is left to the engine.
+
+ */
+public final class JavaBinding {
+
+	// function interfaces that can be bound, their 'call' method is what gets invoked
+	private static final Class<?>[] FUNCTIONS = {
+			NoArgFunc.class, OneArgFunc.class, TwoArgFunc.class, ThreeArgFunc.class, FourArgFunc.class,
+			NoArgVoidFunc.class, OneArgVoidFunc.class, TwoArgVoidFunc.class, ThreeArgVoidFunc.class, FourArgVoidFunc.class
+	};
+
+	// handles for every method that has been bound, taking the instance as the first argument
+	// and with every other type erased to Object
+	private static final Map<Method, MethodHandle> HANDLES = new ConcurrentHashMap<>();
+
+	private final MethodHandle handle;
+	private final Object target;
+	private final Class[] types;
+
+	private JavaBinding(MethodHandle handle, Object target, Class[] types) {
+		this.handle = handle;
+		this.target = target;
+		this.types = types;
+	}
+
+	// binds a method to an instance (the instance is ignored for static methods)
+	public static JavaBinding of(Method method, Object inst) {
+		return new JavaBinding(HANDLES.computeIfAbsent(method, JavaBinding::resolve), inst, method.getParameterTypes());
+	}
+
+	// binds a function from the func package, the types are its resolved argument types
+	public static JavaBinding of(Class[] types, Object func) {
+		for (Class<?> type : FUNCTIONS) {
+			if (type.isInstance(func)) {
+				for (Method method : type.getMethods()) {
+					if (method.getName().equals("call"))
+						return new JavaBinding(HANDLES.computeIfAbsent(method, JavaBinding::resolve), func, types);
+				}
+			}
+		}
+		throw new RuntimeException("Unsupported interface");
+	}
+
+	private static MethodHandle resolve(Method method) {
+		try {
+			method.setAccessible(true);
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			if (Modifier.isStatic(method.getModifiers()))
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			// void methods return null after this
+			return handle.asType(MethodType.genericMethodType(method.getParameterCount() + 1));
+		}
+		catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public int arity() {
+		return types.length;
+	}
+
+	private Object convert(int index, ScriptValue value) {
+		return Script.translate(types[index], value);
+	}
+
+	// calls the function with its arguments taken from the start of the given values, extra
+	// values are ignored (and can be null)
+	public Object call(ScriptValue a1, ScriptValue a2, ScriptValue a3, ScriptValue a4) {
+		try {
+			switch (types.length) {
+				case 0:
+					return (Object) handle.invokeExact(target);
+				case 1:
+					return (Object) handle.invokeExact(target, convert(0, a1));
+				case 2:
+					return (Object) handle.invokeExact(target, convert(0, a1), convert(1, a2));
+				case 3:
+					return (Object) handle.invokeExact(target, convert(0, a1), convert(1, a2), convert(2, a3));
+				case 4:
+					return (Object) handle.invokeExact(target, convert(0, a1),
+							convert(1, a2), convert(2, a3), convert(3, a4));
+				default:
+					throw new IllegalArgumentException("too many parameters: " + types.length);
+			}
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// calls the function with its arguments taken from the given values, for any amount of arguments
+	public Object invoke(ScriptValue[] args) {
+		if (args.length < types.length)
+			throw new IllegalArgumentException("not enough arguments (expected: "
+					+ types.length + ", got: " + args.length + ")");
+		if (types.length <= 4) {
+			return call(args.length > 0 ? args[0] : null, args.length > 1 ? args[1] : null,
+					args.length > 2 ? args[2] : null, args.length > 3 ? args[3] : null);
+		}
+		Object[] arr = new Object[types.length + 1];
+		arr[0] = target;
+		for (int t = 0; t < types.length; t++)
+			arr[t + 1] = convert(t, args[t]);
+		try {
+			return handle.invokeWithArguments(arr);
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -4,15 +4,22 @@ import ca.jarcode.ascript.Joint;
 import ca.jarcode.ascript.interfaces.*;
 import ca.jarcode.ascript.interfaces.ScriptLibrary;
 
-import org.luaj.vm2.Globals;
 import org.luaj.vm2.LoadState;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
 import org.luaj.vm2.compiler.LuaC;
 import org.luaj.vm2.lib.*;
 import org.luaj.vm2.lib.jse.JseBaseLib;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.BooleanSupplier;
 
@@ -25,6 +32,23 @@ public class LuaJEngine implements ScriptEngine {
 
 	private static volatile boolean enabled = false;
 
+	// amount of compiled chunks to keep around
+	private static final int PROTOTYPE_CACHE_SIZE = 256;
+
+	// Compiled chunks, shared between every program. Prototypes are never modified after they
+	// are compiled, so the same prototype can be used to create closures for any amount of
+	// globals (and threads) at once.
+	//
+	// Chunks are keyed by their name and a hash of their source, so editing a program results
+	// in a different key, and the old prototype just falls out of the cache.
+	private static final LinkedHashMap<String, Prototype> PROTOTYPES =
+			new LinkedHashMap<String, Prototype>(64, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Prototype> eldest) {
+					return size() > PROTOTYPE_CACHE_SIZE;
+				}
+			};
+
 	public static void init() {
 		FUNCTION_FACTORY = new LuaJFunctionFactory();
 
@@ -64,7 +88,48 @@ public class LuaJEngine implements ScriptEngine {
 
 	@Override
 	public ScriptValue load(ScriptValue globals, String raw, String path) {
-		return new LuaJScriptValue(((Globals) ((LuaJScriptValue) globals).val).load(raw, path));
+		return new LuaJScriptValue(new LuaClosure(prototype(raw, path), ((LuaJScriptValue) globals).val));
+	}
+
+	// compiles a chunk ahead of time, so the first program that runs it doesn't have to
+	public static void precompile(String raw, String path) {
+		try {
+			prototype(raw, path);
+		}
+		catch (LuaError ignored) {}
+	}
+
+	// returns the compiled chunk for the given source, compiling it if it isn't cached
+	private static Prototype prototype(String raw, String path) {
+		String key = path + ":" + hash(raw);
+		Prototype prototype;
+		synchronized (PROTOTYPES) {
+			prototype = PROTOTYPES.get(key);
+		}
+		if (prototype == null) {
+			// compile outside of the lock, a race only means the chunk is compiled twice
+			try {
+				prototype = LuaC.instance.compile(new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)), path);
+			}
+			catch (IOException e) {
+				throw new LuaError("load " + path + ": " + e);
+			}
+			synchronized (PROTOTYPES) {
+				PROTOTYPES.put(key, prototype);
+			}
+		}
+		return prototype;
+	}
+
+	private static String hash(String raw) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every JVM has to support SHA-256
+			throw new RuntimeException(e);
+		}
 	}
 
 	@Override
@@ -1,12 +1,13 @@
 package ca.jarcode.ascript.luaj;
 
+import ca.jarcode.ascript.JavaBinding;
 import ca.jarcode.ascript.Script;
 import ca.jarcode.ascript.interfaces.FunctionFactory;
 import ca.jarcode.ascript.interfaces.ScriptFunction;
+import ca.jarcode.ascript.interfaces.ScriptValue;
 import org.luaj.vm2.*;
 import org.luaj.vm2.lib.*;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 public class LuaJFunctionFactory implements FunctionFactory {
@@ -17,161 +18,65 @@ public class LuaJFunctionFactory implements FunctionFactory {
 	}
 
 	public LibFunction prepFunction(Class[] types, Object func) {
-		if (types.length == 1)
-			return new OneArgFunction() {
-
-				@Override
-				public LuaValue call(LuaValue v1) {
-					return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-							new LuaJScriptValue(v1)
-					))).val;
-				}
-			};
-		else if (types.length == 2)
-			return new TwoArgFunction() {
-
-				@Override
-				public LuaValue call(LuaValue v1, LuaValue v2) {
-					return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-							new LuaJScriptValue(v1),
-							new LuaJScriptValue(v2)
-					))).val;
-				}
-			};
-		else if (types.length == 3)
-			return new ThreeArgFunction() {
-
-				@Override
-				public LuaValue call(LuaValue v1, LuaValue v2, LuaValue v3) {
-					return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-							new LuaJScriptValue(v1),
-							new LuaJScriptValue(v2),
-							new LuaJScriptValue(v3)
-					))).val;
-				}
-			};
-		else if (types.length == 0)
-			return new ZeroArgFunction() {
-				@Override
-				public LuaValue call() {
-					return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types))).val;
-				}
-			};
-
-		return new LibFunction() {
-			@Override
-			public LuaValue call() {
-				return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types))).val;
-			}
-
-			@Override
-			public LuaValue call(LuaValue v1) {
-				return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-						new LuaJScriptValue(v1)
-				))).val;
-			}
-
-			@Override
-			public LuaValue call(LuaValue v1, LuaValue v2) {
-				return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-						new LuaJScriptValue(v1),
-						new LuaJScriptValue(v2)
-				))).val;
-			}
-
-			@Override
-			public LuaValue call(LuaValue v1, LuaValue v2, LuaValue v3) {
-				return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-						new LuaJScriptValue(v1),
-						new LuaJScriptValue(v2),
-						new LuaJScriptValue(v3)
-				))).val;
-			}
-
-			@Override
-			public LuaValue call(LuaValue v1, LuaValue v2, LuaValue v3, LuaValue v4) {
-				return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types,
-						new LuaJScriptValue(v1),
-						new LuaJScriptValue(v2),
-						new LuaJScriptValue(v3),
-						new LuaJScriptValue(v4)
-				))).val;
-			}
-
-			@Override
-			public LuaValue invoke(Varargs value) {
-				Object[] total = new Object[types.length];
-				for (int t = 0; t < types.length; t++) {
-					total[t] = Script.translateAndRelease(types[t], new LuaJScriptValue(value.arg(t)));
-				}
-				return ((LuaJScriptValue) Script.translateToScriptValue(Script.callAndRelease(func, types, total))).val;
-			}
-		};
+		return new BoundFunction(JavaBinding.of(types, func));
 	}
 
 	@Override
 	public ScriptFunction createFunction(Method m, Object inst) {
-		Class[] types = m.getParameterTypes();
-		return new LuaJScriptFunction(new LibFunction() {
-			@Override
-			public LuaValue call() {
-				try {
-					return ((LuaJScriptValue) Script.translateToScriptValue(m.invoke(inst)))
-							.val;
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					throw new LuaError(e);
-				}
-			}
-
-			@Override
-			public LuaValue call(LuaValue v) {
-				try {
-					return ((LuaJScriptValue) Script.translateToScriptValue(m.invoke(inst, Script.toJavaAndRelease(types,
-							new LuaJScriptValue(v)
-					)))).val;
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					throw new LuaError(e);
-				}
-			}
-
-			@Override
-			public LuaValue call(LuaValue v, LuaValue v1) {
-				try {
-					return ((LuaJScriptValue) Script.translateToScriptValue(m.invoke(inst, Script.toJavaAndRelease(types,
-							new LuaJScriptValue(v),
-							new LuaJScriptValue(v1)
-					)))).val;
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					throw new LuaError(e);
-				}
-			}
-
-			@Override
-			public LuaValue call(LuaValue v, LuaValue v1, LuaValue v2) {
-				try {
-					return ((LuaJScriptValue) Script.translateToScriptValue(m.invoke(inst, Script.toJavaAndRelease(types,
-							new LuaJScriptValue(v),
-							new LuaJScriptValue(v1),
-							new LuaJScriptValue(v2)
-					)))).val;
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					throw new LuaError(e);
-				}
-			}
-
-			@Override
-			public LuaValue call(LuaValue v, LuaValue v1, LuaValue v2, LuaValue v3) {
-				try {
-					return ((LuaJScriptValue) Script.translateToScriptValue(m.invoke(inst, Script.toJavaAndRelease(types,
-							new LuaJScriptValue(v),
-							new LuaJScriptValue(v1),
-							new LuaJScriptValue(v2),
-							new LuaJScriptValue(v3)
-					)))).val;
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					throw new LuaError(e);
-				}
-			}
-		});
+		return new LuaJScriptFunction(new BoundFunction(JavaBinding.of(m, inst)));
+	}
+
+	// Missing arguments are passed as nil, and extra arguments are ignored. Values are only
+	// wrapped for the arguments that the binding actually takes.
+	private static final class BoundFunction extends LibFunction {
+
+		private final JavaBinding binding;
+
+		BoundFunction(JavaBinding binding) {
+			this.binding = binding;
+		}
+
+		@Override
+		public LuaValue call() {
+			return call(NIL, NIL, NIL, NIL);
+		}
+
+		@Override
+		public LuaValue call(LuaValue v1) {
+			return call(v1, NIL, NIL, NIL);
+		}
+
+		@Override
+		public LuaValue call(LuaValue v1, LuaValue v2) {
+			return call(v1, v2, NIL, NIL);
+		}
+
+		@Override
+		public LuaValue call(LuaValue v1, LuaValue v2, LuaValue v3) {
+			return call(v1, v2, v3, NIL);
+		}
+
+		@Override
+		public LuaValue call(LuaValue v1, LuaValue v2, LuaValue v3, LuaValue v4) {
+			return result(binding.call(wrap(0, v1), wrap(1, v2), wrap(2, v3), wrap(3, v4)));
+		}
+
+		@Override
+		public Varargs invoke(Varargs args) {
+			if (binding.arity() <= 4)
+				return call(args.arg(1), args.arg(2), args.arg(3), args.arg(4));
+			ScriptValue[] arr = new ScriptValue[binding.arity()];
+			for (int t = 0; t < arr.length; t++)
+				arr[t] = new LuaJScriptValue(args.arg(t + 1));
+			return result(binding.invoke(arr));
+		}
+
+		private ScriptValue wrap(int index, LuaValue value) {
+			return index < binding.arity() ? new LuaJScriptValue(value) : null;
+		}
+
+		private static LuaValue result(Object ret) {
+			return ((LuaJScriptValue) Script.translateToScriptValue(ret)).val;
+		}
 	}
 }
@@ -2,6 +2,7 @@ package ca.jarcode.consoles;
 
 import ca.jarcode.ascript.Joint;
 import ca.jarcode.consoles.api.Position2D;
+import ca.jarcode.consoles.computer.ComputerData;
 import ca.jarcode.consoles.computer.ComputerHandler;
 import ca.jarcode.consoles.computer.GeneralListener;
 import ca.jarcode.consoles.computer.MapDataStore;
@@ -21,6 +22,7 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -60,6 +62,8 @@ public class Computers extends JavaPlugin {
 	public static String scriptEngine = "luajit";
 	// amount of instructions to wait before checking
 	public static int interruptCheckInterval = 200;
+	// memory (in megabytes) that map sections are allowed to use before they are paged out
+	public static int mapMemoryBudget = 32;
 	// debug mode
 	public static boolean debug = false;
 	// debug hook
@@ -116,6 +120,7 @@ public class Computers extends JavaPlugin {
 		scriptHeapSize = getConfig().getInt("script-heap-size", scriptHeapSize);
 		scriptEngine = getConfig().getString("script-engine", scriptEngine).toLowerCase();
 		interruptCheckInterval = getConfig().getInt("interrupt-check-interval", interruptCheckInterval);
+		mapMemoryBudget = getConfig().getInt("map-memory-budget", mapMemoryBudget);
 		debug = getConfig().getBoolean("debug-mode", debug);
 		debugHook = getConfig().getBoolean("debug-hook", debugHook);
 		debugHookCommand = getConfig().getString("debug-command", debugHookCommand);
@@ -181,6 +186,12 @@ public class Computers extends JavaPlugin {
 
 		engines.get(scriptEngine).run();
 
+		// compile the provided programs now, instead of when someone first runs them
+		if (scriptEngine.equals("luaj")) {
+			for (Map.Entry<String, String> entry : LuaDefaults.SCRIPTS.entrySet())
+				LuaJEngine.precompile(entry.getValue(), "/" + entry.getKey());
+		}
+
 		MapDataStore.init(this);
 
 		register(ComputerHandler::new, GeneralListener::new);
@@ -227,6 +238,8 @@ public class Computers extends JavaPlugin {
 
 	public void onDisable() {
 		Script.killAll = true;
+		// saves made after this (when the plugin disable event is handled) are written on the main thread
+		ComputerData.shutdown();
 	}
 
 	private void register(Supplier... suppliers) {
@@ -0,0 +1,135 @@
+package ca.jarcode.consoles.computer;
+
+import ca.jarcode.consoles.api.nms.MapInternals;
+import ca.jarcode.consoles.util.LongHashMap;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+
+Chunk snapshots for rendering map sections off the main thread.
+
+Taking a snapshot copies the whole chunk, so snapshots are kept around and reused for
+later updates around the same area. Block events invalidate the snapshot for their
+chunk, and snapshots are retaken after a while to pick up any other changes (liquids,
+explosions, growth, etc).
+
+Only a few snapshots are taken per tick. Chunks that have no snapshot yet are taken first,
+closest to the update first, and the rest of the budget retakes the oldest snapshots. Chunks
+that don't fit in the budget are left out of the update (or are rendered from their old
+snapshot), and are picked up by later updates. Since retaking is spread out like this, the
+snapshots of an area don't all expire at the same time.
+
+This class is only used from the main thread. The sources it returns are immutable,
+and can be read from any thread.
+
+ */
+class ChunkSnapshotCache {
+
+	// snapshots older than this are retaken
+	private static final long SNAPSHOT_TTL = 30000;
+	// map updates reach 128 blocks out, plus up to 8 blocks for the pixel size at the largest scale
+	private static final int RADIUS = 128 + 8;
+	// snapshots that can be taken per tick, across all worlds
+	private static final int TICK_BUDGET = 16;
+
+	private static int budget = TICK_BUDGET;
+
+	private static final class Entry {
+		final ChunkSnapshot snapshot;
+		final long time;
+		Entry(ChunkSnapshot snapshot, long time) {
+			this.snapshot = snapshot;
+			this.time = time;
+		}
+	}
+
+	private final World world;
+	private final LongHashMap<Entry> entries = new LongHashMap<>();
+
+	ChunkSnapshotCache(World world) {
+		this.world = world;
+	}
+
+	// must be called every tick
+	static void tick() {
+		budget = TICK_BUDGET;
+	}
+
+	// global block coordinates
+	void invalidate(int x, int z) {
+		invalidateChunk(x >> 4, z >> 4);
+	}
+
+	void invalidateChunk(int chunkX, int chunkZ) {
+		entries.remove(LongHashMap.key(chunkX, chunkZ));
+	}
+
+	// captures the loaded chunks around an update position (in global block coordinates)
+	MapInternals.ChunkSource capture(int x, int z) {
+		long now = System.currentTimeMillis();
+		LongHashMap<ChunkSnapshot> area = new LongHashMap<>();
+		List<Long> missing = new ArrayList<>();
+		List<Long> expired = new ArrayList<>();
+		for (int cx = (x - RADIUS) >> 4; cx <= (x + RADIUS) >> 4; cx++) {
+			for (int cz = (z - RADIUS) >> 4; cz <= (z + RADIUS) >> 4; cz++) {
+				// the update only reaches chunks in a circle around it, skip the corners
+				int dx = Math.max(Math.max((cx << 4) - x, x - ((cx << 4) + 15)), 0);
+				int dz = Math.max(Math.max((cz << 4) - z, z - ((cz << 4) + 15)), 0);
+				if (dx * dx + dz * dz > RADIUS * RADIUS)
+					continue;
+				long key = LongHashMap.key(cx, cz);
+				// never load chunks for the map
+				if (!world.isChunkLoaded(cx, cz)) {
+					entries.remove(key);
+					continue;
+				}
+				Entry entry = entries.get(key);
+				if (entry == null) {
+					missing.add(key);
+					continue;
+				}
+				area.put(key, entry.snapshot);
+				if (now - entry.time > SNAPSHOT_TTL)
+					expired.add(key);
+			}
+		}
+		missing.sort(Comparator.comparingLong(key -> distance(key, x, z)));
+		expired.sort(Comparator.comparingLong(key -> entries.get(key).time));
+		for (List<Long> keys : Arrays.asList(missing, expired)) {
+			for (long key : keys) {
+				if (budget == 0)
+					break;
+				budget--;
+				ChunkSnapshot snapshot = world.getChunkAt(LongHashMap.keyX(key), LongHashMap.keyZ(key))
+						.getChunkSnapshot();
+				entries.put(key, new Entry(snapshot, now));
+				area.put(key, snapshot);
+			}
+		}
+		// drop expired snapshots outside of this area once the cache holds a lot more than the area
+		if (entries.size() > area.size() * 2) {
+			for (long key : entries.keys()) {
+				if (!area.containsKey(key) && now - entries.get(key).time > SNAPSHOT_TTL)
+					entries.remove(key);
+			}
+		}
+		return (cx, cz) -> area.get(LongHashMap.key(cx, cz));
+	}
+
+	// squared distance from the middle of a chunk to a block position
+	private static long distance(long key, int x, int z) {
+		long dx = (LongHashMap.keyX(key) << 4) + 8 - x;
+		long dz = (LongHashMap.keyZ(key) << 4) + 8 - z;
+		return dx * dx + dz * dz;
+	}
+
+	void clear() {
+		entries.clear();
+	}
+}
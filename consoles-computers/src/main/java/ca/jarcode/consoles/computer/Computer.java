@@ -26,17 +26,18 @@ import org.bukkit.block.CommandBlock;
 import org.bukkit.entity.Player;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static ca.jarcode.consoles.Lang.lang;
 
@@ -59,6 +60,16 @@ public abstract class Computer implements Runnable {
 
 	private FSFolder root = new FSFolder();
 
+	// contents of stored files that were read recently
+	private final StoredFileCache fileCache = new StoredFileCache();
+
+	// the state of the filesystem on disk, so saves only have to write what changed
+	private SerializedFilesystem serialized = null;
+
+	// saves are written one at a time, in the order they were captured
+	private final SaveChain saves = new SaveChain();
+	private volatile boolean destroyed = false;
+
 	private final ConsoleComponent[] feeds = new ConsoleComponent[8];
 
 	private int componentIndex = -1;
@@ -192,16 +203,17 @@ public abstract class Computer implements Runnable {
 	private interface BlockCreator {
 		boolean create(File file) throws IOException;
 	}
-	public void load(File file) throws IOException {
+	public void load(File file, File journal) throws IOException {
 		try {
 			// create kernel instance for loading fs
 			kernel = Kernel.install(Computer.this);
 			// create instance
 			SerializedFilesystem fs = new SerializedFilesystem(this);
-			// map out serialized file tree
-			fs.readFrom(new FileInputStream(file));
+			// map out serialized file tree, with the changes from the journal
+			fs.load(file, journal);
 			// call block serializers
 			root = (FSFolder) fs.deserialize();
+			serialized = fs;
 		} catch (Exception e) {
 			if (e instanceof IOException)
 				throw (IOException) e;
@@ -277,13 +289,36 @@ public abstract class Computer implements Runnable {
 				term.doAfter(startup); // schedule our startup task to run after the init program
 		}, 10);
 	}
+	// saves the computer, and waits until it's written
 	public void save() {
-		try {
-			new ComputerData(this).save();
-		} catch (IOException e) {
-			Computers.getInstance().getLogger().severe(lang.getString("computer-save-fail"));
-			e.printStackTrace();
-		}
+		saves.save(after -> ComputerData.save(this, after)).join();
+	}
+	// Captures the computer's state and writes it in the background. If the last save is still being
+	// written, this one is held back and done once the last one is finished, instead of queueing up
+	// saves behind a slow disk.
+	public void saveAsync() {
+		CompletableFuture<Void> save = saves.saveIfIdle(after -> ComputerData.save(this, after));
+		if (save != null)
+			retryHeldBack(save);
+	}
+	// once the given save is done, does the save that was held back while it was written (if any)
+	private void retryHeldBack(CompletableFuture<Void> save) {
+		save.thenRun(() -> {
+			if (Computers.getInstance().isEnabled())
+				Bukkit.getScheduler().runTask(Computers.getInstance(), () -> {
+					if (saves.takePending() && !destroyed)
+						saveAsync();
+				});
+		});
+	}
+	// chains a task after the last save (without waiting for it), saves that are captured after this
+	// are written once the task is done
+	protected void afterSaves(Function<CompletableFuture<Void>, CompletableFuture<Void>> task) {
+		retryHeldBack(saves.then(task));
+	}
+	// waits for the last save to be written
+	public void awaitSave() {
+		saves.last().join();
 	}
 	private void printAfter(final String text, long delay) {
 		Bukkit.getScheduler().scheduleSyncDelayedTask(Computers.getInstance(), () -> {
@@ -376,6 +411,7 @@ public abstract class Computer implements Runnable {
 	// ALL cleanup should be done in here
 	// turns out we don't actually have to do much.
 	public void destroy(boolean delete) {
+		destroyed = true;
 		console.remove();
 		if (taskId != -1)
 			Bukkit.getScheduler().cancelTask(taskId);
@@ -388,6 +424,14 @@ public abstract class Computer implements Runnable {
 	public FSFolder getRoot() {
 		return root;
 	}
+	public StoredFileCache getFileCache() {
+		return fileCache;
+	}
+	public SerializedFilesystem getSerializedFilesystem() {
+		if (serialized == null)
+			serialized = new SerializedFilesystem(this);
+		return serialized;
+	}
 	public String getHostname() {
 		return hostname;
 	}
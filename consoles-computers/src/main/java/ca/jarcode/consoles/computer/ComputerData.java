@@ -16,17 +16,32 @@ import org.bukkit.Location;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static ca.jarcode.consoles.Lang.lang;
+
 // this class represents a serialized computer
 public class ComputerData {
 
 	private static final Gson GSON;
 
+	// computers are written to disk on these threads. When the queue is full, or the threads have
+	// been shut down, saves are written on the thread that captured them instead.
+	private static final ExecutorService IO = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(128), (runnable) -> {
+		Thread thread = new Thread(runnable, "Computer I/O");
+		thread.setDaemon(true);
+		return thread;
+	}, (runnable, executor) -> runnable.run());
+
 	static File computerFolder;
 
 
@@ -37,6 +52,7 @@ public class ComputerData {
 	//   |
 	//    -- header.json (file - fields from this class)
 	//    -- fs.dat (file - serialized filesystem)
+	//    -- fs.journal (file - changes to the filesystem since fs.dat was written)
 	//    -- metadata.dat (file - serialized ConsoleMeta)
 	static void init(){
 		Plugin plugin = Computers.getInstance();
@@ -63,9 +79,11 @@ public class ComputerData {
 				.create();
 	}
 
-	private transient Computer computer;
+	private transient SerializedFilesystem files;
+	private transient SerializedFilesystem.Changes changes;
 
 	private transient File filesystem;
+	private transient File journal;
 	private transient ConsoleMeta meta;
 	private transient String hostname;
 
@@ -85,6 +103,7 @@ public class ComputerData {
 			return null;
 		data.meta = readMetadata(new FileInputStream(metadata));
 		data.filesystem = fs;
+		data.journal = new File(folder.getAbsolutePath() + File.separator + "fs.journal");
 		data.hostname = folder.getName();
 		return data;
 	}
@@ -109,11 +128,17 @@ public class ComputerData {
 		return folder.exists() && folder.renameTo(new File(computerFolder.getAbsolutePath() + File.separator + hostname));
 	}
 
-	private static void makeFiles(File... files) throws IOException {
-		for (File file : files) {
-			if (!file.exists() && !file.createNewFile())
-				throw new IOException("failed to create file: " + file.getAbsolutePath());
-		}
+	// renames a computer on the I/O threads once the given save is done. Like a save, the
+	// returned future always completes normally.
+	static CompletableFuture<Void> rename(String old, String hostname, CompletableFuture<Void> after) {
+		return after.thenRunAsync(() -> {
+			try {
+				rename(old, hostname);
+			}
+			catch (Throwable e) {
+				e.printStackTrace();
+			}
+		}, IO);
 	}
 
 	private static void validateFiles(File... files) throws IOException {
@@ -212,12 +237,49 @@ public class ComputerData {
 	}
 
 	public ComputerData() {}
+	// captures the state of the computer, which can then be saved from any thread
 	public ComputerData(Computer computer) {
-		this.computer = computer;
 		hostname = computer.getHostname();
 		owner = computer.getOwner();
 		meta = computer.getConsole().createMeta();
+		files = computer.getSerializedFilesystem();
+		changes = files.capture(computer.getRoot(), new File(computerFolder.getAbsolutePath()
+				+ File.separator + hostname + File.separator + "fs.dat"));
+	}
+
+	// captures the computer's state on this thread, and writes it on the I/O threads once the
+	// given save is done. The returned save always completes normally.
+	static CompletableFuture<Void> save(Computer computer, CompletableFuture<Void> after) {
+		long start = System.nanoTime();
+		ComputerData data = new ComputerData(computer);
+		long capture = System.nanoTime() - start;
+		return after.thenRunAsync(() -> {
+			long write = System.nanoTime();
+			try {
+				data.save();
+				if (Computers.debug)
+					Computers.getInstance().getLogger().info(String.format(lang.getString("computer-save-time"),
+							data.hostname, capture / 1000000D, (System.nanoTime() - write) / 1000000D));
+			}
+			catch (Throwable e) {
+				Computers.getInstance().getLogger().severe(lang.getString("computer-save-fail"));
+				e.printStackTrace();
+			}
+		}, IO);
+	}
+
+	// waits for the saves that are being written, and stops the I/O threads
+	public static void shutdown() {
+		IO.shutdown();
+		try {
+			if (!IO.awaitTermination(30, TimeUnit.SECONDS))
+				Computers.getInstance().getLogger().severe(lang.getString("computer-save-fail"));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
+
 	// if this ComputerData object was created from a computer, this method is used to
 	// save everything to file.
 	public void save() throws IOException {
@@ -227,19 +289,46 @@ public class ComputerData {
 		File header = new File(folder.getAbsolutePath() + File.separator + "header.json");
 		File fs = new File(folder.getAbsolutePath() + File.separator + "fs.dat");
 		File metadata = new File(folder.getAbsolutePath() + File.separator + "metadata.dat");
-		makeFiles(header, fs, metadata);
-		writeMetadata(new FileOutputStream(metadata), meta);
-		SerializedFilesystem files = new SerializedFilesystem(computer);
-		files.serialize();
-		files.writeTo(new FileOutputStream(fs));
-		FileWriter writer = new FileWriter(header);
-		writer.write(GSON.toJson(this, ComputerData.class));
-		writer.close();
+		File journal = new File(folder.getAbsolutePath() + File.separator + "fs.journal");
+		replace(metadata, (out) -> writeMetadata(out, meta));
+		files.write(changes, fs, journal);
+		// the header goes last, computers are only loaded once they have one
+		replace(header, (out) -> {
+			Writer writer = new OutputStreamWriter(out);
+			writer.write(GSON.toJson(this, ComputerData.class));
+			writer.close();
+		});
+	}
+
+	@FunctionalInterface
+	private interface FileWriteTask {
+		void write(OutputStream out) throws IOException;
+	}
+
+	// writes to a temporary file and then renames it over the target, so the target is never left half-written
+	private static void replace(File target, FileWriteTask task) throws IOException {
+		File temp = new File(target.getAbsolutePath() + ".tmp");
+		try {
+			try (FileOutputStream out = new FileOutputStream(temp)) {
+				task.write(out);
+			}
+			try {
+				Files.move(temp.toPath(), target.toPath(),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			if (temp.exists())
+				temp.delete();
+		}
 	}
 	// if this ComputerData object was created from a folder, this creates the computer
 	public ManagedComputer toComputer(boolean create) throws IOException {
 		ManagedComputer computer = new ManagedComputer(hostname, owner, meta.createConsole());
-		computer.load(filesystem);
+		computer.load(filesystem, journal);
 		if (create) try {
 			computer.create(meta.face, meta.location);
 		} catch (ConsoleCreateException e) {
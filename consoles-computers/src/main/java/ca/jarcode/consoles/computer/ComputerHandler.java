@@ -373,10 +373,14 @@ public class ComputerHandler implements Listener {
 		}
 	}
 
+	// captures all computers on the main thread, and writes them in the background
 	public void saveAll() {
+		saveComputers(Computer::saveAsync);
+	}
+	private void saveComputers(Consumer<Computer> save) {
 		if (!Computers.hideSaveMessages)
 			Computers.getInstance().getLogger().info(lang.getString("saving-computers"));
-		long count = computers.stream().peek(Computer::save).count();
+		long count = computers.stream().peek(save).count();
 		if (!Computers.hideSaveMessages)
 			Computers.getInstance().getLogger().info(String.format(lang.getString("saved-computers"), count));
 	}
@@ -396,7 +400,8 @@ public class ComputerHandler implements Listener {
 	@EventHandler
 	public void saveAll(PluginDisableEvent e) {
 		if (e.getPlugin() == Computers.getInstance()) {
-			saveAll();
+			// the server is stopping, so wait for everything to be written
+			saveComputers(Computer::save);
 		}
 	}
 
@@ -1,5 +1,7 @@
 package ca.jarcode.consoles.computer;
 
+import ca.jarcode.consoles.internal.ConsoleFeed;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -10,72 +12,222 @@ import java.util.List;
 
 Input stream that can produce output streams that write to it.
 
-This needs to be optimized into an n-dimensional array, or something. Having
-the ability to re-allocate memory at specific addressed is something I really
-miss about programming in C.
+Data is kept in a circular buffer that grows as needed, so reads and writes are just
+array copies. Once the amount of unread data reaches the limit, writers wait (up to
+the write timeout) for the reader to catch up. If the reader doesn't, the buffer grows
+past the limit anyway, so a writer can't be stuck on a reader that went away. Writes
+after that grow the buffer right away, until the reader brings it back under the limit.
+A write timeout of 0 never waits, which is what streams written to from the main thread use.
+
+Ending the stream (with end(), or by writing -1 through write(int)) lets the reader
+read what is left, and then -1. Closing the stream (the reader side) drops anything
+left in the buffer, and writes after that are discarded.
 
  */
-public class LinkedStream extends InputStream {
+public class LinkedStream extends InputStream implements ConsoleFeed.TimedInput {
+
+	// bytes that can be buffered before writers have to wait
+	public static final int DEFAULT_LIMIT = 64 * 1024;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final int limit;
+	private final long writeTimeout;
+
+	private byte[] buffer = new byte[INITIAL_CAPACITY];
+	// position of the first unread byte, and the amount of unread bytes
+	private int head = 0;
+	private int count = 0;
+	// set when a writer timed out waiting for the reader, cleared once the reader catches up
+	private boolean stalled = false;
 
-	byte[] buffer = new byte[0];
 	public volatile boolean end = false;
+	private volatile boolean closed = false;
 	private List<Runnable> onClose = new ArrayList<>();
 
+	public LinkedStream() {
+		this(DEFAULT_LIMIT, 0);
+	}
+
+	public LinkedStream(int limit, long writeTimeout) {
+		this.limit = limit;
+		this.writeTimeout = writeTimeout;
+	}
+
 	@Override
 	public int read() throws IOException {
+		synchronized (this) {
+			if (!await(0))
+				return -1;
+			int b = buffer[head] & 0xFF;
+			consumed(1);
+			return b;
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = read(b, off, len, 0);
+		// only happens if we were interrupted
+		return read == 0 && len > 0 ? -1 : read;
+	}
+
+	// reads whatever is buffered (up to len bytes), waiting at most 'timeout' milliseconds for
+	// data to arrive (0 waits until there is data). Returns 0 if nothing arrived in time, and
+	// -1 if the stream has ended.
+	@Override
+	public int read(byte[] b, int off, int len, long timeout) {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if (len == 0)
+			return 0;
+		synchronized (this) {
+			if (!await(timeout))
+				return end || closed ? -1 : 0;
+			int n = Math.min(len, count);
+			int first = Math.min(n, buffer.length - head);
+			System.arraycopy(buffer, head, b, off, first);
+			System.arraycopy(buffer, 0, b, off + first, n - first);
+			consumed(n);
+			return n;
+		}
+	}
+
+	// waits until there is data to read, returns false if the stream ended (or was interrupted) first
+	private boolean await(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
 		try {
-			while (!end && buffer.length == 0) {
-				synchronized (this) {
-					this.wait();
+			while (count == 0 && !end && !closed) {
+				if (timeout == 0)
+					wait();
+				else {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0)
+						return false;
+					wait(remaining);
 				}
 			}
-			if (end && buffer.length == 0) return -1;
-			synchronized (this) {
-				byte b = buffer[0];
-				advance();
-				return b;
-			}
 		}
 		catch (InterruptedException e) {
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return count > 0;
+	}
+
+	private void consumed(int n) {
+		head = (head + n) % buffer.length;
+		count -= n;
+		if (count < limit)
+			stalled = false;
+		if (count == 0) {
+			head = 0;
+			// let go of memory from a burst of output
+			if (buffer.length > limit)
+				buffer = new byte[INITIAL_CAPACITY];
 		}
-		//TODO: handle this
-		return -1;
+		notifyAll();
 	}
+
 	public void end() {
-		end = true;
+		synchronized (this) {
+			end = true;
+			notifyAll();
+		}
 	}
+
+	// writes a single byte, -1 ends the stream
 	public void add(int b) {
 		synchronized (this) {
-			if (b == - 1) {
+			if (b == -1) {
 				end();
-				this.notify();
 				return;
 			}
-			byte[] old = buffer.clone();
-			buffer = new byte[old.length + 1];
-			System.arraycopy(old, 0, buffer, 0, old.length);
-			buffer[old.length] = (byte) b;
-			this.notify();
+			if (reserve(1) == 0)
+				return;
+			buffer[(head + count) % buffer.length] = (byte) b;
+			count++;
+			notifyAll();
+		}
+	}
+
+	public void write(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		synchronized (this) {
+			while (len > 0) {
+				int n = reserve(len);
+				if (n == 0)
+					return;
+				int tail = (head + count) % buffer.length;
+				int first = Math.min(n, buffer.length - tail);
+				System.arraycopy(b, off, buffer, tail, first);
+				System.arraycopy(b, off + first, buffer, 0, n - first);
+				count += n;
+				off += n;
+				len -= n;
+				notifyAll();
+			}
 		}
 	}
+
+	// makes room for up to 'wanted' bytes, returns how many can be written (0 if they should be discarded)
+	private int reserve(int wanted) {
+		boolean full = count >= limit && !awaitSpace();
+		if (end || closed)
+			return 0;
+		// if the reader didn't make space in time, grow past the limit
+		int n = full ? wanted : Math.min(wanted, limit - count);
+		if (count + n > buffer.length) {
+			byte[] grown = new byte[Math.max(count + n, buffer.length * 2)];
+			int first = Math.min(count, buffer.length - head);
+			System.arraycopy(buffer, head, grown, 0, first);
+			System.arraycopy(buffer, 0, grown, first, count - first);
+			buffer = grown;
+			head = 0;
+		}
+		return n;
+	}
+
+	// waits for the reader to bring the buffer under the limit, returns false on timeout
+	private boolean awaitSpace() {
+		// the reader already kept a writer waiting, don't wait on it again until it catches up
+		if (stalled)
+			return false;
+		long deadline = System.currentTimeMillis() + writeTimeout;
+		try {
+			while (count >= limit && !end && !closed) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					stalled = true;
+					return false;
+				}
+				wait(remaining);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
 	public void registerCloseListener(Runnable runnable) {
 		onClose.add(runnable);
 	}
 	@Override
 	public synchronized int available() {
-		return buffer.length + (end ? 1 : 0);
+		return count + (end || closed ? 1 : 0);
 	}
 	@Override
 	public void close() {
-		onClose.forEach(Runnable::run);
-	}
-	private void advance() {
 		synchronized (this) {
-			byte[] old = buffer.clone();
-			buffer = new byte[old.length - 1];
-			System.arraycopy(old, 1, buffer, 0, old.length - 1);
+			closed = true;
+			count = 0;
+			head = 0;
+			notifyAll();
 		}
+		onClose.forEach(Runnable::run);
 	}
 	public OutputStream createOutput() {
 		return new OutputStream() {
@@ -83,6 +235,11 @@ public class LinkedStream extends InputStream {
 			public void write(int b) throws IOException {
 				add(b);
 			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				LinkedStream.this.write(b, off, len);
+			}
 		};
 	}
 }
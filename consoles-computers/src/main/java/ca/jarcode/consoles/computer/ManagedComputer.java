@@ -22,6 +22,8 @@ public class ManagedComputer extends Computer {
 		super.destroy(delete);
 		if (!delete)
 			save();
+		// don't let a save that's still being written recreate the files after they're deleted
+		else awaitSave();
 		ComputerHandler.getInstance().unregister(this, delete);
 	}
 
@@ -31,7 +33,9 @@ public class ManagedComputer extends Computer {
 			return false;
 		String old = getHostname();
 		super.setHostname(hostname);
-		ComputerData.rename(old, hostname);
+		// saves that were captured under the old name are written to the old folder first, or they
+		// would recreate it (and the changes in them were already taken from the filesystem)
+		afterSaves(after -> ComputerData.rename(old, hostname, after));
 		return true;
 	}
 }
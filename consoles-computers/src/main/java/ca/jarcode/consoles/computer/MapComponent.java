@@ -9,7 +9,6 @@ import ca.jarcode.consoles.internal.ConsoleComponent;
 import ca.jarcode.consoles.internal.InputComponent;
 import ca.jarcode.consoles.util.Allocation;
 import ca.jarcode.consoles.util.InstanceListener;
-import ca.jarcode.consoles.api.Position2D;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
@@ -17,11 +16,11 @@ import org.bukkit.entity.Player;
 import org.bukkit.map.MapFont;
 import org.bukkit.map.MinecraftFont;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class MapComponent extends ConsoleComponent implements InputComponent {
 
@@ -233,27 +232,37 @@ public class MapComponent extends ConsoleComponent implements InputComponent {
 				g.drawBackground(0, 0, windowWidth, windowHeight);
 				resetBuffer.add(context);
 			}
-			List<Allocation> list = store.map.entrySet().stream()
-					.filter(entry -> new Allocation(entry.getKey().getX(),
-							entry.getKey().getY(), sectionSize, sectionSize).overlap(view))
-					.peek(entry -> render(g, entry.getValue(),
-							(entry.getKey().getX() - view.x) >> scale,
-							(entry.getKey().getY() - view.z) >> scale,
-							(point) -> point.getY() < windowHeight && point.getX() < windowWidth))
-					.map(entry -> new Allocation((entry.getKey().getX() - view.x) >> scale,
-							(entry.getKey().getY() - view.z) >> scale, sectionSize, sectionSize))
-					.collect(Collectors.toList());
+			// only look up the sections on the grid that the view covers
+			List<Allocation> list = new ArrayList<>();
+			for (int gx = store.gridX(view.x); gx <= store.gridX(view.x + view.w - 1); gx++) {
+				for (int gz = store.gridZ(view.z); gz <= store.gridZ(view.z + view.d - 1); gz++) {
+					// sections that aren't in memory yet are painted once they are paged in
+					MapInternals.PreparedMapSection section = store.getLoadedSection(gx, gz, MapComponent.this::repaint);
+					if (section == null) continue;
+					int x = (store.cornerX(gx) - view.x) >> scale;
+					int y = (store.cornerZ(gz) - view.z) >> scale;
+					render(g, section, x, y);
+					list.add(new Allocation(x, y, sectionSize, sectionSize));
+				}
+			}
 			// this resets the pixels in areas that used to have data, but now
 			// no longer have a map section (which would normally result in
 			// ghosting from the previous frame).
-			for (int i = 0; i < windowWidth; i++) {
-				for (int j = 0; j < windowHeight; j++) {
-					boolean flag = true;
-					for (Allocation alloc : list)
-						if (alloc.inside(i, j))
-							flag = false;
-					if (flag)
-						g.draw(i, j, (byte) 119);
+			boolean[] covered = new boolean[windowWidth];
+			for (int j = 0; j < windowHeight; j++) {
+				Arrays.fill(covered, false);
+				for (Allocation alloc : list) {
+					if (j >= alloc.z && j < alloc.z + alloc.d) {
+						for (int i = Math.max(alloc.x, 0); i < Math.min(alloc.x + alloc.w, windowWidth); i++)
+							covered[i] = true;
+					}
+				}
+				for (int i = 0; i < windowWidth; i++) {
+					if (covered[i]) continue;
+					int start = i;
+					while (i < windowWidth && !covered[i])
+						i++;
+					g.fillRect(start, j, i - start, 1, (byte) 119);
 				}
 			}
 
@@ -263,21 +272,19 @@ public class MapComponent extends ConsoleComponent implements InputComponent {
 			renderBar.clear();
 		}
 
-		public void render(CanvasGraphics g, MapInternals.PreparedMapSection section,
-		                   int x, int y, Predicate<Position2D> filter) {
-			for (int i = 0; i < 128; i++) {
-				for (int j = 0; j < 128; j++) {
-					if (i + x >= 0 && j + y >= 0 && g.getHeight() > j + y
-							&& g.getWidth() > i + x && filter.test(new Position2D(i + x, j + y))) {
-						if (section.colors[i + (j * 128)] != 0) {
-							if (g.sample(i + x, j + y) != section.colors[i + (j * 128)]) {
-								g.draw(i + x, j + y, section.colors[i + (j * 128)]);
-							}
-						}
-						else
-							g.draw(i + x, j + y, (byte) 119);
-					}
+		public void render(CanvasGraphics g, MapInternals.PreparedMapSection section, int x, int y) {
+			// clip the section to the window
+			int x1 = Math.max(x, 0), x2 = Math.min(Math.min(x + 128, g.getWidth()), windowWidth);
+			int y1 = Math.max(y, 0), y2 = Math.min(Math.min(y + 128, g.getHeight()), windowHeight);
+			if (x1 >= x2) return;
+			byte[] row = new byte[x2 - x1];
+			for (int j = y1; j < y2; j++) {
+				int offset = (x1 - x) + ((j - y) * 128);
+				for (int i = 0; i < row.length; i++) {
+					byte b = section.colors[offset + i];
+					row[i] = b != 0 ? b : (byte) 119;
 				}
+				g.blit(x1, j, row, 0, row.length, row.length, 1);
 			}
 		}
 	}
@@ -4,8 +4,8 @@ import ca.jarcode.consoles.Computers;
 import ca.jarcode.consoles.api.nms.ConsolesNMS;
 import ca.jarcode.consoles.api.nms.MapInternals;
 import ca.jarcode.consoles.event.bukkit.MapUpdateEvent;
-import ca.jarcode.consoles.util.Allocation;
 import ca.jarcode.consoles.util.InstanceListener;
+import ca.jarcode.consoles.util.LongHashMap;
 import ca.jarcode.consoles.api.Position2D;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -18,26 +18,65 @@ import org.bukkit.event.player.PlayerEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
-import java.util.AbstractMap;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import static ca.jarcode.consoles.Lang.lang;
 
 public class MapDataStore {
 
 	private static final Map<String, MapDataStore[]> levels = new HashMap<>();
+	private static final Map<String, ChunkSnapshotCache> snapshots = new HashMap<>();
 	public static final int LEVEL_COUNT = 4;
 	public static final String MAP_FOLDER = "maps";
 
 	private static final int UPDATE_THRESHOLD = 500;
 
+	// ticks between writing dirty sections to disk
+	private static final int FLUSH_INTERVAL = 200;
+
+	// sections kept in memory regardless of the memory budget
+	private static final int MIN_RESIDENT = 128;
+
+	// a section that is paged into memory
+	private static final class Resident {
+		final MapDataStore store;
+		final long key;
+		final MapInternals.PreparedMapSection section;
+		// whether the section has changed since it was last written
+		boolean dirty;
+		// set when the section was paged out before it was written. It stays in its store's
+		// section map until the write is done, so it isn't read back from disk before that.
+		boolean evicted;
+		Resident(MapDataStore store, long key, MapInternals.PreparedMapSection section) {
+			this.store = store;
+			this.key = key;
+			this.section = section;
+		}
+	}
+
+	// guards the section maps of all stores, and the least recently used order of all
+	// sections that are in memory (across all worlds and scales)
+	private static final Object STORAGE_LOCK = new Object();
+	private static final LinkedHashMap<Resident, Resident> resident = new LinkedHashMap<>(256, 0.75f, true);
+
+	// sections are rendered from chunk snapshots on these threads, so the main thread only
+	// has to take the snapshots. Sections are also paged in and written out here.
+	private static final ExecutorService RENDERERS = Executors.newFixedThreadPool(2, (runnable) -> {
+		Thread thread = new Thread(runnable, "Map renderer");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
 	public static void init(Plugin plugin) {
 		InstanceListener listener = new InstanceListener();
 		listener.chain(MapDataStore::handle)
@@ -49,13 +88,26 @@ public class MapDataStore {
 		listener.register(WorldUnloadEvent.class, (e) -> {
 			save(plugin, e.getWorld());
 			levels.remove(e.getWorld().getName());
+			snapshots.remove(e.getWorld().getName());
+		});
+		listener.register(ChunkUnloadEvent.class, (e) -> {
+			ChunkSnapshotCache cache = snapshots.get(e.getWorld().getName());
+			if (cache != null)
+				cache.invalidateChunk(e.getChunk().getX(), e.getChunk().getZ());
 		});
 		listener.register(PluginDisableEvent.class, (e) -> {
-			if (e.getPlugin() == plugin) for (World w : Bukkit.getWorlds())
-				save(plugin, w);
-			levels.clear();
+			if (e.getPlugin() == plugin) {
+				for (World w : Bukkit.getWorlds())
+					save(plugin, w);
+				levels.clear();
+				snapshots.clear();
+				RENDERERS.shutdown();
+			}
 		});
 		listener.associate(plugin);
+		Bukkit.getScheduler().runTaskTimer(plugin, () -> RENDERERS.execute(MapDataStore::flushAll),
+				FLUSH_INTERVAL, FLUSH_INTERVAL);
+		Bukkit.getScheduler().runTaskTimer(plugin, ChunkSnapshotCache::tick, 1, 1);
 		for (World world : Bukkit.getWorlds()) {
 			init(plugin, world, 0, 0);
 		}
@@ -66,36 +118,30 @@ public class MapDataStore {
 			update(((PlayerEvent) event).getPlayer().getWorld(), loc.getBlockX(), loc.getBlockZ());
 		}
 		else if (event instanceof BlockEvent) {
-			update(((BlockEvent) event).getBlock().getWorld(),
-					((BlockEvent) event).getBlock().getX(), ((BlockEvent) event).getBlock().getZ());
+			World world = ((BlockEvent) event).getBlock().getWorld();
+			int x = ((BlockEvent) event).getBlock().getX();
+			int z = ((BlockEvent) event).getBlock().getZ();
+			snapshots(world).invalidate(x, z);
+			// block breaks are fired before the block is removed, so update on the next tick
+			Bukkit.getScheduler().runTask(Computers.getInstance(), () -> update(world, x, z));
 		}
 	}
 	public static void init(Plugin plugin, World world, int originX, int originZ) {
 		plugin.getLogger().info(String.format(lang.getString("loading-map-data"), world.getName()));
 		MapDataStore[] stores = new MapDataStore[LEVEL_COUNT];
 		for (int t = 0; t < stores.length; t++) {
-			stores[t] = new MapDataStore(world, originX, originZ, t);
+			File folder = new File(plugin.getDataFolder().getAbsolutePath() + File.separator + MAP_FOLDER
+					+ File.separator + world.getName() + File.separator + t);
+			stores[t] = new MapDataStore(world, originX, originZ, t, folder);
+			// move sections from the old format into region files
 			File file = new File(plugin.getDataFolder().getAbsolutePath()
 					+ File.separator + MAP_FOLDER + File.separator + "map-" + t + "-" + world.getName() + ".dat");
-			if (!file.exists()) {
-				File folder = new File(plugin.getDataFolder().getAbsolutePath() + File.separator + MAP_FOLDER);
-				if (!folder.exists())
-					if (!folder.mkdir())
-						plugin.getLogger().severe(String.format(lang.getString("folder-create-fail"),
-								folder.getAbsolutePath()));
-				plugin.getLogger().info(String.format(lang.getString("file-create-fallback"),
-						"map-" + t + "-" + world.getName() + ".dat"));
-				try {
-					if (!file.createNewFile())
-						plugin.getLogger().severe(String.format(lang.getString("file-create-fail"),
-								file.getAbsolutePath()));
-				} catch (IOException e) {
-					plugin.getLogger().severe(String.format(lang.getString("file-create-fail"), file.getAbsolutePath()));
-					e.printStackTrace();
-				}
+			if (file.exists() && loadFor(stores[t], file)) {
+				stores[t].flush();
+				if (!file.renameTo(new File(file.getAbsolutePath() + ".old")))
+					plugin.getLogger().severe(String.format(lang.getString("file-create-fail"),
+							file.getAbsolutePath() + ".old"));
 			}
-			else
-				loadFor(stores[t], file);
 		}
 		levels.put(world.getName(), stores);
 	}
@@ -107,19 +153,17 @@ public class MapDataStore {
 			plugin.getLogger().warning(String.format(lang.getString("missing-map-data"), world.getName()));
 			return;
 		}
-		for (int t = 0; t < stores.length; t++) {
-			File file = new File(plugin.getDataFolder().getAbsolutePath()
-					+ File.separator + MAP_FOLDER + File.separator + "map-" + t + "-" + world.getName() + ".dat");
-			saveFor(stores[t], file);
-		}
+		for (MapDataStore store : stores)
+			store.release();
 	}
 
-	private static void loadFor(MapDataStore store, File file) {
+	// reads a map file in the old format (uncompressed, every section of the map)
+	private static boolean loadFor(MapDataStore store, File file) {
 		try (FileInputStream in = new FileInputStream(file)) {
 			DataInputStream din = new DataInputStream(in);
 			// error suppression for blank files.
 			// I still need to fix this bug.
-			if (din.available() == 0) return;
+			if (din.available() == 0) return true;
 			int amt = din.readInt();
 			while (amt > 0) {
 				int x = din.readInt();
@@ -128,27 +172,66 @@ public class MapDataStore {
 				for (int t = 0; t < 128; t++)
 					for (int j = 0; j < 128; j++)
 						section.colors[t + (j * 128)] = din.readByte();
-				store.map.put(new Position2D(x, y), section);
+				synchronized (STORAGE_LOCK) {
+					store.admit(LongHashMap.key(store.gridX(x), store.gridZ(y)), section, true);
+				}
 				amt--;
 			}
+			return true;
 		} catch (IOException e) {
 			e.printStackTrace();
+			return false;
 		}
 	}
 
-	private static void saveFor(MapDataStore store, File file) {
-		try (DataOutputStream dout = new DataOutputStream(new FileOutputStream(file))) {
-			dout.writeInt(store.map.size());
-			for (Map.Entry<Position2D, MapInternals.PreparedMapSection> entry : store.map.entrySet()) {
-				dout.writeInt(entry.getKey().getX());
-				dout.writeInt(entry.getKey().getY());
-				for (int t = 0; t < 128; t++)
-					for (int j = 0; j < 128; j++)
-						dout.writeByte(entry.getValue().colors[t + (j * 128)]);
+	// writes dirty sections of all stores to their region files
+	private static void flushAll() {
+		List<Resident> dirty = new ArrayList<>();
+		synchronized (STORAGE_LOCK) {
+			for (Resident entry : resident.keySet()) {
+				if (entry.dirty)
+					dirty.add(entry);
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
+		for (Resident entry : dirty)
+			entry.store.write(entry);
+	}
+
+	// pages out the least recently used sections until the memory budget is met. Dirty sections
+	// are written on the render threads. Must be called while holding the storage lock.
+	private static void evict() {
+		// each section is 128x128 bytes
+		int max = Math.max(Computers.mapMemoryBudget * 1024 / 16, MIN_RESIDENT);
+		List<Resident> writes = new ArrayList<>();
+		Iterator<Resident> it = resident.keySet().iterator();
+		while (resident.size() > max && it.hasNext()) {
+			Resident eldest = it.next();
+			it.remove();
+			if (eldest.dirty) {
+				eldest.evicted = true;
+				writes.add(eldest);
+			}
+			else eldest.store.sections.remove(eldest.key);
+		}
+		for (Resident entry : writes) {
+			try {
+				RENDERERS.execute(() -> entry.store.write(entry));
+			}
+			// the plugin is being disabled, keep the section instead of losing it
+			catch (RejectedExecutionException e) {
+				touch(entry);
+			}
+		}
+	}
+
+	// marks a section as recently used, and takes it back if it was paged out while waiting
+	// to be written. Must be called while holding the storage lock.
+	private static void touch(Resident entry) {
+		if (entry.evicted) {
+			entry.evicted = false;
+			resident.put(entry, entry);
+		}
+		else resident.get(entry);
 	}
 
 	// all translations needed to cover adjacent sections, including the tile itself
@@ -168,18 +251,44 @@ public class MapDataStore {
 		return MapDataStore.levels.get(world.getName());
 	}
 
+	private static ChunkSnapshotCache snapshots(World world) {
+		ChunkSnapshotCache cache = snapshots.get(world.getName());
+		if (cache == null) {
+			cache = new ChunkSnapshotCache(world);
+			snapshots.put(world.getName(), cache);
+		}
+		return cache;
+	}
+
 	public static void update(World world, int x, int z) {
 		// initialize for this world
 		if (!levels.containsKey(world.getName())) {
 			init(Computers.getInstance(), world, 0, 0);
 		}
-		for (int t = 0; t < LEVEL_COUNT; t++)
-			MapDataStore.levels.get(world.getName())[t].update(x, z);
+		// all scales update the same area, so they can share the snapshots
+		MapInternals.ChunkSource chunks = null;
+		for (MapDataStore store : MapDataStore.levels.get(world.getName())) {
+			if (!store.ready(x, z))
+				continue;
+			if (chunks == null)
+				chunks = snapshots(world).capture(x, z);
+			store.update(x, z, chunks);
+		}
 	}
 
-	// map of all the sections, the position corresponds with the corner of the
-	// map (in global coordinates), the section only contains the memory.
-	public final HashMap<Position2D, MapInternals.PreparedMapSection> map = new HashMap<>();
+	// the sections that are in memory, keyed by their position on the section grid (see gridX
+	// and gridZ). Guarded by the storage lock, sections that aren't here are paged in from
+	// the region files.
+	private final LongHashMap<Resident> sections = new LongHashMap<>();
+	// sections that are being paged in for painting, with the callbacks to run once they are.
+	// Guarded by the storage lock.
+	private final LongHashMap<List<Runnable>> loading = new LongHashMap<>();
+	// open region files, keyed by region position. Access is synchronized on the map itself.
+	private final LongHashMap<MapRegionFile> regions = new LongHashMap<>();
+	private final File folder;
+	// set when the store is saved for the last time, so late renders don't reopen regions
+	private volatile boolean released = false;
+
 	public final int originX, originZ;
 	public final int scale;
 	public final int sectionSize, middleOffset;
@@ -187,23 +296,110 @@ public class MapDataStore {
 
 	private long lastUpdate = 0;
 
-	public MapDataStore(World world, int originX, int originY, int scale) {
+	// whether sections are being rendered, and the last update that came in while they were.
+	// only accessed from the main thread.
+	private boolean rendering = false;
+	private boolean pending = false;
+	private int pendingX, pendingY;
+
+	public MapDataStore(World world, int originX, int originY, int scale, File folder) {
 		this.originX = originX;
 		this.originZ = originY;
 		this.scale = scale;
 		this.world = world;
+		this.folder = folder;
 		sectionSize = 128 << scale;
 		middleOffset = sectionSize >> 2;
 	}
 
+	// global coordinates -> section grid coordinates
+	public int gridX(int x) {
+		return (x - originX) >> 7 >> scale;
+	}
+	public int gridZ(int z) {
+		return (z - originZ) >> 7 >> scale;
+	}
+	// section grid coordinates -> global coordinates of the section's corner
+	public int cornerX(int gridX) {
+		return originX + (gridX * sectionSize);
+	}
+	public int cornerZ(int gridZ) {
+		return originZ + (gridZ * sectionSize);
+	}
+	// section grid coordinates. Sections that aren't in memory are read from disk on this thread.
+	public MapInternals.PreparedMapSection getSection(int gridX, int gridZ) {
+		long key = LongHashMap.key(gridX, gridZ);
+		synchronized (STORAGE_LOCK) {
+			Resident entry = sections.get(key);
+			if (entry != null) {
+				touch(entry);
+				return entry.section;
+			}
+		}
+		// page the section in from its region file
+		byte[] colors = null;
+		try {
+			MapRegionFile region = region(gridX, gridZ, false);
+			if (region != null)
+				colors = region.read(gridX, gridZ);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (colors == null)
+			return null;
+		synchronized (STORAGE_LOCK) {
+			// the section could have been paged in by another thread while it was being read
+			Resident entry = sections.get(key);
+			if (entry != null) {
+				touch(entry);
+				return entry.section;
+			}
+			MapInternals.PreparedMapSection section = new MapInternals.PreparedMapSection();
+			System.arraycopy(colors, 0, section.colors, 0, colors.length);
+			admit(key, section, false);
+			return section;
+		}
+	}
+	// section grid coordinates, for painting. Returns the section if it is in memory, without touching
+	// the disk. Otherwise the section is paged in on the render threads, and the callback is run on the
+	// main thread once it is (if it exists at all).
+	public MapInternals.PreparedMapSection getLoadedSection(int gridX, int gridZ, Runnable loaded) {
+		long key = LongHashMap.key(gridX, gridZ);
+		synchronized (STORAGE_LOCK) {
+			Resident entry = sections.get(key);
+			if (entry != null) {
+				touch(entry);
+				return entry.section;
+			}
+			List<Runnable> waiting = loading.get(key);
+			if (waiting != null) {
+				waiting.add(loaded);
+				return null;
+			}
+			waiting = new ArrayList<>();
+			waiting.add(loaded);
+			loading.put(key, waiting);
+			try {
+				RENDERERS.execute(() -> {
+					MapInternals.PreparedMapSection section = getSection(gridX, gridZ);
+					List<Runnable> callbacks;
+					synchronized (STORAGE_LOCK) {
+						callbacks = loading.remove(key);
+					}
+					if (section != null && callbacks != null && Computers.getInstance().isEnabled())
+						Bukkit.getScheduler().runTask(Computers.getInstance(), () -> callbacks.forEach(Runnable::run));
+				});
+			}
+			catch (RejectedExecutionException e) {
+				loading.remove(key);
+			}
+			return null;
+		}
+	}
 	// global coordinates
 	public MapInternals.PreparedMapSection getAt(int x, int y) {
-		Map.Entry<Position2D, MapInternals.PreparedMapSection> ret = map.entrySet().stream()
-				.filter(entry -> new Allocation(entry.getKey().getX(),
-						entry.getKey().getY(), sectionSize, sectionSize).inside(x, y))
-				.findFirst()
-				.orElseGet(() -> null);
-		return ret == null ? null : ret.getValue();
+		return getSection(gridX(x), gridZ(y));
 	}
 	// global coordinates
 	public Map.Entry<Position2D, MapInternals.PreparedMapSection> createAt(int x, int y) {
@@ -212,48 +408,226 @@ public class MapDataStore {
 		// infinite map view was created with.
 
 		// subtract this view's origin, shift seven bits right (divide by 128), and then by the scale.
-		int xo = ((x - originX) >> 7 >> scale);
-		int yo = ((y - originZ) >> 7 >> scale);
+		int xo = gridX(x);
+		int yo = gridZ(y);
 
 		// calculate the corner of this map, in global coordinates.
-		Position2D corner = new Position2D(
-				originX + (xo * sectionSize),
-				originZ + (yo * sectionSize)
-		);
+		Position2D corner = new Position2D(cornerX(xo), cornerZ(yo));
 
 		MapInternals.PreparedMapSection section = new MapInternals.PreparedMapSection();
-		map.put(corner, section);
+		synchronized (STORAGE_LOCK) {
+			admit(LongHashMap.key(xo, yo), section, true);
+		}
 		return new AbstractMap.SimpleEntry<>(corner, section);
 	}
 
-	// global coordinates
-	public void update(int x, int y) {
+	// must be called while holding the storage lock
+	private void admit(long key, MapInternals.PreparedMapSection section, boolean dirty) {
+		Resident entry = new Resident(this, key, section);
+		entry.dirty = dirty;
+		Resident old = sections.put(key, entry);
+		if (old != null)
+			resident.remove(old);
+		resident.put(entry, entry);
+		evict();
+	}
+
+	// marks a section as changed after it has been rendered to
+	private void changed(int gridX, int gridZ, MapInternals.PreparedMapSection section) {
+		synchronized (STORAGE_LOCK) {
+			long key = LongHashMap.key(gridX, gridZ);
+			Resident entry = sections.get(key);
+			if (entry != null) {
+				touch(entry);
+				// the section was paged out and back in while it was being rendered
+				if (entry.section != section) {
+					synchronized (section.LOCK) {
+						synchronized (entry.section.LOCK) {
+							System.arraycopy(section.colors, 0, entry.section.colors, 0, section.colors.length);
+						}
+					}
+				}
+				entry.dirty = true;
+			}
+			// the section was paged out while it was being rendered, take it back
+			else admit(key, section, true);
+		}
+	}
 
+	// writes a section to its region file if it is dirty. Only the copy is taken while holding the
+	// storage lock, so this must not be called while holding it. Writes of the same section are
+	// done one at a time, in the order their copies were taken.
+	private boolean write(Resident entry) {
+		synchronized (entry) {
+			byte[] colors;
+			synchronized (STORAGE_LOCK) {
+				if (!entry.dirty)
+					return true;
+				synchronized (entry.section.LOCK) {
+					colors = entry.section.colors.clone();
+				}
+				entry.dirty = false;
+			}
+			int gridX = LongHashMap.keyX(entry.key);
+			int gridZ = LongHashMap.keyZ(entry.key);
+			boolean written = false;
+			try {
+				MapRegionFile region = region(gridX, gridZ, true);
+				if (region != null) {
+					region.write(gridX, gridZ, colors);
+					written = true;
+				}
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+			synchronized (STORAGE_LOCK) {
+				if (!written)
+					entry.dirty = true;
+				if (entry.evicted) {
+					// keep sections that can't be written, instead of losing them
+					if (entry.dirty && !released)
+						touch(entry);
+					else if (sections.get(entry.key) == entry)
+						sections.remove(entry.key);
+				}
+			}
+			return written;
+		}
+	}
+
+	// returns the region file that holds a section, opening (or creating) it if needed
+	private MapRegionFile region(int gridX, int gridZ, boolean create) throws IOException {
+		synchronized (regions) {
+			if (released)
+				return null;
+			int regionX = gridX >> 5, regionZ = gridZ >> 5;
+			long key = LongHashMap.key(regionX, regionZ);
+			MapRegionFile region = regions.get(key);
+			if (region == null) {
+				File file = new File(folder, "r." + regionX + "." + regionZ + ".dat");
+				if (!file.exists()) {
+					if (!create)
+						return null;
+					if (!folder.exists() && !folder.mkdirs())
+						throw new IOException("could not create map folder: " + folder.getAbsolutePath());
+				}
+				region = new MapRegionFile(file);
+				regions.put(key, region);
+			}
+			return region;
+		}
+	}
+
+	// writes all dirty sections of this store, including the ones waiting to be written out
+	private void flush() {
+		List<Resident> dirty = new ArrayList<>();
+		synchronized (STORAGE_LOCK) {
+			sections.forEach((key, entry) -> {
+				if (entry.dirty)
+					dirty.add(entry);
+			});
+		}
+		for (Resident entry : dirty)
+			write(entry);
+	}
+
+	// writes all dirty sections, drops this store's sections from memory and closes its regions
+	private void release() {
+		flush();
+		synchronized (STORAGE_LOCK) {
+			sections.forEach((key, entry) -> resident.remove(entry));
+			sections.clear();
+		}
+		synchronized (regions) {
+			released = true;
+			regions.forEach((key, region) -> {
+				try {
+					region.close();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+			regions.clear();
+		}
+	}
+
+	// checks if this store can be updated right now, must be called from the main thread
+	private boolean ready(int x, int y) {
+		if (rendering) {
+			// update again once the current render is done
+			pending = true;
+			pendingX = x;
+			pendingY = y;
+			return false;
+		}
 		if (System.currentTimeMillis() - lastUpdate < UPDATE_THRESHOLD)
-			return;
+			return false;
 		lastUpdate = System.currentTimeMillis();
+		return true;
+	}
 
-		AtomicBoolean flag = new AtomicBoolean();
+	// global coordinates, must be called from the main thread
+	private void update(int x, int y, MapInternals.ChunkSource chunks) {
+		rendering = true;
+		// looking up sections can page them in from disk, so everything past taking the
+		// snapshots is done on the render threads
+		RENDERERS.execute(() -> {
+			boolean updated = false;
+			try {
+				// check section and all adjacent sections
+				for (Position2D mod : MODS) {
+					// create and update the section if it doesn't exist
+					int rx = x + (mod.getX() * sectionSize);
+					int ry = y + (mod.getY() * sectionSize);
+					if (getAt(rx, ry) == null)
+						createAt(rx, ry);
+				}
+				// update all sections that could be in range. The update radius is 128 blocks, and
+				// sections are rendered a quarter section off from their corner, so anything further
+				// than a section and the radius away from the update can't change.
+				int range = sectionSize + 128;
+				for (int gx = gridX(x - range); gx <= gridX(x + range); gx++) {
+					for (int gz = gridZ(y - range); gz <= gridZ(y + range); gz++) {
+						MapInternals.PreparedMapSection section = getSection(gx, gz);
+						if (section == null)
+							continue;
+						// render into a copy, and then publish the whole section at once
+						byte[] colors;
+						synchronized (section.LOCK) {
+							colors = section.colors.clone();
+						}
+						if (ConsolesNMS.mapInternals.renderSection(colors, world, chunks,
+								cornerX(gx) + middleOffset, cornerZ(gz) + middleOffset, x, y, scale)) {
+							synchronized (section.LOCK) {
+								System.arraycopy(colors, 0, section.colors, 0, colors.length);
+							}
+							changed(gx, gz, section);
+							updated = true;
+						}
+					}
+				}
+			}
+			catch (Throwable e) {
+				e.printStackTrace();
+			}
+			boolean fire = updated;
+			if (Computers.getInstance().isEnabled())
+				Bukkit.getScheduler().runTask(Computers.getInstance(), () -> finish(x, y, fire));
+		});
+	}
 
-		// check section and all adjacent sections
-		for (Position2D mod : MODS) {
-			// create and update the section if it doesn't exist
-			int rx = x + (mod.getX() * sectionSize);
-			int ry = y + (mod.getY() * sectionSize);
-			if (getAt(rx, ry) == null)
-				createAt(rx, ry);
-		}
-		// update all other sections
-		map.entrySet().stream()
-				.forEach(entry -> {
-					if (ConsolesNMS.mapInternals.updateSection(entry.getValue(), world,
-							entry.getKey().getX() + middleOffset,
-							entry.getKey().getY() + middleOffset,
-							x, y, scale))
-						flag.set(true);
-				});
-		if (flag.get()) {
+	private void finish(int x, int y, boolean updated) {
+		rendering = false;
+		if (updated) {
 			Computers.getInstance().getServer().getPluginManager().callEvent(new MapUpdateEvent(world, x, y, scale));
 		}
+		if (pending) {
+			pending = false;
+			lastUpdate = 0;
+			if (ready(pendingX, pendingY))
+				update(pendingX, pendingY, snapshots(world).capture(pendingX, pendingY));
+		}
 	}
 }
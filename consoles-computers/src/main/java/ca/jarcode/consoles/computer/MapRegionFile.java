@@ -0,0 +1,139 @@
+package ca.jarcode.consoles.computer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+
+Region file for map sections, 32x32 sections per file (similar to the region files
+that minecraft uses for chunks).
+
+The file is split into 4KB sectors. The first sector is the header: an entry for each
+section with the sector it starts at and the amount of sectors it uses. Sections are
+stored deflated, prefixed by their compressed length. When a section grows past the
+sectors it has, it is moved to the first free run of sectors that fits it.
+
+ */
+class MapRegionFile implements Closeable {
+
+	// sections per side
+	static final int SIZE = 32;
+
+	private static final int SECTOR = 4096;
+	private static final int HEADER_SECTORS = (SIZE * SIZE * 4) / SECTOR;
+	private static final int SECTION_BYTES = 128 * 128;
+
+	private final RandomAccessFile file;
+	// (first sector << 8) | sector count for each section, 0 if the section isn't stored
+	private final int[] entries = new int[SIZE * SIZE];
+	private final BitSet used = new BitSet();
+
+	private final Deflater deflater = new Deflater();
+	private final Inflater inflater = new Inflater();
+
+	MapRegionFile(File path) throws IOException {
+		file = new RandomAccessFile(path, "rw");
+		if (file.length() < HEADER_SECTORS * SECTOR)
+			file.setLength(HEADER_SECTORS * SECTOR);
+		used.set(0, HEADER_SECTORS);
+		file.seek(0);
+		for (int t = 0; t < entries.length; t++) {
+			entries[t] = file.readInt();
+			if (entries[t] != 0)
+				used.set(entries[t] >>> 8, (entries[t] >>> 8) + (entries[t] & 0xFF));
+		}
+	}
+
+	private static int index(int x, int z) {
+		return (x & (SIZE - 1)) + ((z & (SIZE - 1)) * SIZE);
+	}
+
+	synchronized boolean contains(int x, int z) {
+		return entries[index(x, z)] != 0;
+	}
+
+	// returns the colors of the section, or null if it isn't stored
+	synchronized byte[] read(int x, int z) throws IOException {
+		int entry = entries[index(x, z)];
+		if (entry == 0)
+			return null;
+		file.seek((long) (entry >>> 8) * SECTOR);
+		int length = file.readInt();
+		if (length <= 0 || length > (entry & 0xFF) * SECTOR - 4)
+			throw new IOException("corrupt map section entry");
+		byte[] compressed = new byte[length];
+		file.readFully(compressed);
+		byte[] colors = new byte[SECTION_BYTES];
+		inflater.reset();
+		inflater.setInput(compressed);
+		try {
+			if (inflater.inflate(colors) != SECTION_BYTES)
+				throw new IOException("truncated map section");
+		}
+		catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		return colors;
+	}
+
+	synchronized void write(int x, int z, byte[] colors) throws IOException {
+		deflater.reset();
+		deflater.setInput(colors);
+		deflater.finish();
+		// sections are small, and the compressed size can't grow much past the raw size
+		byte[] buffer = new byte[SECTION_BYTES + 1024];
+		int length = 0;
+		while (!deflater.finished())
+			length += deflater.deflate(buffer, length, buffer.length - length);
+
+		int index = index(x, z);
+		int entry = entries[index];
+		int needed = (length + 4 + SECTOR - 1) / SECTOR;
+		int start;
+		if (entry != 0 && (entry & 0xFF) >= needed) {
+			// still fits where it is
+			start = entry >>> 8;
+			used.clear(start + needed, start + (entry & 0xFF));
+		}
+		else {
+			if (entry != 0)
+				used.clear(entry >>> 8, (entry >>> 8) + (entry & 0xFF));
+			start = free(needed);
+			used.set(start, start + needed);
+		}
+		file.seek((long) start * SECTOR);
+		file.writeInt(length);
+		file.write(buffer, 0, length);
+		// keep the file a whole amount of sectors long
+		long end = (long) (start + needed) * SECTOR;
+		if (file.length() < end)
+			file.setLength(end);
+		entries[index] = (start << 8) | needed;
+		file.seek(index * 4);
+		file.writeInt(entries[index]);
+	}
+
+	// finds the first run of free sectors that is long enough
+	private int free(int count) {
+		int start = used.nextClearBit(HEADER_SECTORS);
+		while (true) {
+			int next = used.nextSetBit(start);
+			if (next == -1 || next - start >= count)
+				return start;
+			start = used.nextClearBit(next);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		deflater.end();
+		inflater.end();
+		file.close();
+	}
+}
@@ -16,6 +16,9 @@ import static ca.jarcode.consoles.Lang.lang;
 // immutable, except for the termination state.
 public class ProgramInstance implements Runnable {
 
+	// how long a program can be kept waiting on output that the terminal hasn't read yet
+	private static final long OUTPUT_TIMEOUT = 2000;
+
 	public final InputStream stdin;
 	public final OutputStream stdout;
 
@@ -39,7 +42,7 @@ public class ProgramInstance implements Runnable {
 	public ProgramInstance(FSProvidedProgram provided, String argument, Computer computer) {
 		stdin = new LinkedStream();
 		out = ((LinkedStream) stdin).createOutput();
-		in = new LinkedStream();
+		in = new LinkedStream(LinkedStream.DEFAULT_LIMIT, OUTPUT_TIMEOUT);
 		stdout = ((LinkedStream) in).createOutput();
 		this.provided = provided;
 		interpreted = null;
@@ -49,7 +52,7 @@ public class ProgramInstance implements Runnable {
 	public ProgramInstance(SandboxProgram interpreted, String argument, Computer computer) {
 		stdin = new LinkedStream();
 		out = ((LinkedStream) stdin).createOutput();
-		in = new LinkedStream();
+		in = new LinkedStream(LinkedStream.DEFAULT_LIMIT, OUTPUT_TIMEOUT);
 		stdout = ((LinkedStream) in).createOutput();
 		provided = null;
 		this.interpreted = interpreted;
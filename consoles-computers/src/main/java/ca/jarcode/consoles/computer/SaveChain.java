@@ -0,0 +1,66 @@
+package ca.jarcode.consoles.computer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/*
+
+The saves of a single computer. Saves are written one at a time, in the order they were
+captured: each save is given the one before it, and is written once that one is done.
+
+Background saves that are requested while the last save is still being written are held
+back, instead of queueing up saves behind a slow disk. Whoever started the last save is
+expected to check for one once it's done.
+
+ */
+class SaveChain {
+
+	private final Object LOCK = new Object();
+	private CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+	// set when a background save was requested while the last save was still being written
+	private boolean pending = false;
+
+	// starts a save after the last one, dropping any save that was held back
+	CompletableFuture<Void> save(Function<CompletableFuture<Void>, CompletableFuture<Void>> save) {
+		synchronized (LOCK) {
+			pending = false;
+			return last = save.apply(last);
+		}
+	}
+
+	// starts a save if the last one is written, otherwise holds it back and returns null
+	CompletableFuture<Void> saveIfIdle(Function<CompletableFuture<Void>, CompletableFuture<Void>> save) {
+		synchronized (LOCK) {
+			if (!last.isDone()) {
+				pending = true;
+				return null;
+			}
+			return last = save.apply(last);
+		}
+	}
+
+	// returns whether a save was held back since the last one was started, and forgets it
+	boolean takePending() {
+		synchronized (LOCK) {
+			boolean was = pending;
+			pending = false;
+			return was;
+		}
+	}
+
+	// chains a task after the last save, saves that are started after this wait for it. Unlike a save,
+	// this keeps a save that was held back.
+	CompletableFuture<Void> then(Function<CompletableFuture<Void>, CompletableFuture<Void>> task) {
+		synchronized (LOCK) {
+			return last = task.apply(last);
+		}
+	}
+
+	// returns the last save, dropping any save that was held back
+	CompletableFuture<Void> last() {
+		synchronized (LOCK) {
+			pending = false;
+			return last;
+		}
+	}
+}
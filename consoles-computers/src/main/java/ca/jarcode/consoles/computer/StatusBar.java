@@ -16,6 +16,7 @@ public class StatusBar extends ConsoleComponent {
 
 	public StatusBar(ConsoleRenderer renderer) {
 		super(renderer.getWidth() - 4, HEIGHT, renderer);
+		setContextInvariant(true);
 	}
 
 	public synchronized void setText(String text) {
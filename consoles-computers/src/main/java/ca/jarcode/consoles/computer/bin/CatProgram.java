@@ -39,14 +39,15 @@ public class CatProgram extends FSProvidedProgram {
 		FSFile file = (FSFile) block;
 		try (InputStream is = file.createInput()) {
 			int i;
+			byte[] buffer = new byte[4096];
 			Charset charset = Charset.forName("UTF-8");
 			while (true) {
 				if (terminated())
 					break;
 				if (is.available() > 0 || is instanceof ByteArrayInputStream) {
-					i = is.read();
+					i = is.read(buffer, 0, buffer.length);
 					if (i == -1) break;
-					print(new String(new byte[]{(byte) i}, charset));
+					print(new String(buffer, 0, i, charset));
 				} else Thread.sleep(50);
 			}
 			if (!terminated())
@@ -15,6 +15,10 @@ public abstract class FSBlock {
 	// 0110 1000
 	byte permissions = 0x78;
 
+	// set when the block changes, and cleared once the change is in the filesystem journal. New blocks
+	// start out dirty, since they haven't been saved yet.
+	volatile boolean dirty = true;
+
 	// this is for serialization of filesystems. There might be duplicate objects in the filesystem tree,
 	// so this is what we use to identify them when recreating the tree
 	public final UUID uuid;
@@ -63,6 +67,7 @@ public abstract class FSBlock {
 	// mask(0x78) is the default for root (read, write, and execute for root, read for user)
 	public void mask(byte v) {
 		permissions |= v;
+		dirty = true;
 	}
 	// checks the bit at a certain index of the permissions byte
 	public boolean check(int i) {
@@ -86,18 +91,21 @@ public abstract class FSBlock {
 			if (r) permissions |= 0x40; else permissions &= ~0x40;
 		if (group == FSGroup.ALL)
 			if (r) permissions |= 0x08; else permissions &= ~0x08;
+		dirty = true;
 	}
 	public void setWritable(FSGroup group, boolean w) {
 		if (group == FSGroup.OWNER)
 			if (w) permissions |= 0x20; else permissions &= ~0x20;
 		if (group == FSGroup.ALL)
 			if (w) permissions |= 0x04; else permissions &= ~0x04;
+		dirty = true;
 	}
 	public void setExecutable(FSGroup group, boolean x) {
 		if (group == FSGroup.OWNER)
 			if (x) permissions |= 0x10; else permissions &= ~0x10;
 		if (group == FSGroup.ALL)
 			if (x) permissions |= 0x02; else permissions &= ~0x02;
+		dirty = true;
 	}
 	public static String[] section(String text, String regex) {
 		List<String> list = new ArrayList<>();
@@ -1,6 +1,8 @@
 package ca.jarcode.consoles.computer.filesystem;
 
 import java.io.FileNotFoundException;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("SpellCheckingInspection")
@@ -16,7 +18,61 @@ public class FSFolder extends FSBlock {
 
 	public FSFolder() {
 		super(ID);
-		this.contents = new ConcurrentHashMap<>();
+		this.contents = new Contents();
+	}
+	public FSFolder(UUID uuid) {
+		super(ID, uuid);
+		this.contents = new Contents();
+	}
+	// marks the folder as changed whenever its entries change. The flag is set after the change, so
+	// a save that clears it in between will always see the change on the next save.
+	private class Contents extends ConcurrentHashMap<String, FSBlock> {
+		@Override
+		public FSBlock put(String key, FSBlock value) {
+			FSBlock old = super.put(key, value);
+			dirty = true;
+			return old;
+		}
+		@Override
+		public FSBlock putIfAbsent(String key, FSBlock value) {
+			FSBlock old = super.putIfAbsent(key, value);
+			dirty = true;
+			return old;
+		}
+		@Override
+		public void putAll(Map<? extends String, ? extends FSBlock> map) {
+			super.putAll(map);
+			dirty = true;
+		}
+		@Override
+		public FSBlock remove(Object key) {
+			FSBlock old = super.remove(key);
+			dirty = true;
+			return old;
+		}
+		@Override
+		public boolean remove(Object key, Object value) {
+			boolean removed = super.remove(key, value);
+			dirty = true;
+			return removed;
+		}
+		@Override
+		public FSBlock replace(String key, FSBlock value) {
+			FSBlock old = super.replace(key, value);
+			dirty = true;
+			return old;
+		}
+		@Override
+		public boolean replace(String key, FSBlock oldValue, FSBlock newValue) {
+			boolean replaced = super.replace(key, oldValue, newValue);
+			dirty = true;
+			return replaced;
+		}
+		@Override
+		public void clear() {
+			super.clear();
+			dirty = true;
+		}
 	}
 	public FSBlock get(String path) throws FileNotFoundException {
 		if (path.trim().equals("/") || path.trim().isEmpty())
@@ -15,25 +15,39 @@ public class FSStoredFile extends FSFile {
 
 	private static final byte ID = 0x08;
 
+	private static final int BUFFER_SIZE = 8192;
+
 	public StoredOutputStream out;
 	public volatile boolean locked = false;
 	private final Object LOCK = new Object();
 	private final Supplier<StoredOutputStream> streamFactory;
 
+	// the file on disk and the computer's cache for it, both null for legacy files
+	private final File file;
+	private final StoredFileCache cache;
+	// size of the file on disk, -1 until it's first needed
+	private volatile long size = -1;
+
 	public FSStoredFile(Computer source) {
 		super(ID);
-		streamFactory = () -> fileStream(source.linkFile(this));
+		file = source.linkFile(this);
+		cache = source.getFileCache();
+		streamFactory = this::fileStream;
 		out = streamFactory.get();
 	}
 	public FSStoredFile(Computer source, UUID uuid) {
 		super(ID, uuid);
-		streamFactory = () -> fileStream(source.linkFile(this));
+		file = source.linkFile(this);
+		cache = source.getFileCache();
+		streamFactory = this::fileStream;
 		out = streamFactory.get();
 	}
 	// legacy
 	@Deprecated
 	public FSStoredFile(byte[] data) {
 		super(ID);
+		file = null;
+		cache = null;
 		streamFactory = this::memoryStream;
 		try {
 			out = memoryStream();
@@ -47,6 +61,8 @@ public class FSStoredFile extends FSFile {
 	@Deprecated
 	public FSStoredFile(byte[] data, UUID uuid) {
 		super(ID, uuid);
+		file = null;
+		cache = null;
 		streamFactory = this::memoryStream;
 		try {
 			out = memoryStream();
@@ -75,17 +91,80 @@ public class FSStoredFile extends FSFile {
 
 	@Override
 	public int getSize() {
-		return 0;
+		return (int) Math.min(length(), Integer.MAX_VALUE);
+	}
+
+	// size in bytes, not counting writes that are still buffered
+	public long length() {
+		if (file == null)
+			return out.getData().length;
+		if (size < 0) synchronized (LOCK) {
+			if (size < 0)
+				size = file.length();
+		}
+		return size;
 	}
 
 	// captures the data at the given point, allowing data to still be written
 	@Override
 	public InputStream createInput() {
-		byte[] data;
 		synchronized (LOCK) {
-			data = out.getData();
+			if (file == null)
+				return new ByteArrayInputStream(out.getData());
+			flushOutput();
+			InputStream cached = cache.open(uuid);
+			if (cached != null)
+				return cached;
+			byte[] data = out.getData();
+			cache.put(uuid, data, data.length);
+			return new ByteArrayInputStream(data);
+		}
+	}
+
+	// Reads from a position in the file, without going through the file's streams. Returns the
+	// amount of bytes read, or -1 if the position is at the end of the file.
+	public int read(long position, byte[] b, int off, int len) throws IOException {
+		if (file == null)
+			throw new IOException("random access is not supported for legacy files");
+		synchronized (LOCK) {
+			flushOutput();
+			InputStream cached = cache.open(uuid);
+			if (cached != null) {
+				if (cached.skip(position) != position)
+					return -1;
+				return cached.read(b, off, len);
+			}
+			try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+				in.seek(position);
+				return in.read(b, off, len);
+			}
+		}
+	}
+
+	// writes at a position in the file, extending it if needed
+	public void write(long position, byte[] b, int off, int len) throws IOException {
+		if (file == null)
+			throw new IOException("random access is not supported for legacy files");
+		if (len == 0)
+			return;
+		synchronized (LOCK) {
+			flushOutput();
+			try (RandomAccessFile target = new RandomAccessFile(file, "rw")) {
+				target.seek(position);
+				target.write(b, off, len);
+				size = target.length();
+			}
+			cache.write(uuid, position, b, off, len);
+		}
+	}
+
+	private void flushOutput() {
+		try {
+			out.flush();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
 		}
-		return new ByteArrayInputStream(data);
 	}
 
 	@Override
@@ -126,85 +205,118 @@ public class FSStoredFile extends FSFile {
 			}
 		};
 	}
-	private StoredOutputStream fileStream(File file) {
-		try {
-			return new StoredOutputStream() {
-				public FileOutputStream out = new FileOutputStream(file, true);
-				@Override
-				public void close() {
-					try {
-						out.close();
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					locked = false;
+	// Appends to the file through a buffer. The file is opened on the first write that reaches the disk,
+	// and closing the stream closes the file, but the stream can still be written to after.
+	private StoredOutputStream fileStream() {
+		return new StoredOutputStream() {
+			private final byte[] buffer = new byte[BUFFER_SIZE];
+			private int count = 0;
+			private FileOutputStream target = null;
+			@Override
+			public void write(int b) throws IOException {
+				synchronized (LOCK) {
+					if (count == buffer.length)
+						flushBuffer();
+					buffer[count++] = (byte) b;
 				}
-				@Override
-				public void write(int b) {
-					synchronized (LOCK) {
-						writeUnlocked(b);
-					}
+			}
+			@SuppressWarnings("NullableProblems")
+			@Override
+			public void write(byte b[], int off, int len) throws IOException {
+				if (b == null) {
+					throw new NullPointerException();
+				} else if ((off < 0) || (off > b.length) || (len < 0) ||
+						((off + len) > b.length) || ((off + len) < 0)) {
+					throw new IndexOutOfBoundsException();
+				} else if (len == 0) {
+					return;
 				}
-				public void writeUnlocked(int b) {
-					try {
-						out.write(b);
-					} catch (IOException e) {
-						try {
-							out = new FileOutputStream(file, true);
-						}
-						catch (Exception e1) {
-							throw new RuntimeException(e1);
-						}
+				synchronized (LOCK) {
+					if (len > buffer.length - count)
+						flushBuffer();
+					// big writes skip the buffer
+					if (len >= buffer.length)
+						append(b, off, len);
+					else {
+						System.arraycopy(b, off, buffer, count, len);
+						count += len;
 					}
 				}
-				@SuppressWarnings("NullableProblems")
-				@Override
-				public void write(byte b[], int off, int len) throws IOException {
-					if (b == null) {
-						throw new NullPointerException();
-					} else if ((off < 0) || (off > b.length) || (len < 0) ||
-							((off + len) > b.length) || ((off + len) < 0)) {
-						throw new IndexOutOfBoundsException();
-					} else if (len == 0) {
-						return;
-					}
-					for (int i = 0 ; i < len ; i++) {
-						writeUnlocked(b[off + i]);
-					}
+			}
+			@Override
+			public void flush() throws IOException {
+				synchronized (LOCK) {
+					flushBuffer();
 				}
-				@Override
-				public byte[] getData() {
-					try (FileInputStream in = new FileInputStream(file)) {
-						byte[] data = new byte[in.available()];
-						IOUtils.readFully(in, data);
-						return data;
-					}
-					catch (IOException e) {
+			}
+			private void flushBuffer() throws IOException {
+				if (count > 0) {
+					append(buffer, 0, count);
+					count = 0;
+				}
+			}
+			private void append(byte[] b, int off, int len) throws IOException {
+				if (target == null)
+					target = new FileOutputStream(file, true);
+				long before = length();
+				target.write(b, off, len);
+				size = before + len;
+				cache.append(uuid, b, off, len);
+			}
+			@Override
+			public void close() {
+				synchronized (LOCK) {
+					try {
+						flushBuffer();
+					} catch (IOException e) {
 						e.printStackTrace();
-						return new byte[0];
 					}
+					closeTarget();
 				}
-				@Override
-				public void dispose() {
+				locked = false;
+			}
+			private void closeTarget() {
+				if (target != null) {
 					try {
-						out.close();
+						target.close();
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
+					target = null;
+				}
+			}
+			@Override
+			public byte[] getData() {
+				try (FileInputStream in = new FileInputStream(file)) {
+					byte[] data = new byte[in.available()];
+					IOUtils.readFully(in, data);
+					return data;
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+					return new byte[0];
+				}
+			}
+			@Override
+			public void dispose() {
+				synchronized (LOCK) {
+					// anything still buffered belongs to the old contents
+					count = 0;
+					closeTarget();
 					try {
 						// open and close file, clears the buffer and data on disk
 						FileOutputStream temp = new FileOutputStream(file, false);
 						temp.close();
+						size = 0;
 					}
 					catch (IOException e) {
 						// failed to delete file
 						e.printStackTrace();
 					}
+					cache.remove(uuid);
 				}
-			};
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+			}
+		};
 	}
 	private abstract class StoredOutputStream extends OutputStream {
 		public abstract byte[] getData();
@@ -4,9 +4,10 @@ import ca.jarcode.consoles.computer.Computer;
 
 import java.io.*;
 import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -14,8 +15,26 @@ import java.util.zip.GZIPOutputStream;
 // and JSON/GSON is another degree worse for serialized size...
 public class SerializedFilesystem {
 
+	// journal record types
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_DELETE = 2;
+
+	// the journal is compacted into a new snapshot once it has this many records
+	private static final int COMPACT_RECORDS = 256;
+
+	private static final int BUFFER_SIZE = 8192;
+
 	private Computer computer;
 
+	// the blocks as of the last record that was written to the journal, which is what a new snapshot
+	// is made from. Only used by whoever is writing changes (and load, before that).
+	private Map<UUID, byte[]> written = new HashMap<>();
+	private UUID writtenRoot;
+	// records in the journal that are not part of the snapshot yet, only used with the written blocks
+	private int journalRecords = 0;
+	// set when writing changes failed, so the next save writes a whole new snapshot
+	private boolean rewrite = false;
+
 	// Okay, here's the pudding of how this works. Because our filesystem is reference based, storing everything in a
 	// tree won't cut it, and will produce duplicate file instances, but it still needs to be deserialized into a tree!
 
@@ -23,6 +42,8 @@ public class SerializedFilesystem {
 	// serialize, they can grab instances/trigger loads from other blocks/UUIDs. Sort of like how Java loads classes!
 	private HashMap<UUID, FSBlock> mappings = new HashMap<>();
 	private HashMap<UUID, byte[]> serializedMappings = new HashMap<>();
+	// folders that were deserialized with references to blocks under a different UUID
+	private Set<UUID> relinked = new HashSet<>();
 
 	private UUID root;
 
@@ -106,7 +127,8 @@ public class SerializedFilesystem {
 			public FSFolder deserialize(byte[] data, UUID uuid) {
 				ByteArrayInputStream buffer = new ByteArrayInputStream(data);
 				DataInputStream in = new DataInputStream(buffer);
-				FSFolder folder = new FSFolder();
+				// keep the UUID, so the journal can refer to the same folder after the next load
+				FSFolder folder = new FSFolder(uuid);
 				try {
 					while (buffer.available() > 0) {
 						int len = in.readInt(); // key length
@@ -123,6 +145,10 @@ public class SerializedFilesystem {
 						// deserialized if it doesn't already exist.
 						FSBlock block = SerializedFilesystem.this.deserialize(blockId);
 						folder.contents.put(key, block);
+						// provided programs come from the kernel, with a new UUID every time. The folder has
+						// to be saved again so it refers to the new one.
+						if (block != null && !block.uuid.equals(blockId))
+							relinked.add(uuid);
 					}
 				}
 				// won't happen
@@ -200,7 +226,10 @@ public class SerializedFilesystem {
 		}
 	}
 	public FSBlock deserialize() throws IOException {
-		return deserialize(root);
+		FSBlock block = deserialize(root);
+		// the tree holds the blocks now, and this object is kept around for saving
+		mappings.clear();
+		return block;
 	}
 	// Now, this is both our method for internal, recursive de-serialization, AND for triggering the de-serialization
 	// of the entire filesystem! There's a problem here, because we have no way of getting the root folder from our
@@ -239,6 +268,8 @@ public class SerializedFilesystem {
 			FSBlock block = serializer.deserialize(remaining, uuid);
 			block.permissions = permissions;
 			block.owner = owner;
+			// the block is the same as what's on disk, unless it refers to blocks that aren't
+			block.dirty = relinked.remove(uuid);
 			mappings.put(uuid, block);
 			return block;
 		}
@@ -249,16 +280,19 @@ public class SerializedFilesystem {
 	}
 	// write this entire filesystem somewhere! serialize(root) should be called first.
 	public void writeTo(OutputStream out) throws IOException {
+		write(out, root, serializedMappings);
+	}
+	private static void write(OutputStream out, UUID root, Map<UUID, byte[]> blocks) throws IOException {
 		DataOutputStream data = null;
 		GZIPOutputStream wrapped = null;
 		try {
-			wrapped = new GZIPOutputStream(out, 512, true);
+			wrapped = new GZIPOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), BUFFER_SIZE, true);
 			data = new DataOutputStream(wrapped);
 			// write the root folder's UUID
 			data.writeLong(root.getMostSignificantBits());
 			data.writeLong(root.getLeastSignificantBits());
 			// iterate through all of the mappings and write them
-			for (Map.Entry<UUID, byte[]> entry : serializedMappings.entrySet()) {
+			for (Map.Entry<UUID, byte[]> entry : blocks.entrySet()) {
 				data.writeBoolean(true);
 				data.writeLong(entry.getKey().getMostSignificantBits());
 				data.writeLong(entry.getKey().getLeastSignificantBits());
@@ -282,8 +316,8 @@ public class SerializedFilesystem {
 		DataInputStream data = null;
 		GZIPInputStream wrapped = null;
 		try {
-			wrapped = new GZIPInputStream(in, 512);
-			data = new DataInputStream(wrapped);
+			wrapped = new GZIPInputStream(in, BUFFER_SIZE);
+			data = new DataInputStream(new BufferedInputStream(wrapped, BUFFER_SIZE));
 			long most = data.readLong();
 			long least = data.readLong();
 			root = new UUID(most, least);
@@ -297,7 +331,7 @@ public class SerializedFilesystem {
 					int read;
 					int total = 0;
 					// this is to account for underlying streams that need to read large arrays in pieces.
-					while ((read = data.read(bytes, total, len - total)) != 0) {
+					while ((read = data.read(bytes, total, len - total)) > 0) {
 						total += read;
 					}
 					if (total != len) {
@@ -317,4 +351,232 @@ public class SerializedFilesystem {
 				data.close();
 		}
 	}
+
+	// The snapshot (fs.dat) is only rewritten when the journal is compacted. In between, saves append a
+	// record to the journal for each block that changed or was removed:
+	//
+	// int length, byte type, long most, long least, [block data], int crc
+	//
+	// where the length and the crc cover everything from the type up to the crc. Records only hold the
+	// whole state of a block, so replaying a record that's already in the snapshot changes nothing.
+
+	// reads the snapshot, and then the journal on top of it
+	public synchronized void load(File snapshot, File journal) throws IOException {
+		readFrom(new FileInputStream(snapshot));
+		journalRecords = 0;
+		if (journal.exists())
+			replay(journal);
+		written = new HashMap<>(serializedMappings);
+		writtenRoot = root;
+	}
+
+	// a record that was cut off or corrupted (by a crash) ends the journal. It is truncated there, so
+	// new records aren't appended after it.
+	private void replay(File journal) throws IOException {
+		long valid = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal), BUFFER_SIZE))) {
+			CRC32 crc = new CRC32();
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				}
+				catch (EOFException e) {
+					break;
+				}
+				// type and uuid are always there
+				if (length < 17 || length > journal.length())
+					break;
+				byte[] record = new byte[length];
+				try {
+					in.readFully(record);
+					crc.reset();
+					crc.update(record);
+					if (in.readInt() != (int) crc.getValue())
+						break;
+				}
+				catch (EOFException e) {
+					break;
+				}
+				apply(serializedMappings, record);
+				journalRecords++;
+				valid += length + 8;
+			}
+		}
+		if (valid < journal.length()) {
+			try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+				file.setLength(valid);
+			}
+		}
+	}
+
+	// applies a record (without its length and crc) to the blocks
+	private static void apply(Map<UUID, byte[]> blocks, byte[] record) throws IOException {
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+		byte type = data.readByte();
+		UUID uuid = new UUID(data.readLong(), data.readLong());
+		if (type == RECORD_PUT)
+			blocks.put(uuid, Arrays.copyOfRange(record, 17, record.length));
+		else
+			blocks.remove(uuid);
+	}
+
+	private void record(DataOutputStream out, byte type, UUID uuid, byte[] data) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(17 + (data == null ? 0 : data.length));
+		DataOutputStream record = new DataOutputStream(buffer);
+		record.writeByte(type);
+		record.writeLong(uuid.getMostSignificantBits());
+		record.writeLong(uuid.getLeastSignificantBits());
+		if (data != null)
+			record.write(data);
+		byte[] bytes = buffer.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		out.writeInt((int) crc.getValue());
+	}
+
+	// Serializes the blocks that changed since the last call, and records the blocks that are no longer
+	// in the tree. Only dirty blocks are serialized, the rest of the tree is just walked to find them.
+	// Returns the journal records for the changes, which is empty if nothing changed.
+	public synchronized byte[] changes(FSBlock root) {
+		this.root = root.uuid;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		Set<UUID> visited = new HashSet<>();
+		try {
+			changes(root, visited, out);
+			Iterator<UUID> it = serializedMappings.keySet().iterator();
+			while (it.hasNext()) {
+				UUID uuid = it.next();
+				if (!visited.contains(uuid)) {
+					it.remove();
+					record(out, RECORD_DELETE, uuid, null);
+				}
+			}
+		}
+		// won't happen
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		return buffer.toByteArray();
+	}
+	// the contents of a folder are recorded before the folder itself, so a save that was cut off never
+	// leaves a folder referring to blocks that aren't in the journal.
+	private void changes(FSBlock block, Set<UUID> visited, DataOutputStream out) throws IOException {
+		if (!visited.add(block.uuid))
+			return;
+		boolean changed = block.dirty || !serializedMappings.containsKey(block.uuid);
+		// cleared first, so changes made while this is serialized mark it again
+		if (changed)
+			block.dirty = false;
+		if (block instanceof FSFolder) {
+			for (FSBlock entry : ((FSFolder) block).contents.values()) {
+				if (map.containsKey(entry.id)) // filter out device file types, etc
+					changes(entry, visited, out);
+			}
+		}
+		if (changed) {
+			byte[] data = toBytes(block);
+			byte[] old = serializedMappings.put(block.uuid, data);
+			if (old == null || !Arrays.equals(old, data))
+				record(out, RECORD_PUT, block.uuid, data);
+		}
+	}
+
+	// The changes for one save, captured from the tree. Writing them doesn't touch the tree, so this
+	// can be done on another thread while the computer keeps running.
+	public static final class Changes {
+		private final UUID root;
+		// journal records, if there is a snapshot to add them to
+		private final byte[] records;
+		// the whole filesystem otherwise
+		private final Map<UUID, byte[]> snapshot;
+		private Changes(UUID root, byte[] records, Map<UUID, byte[]> snapshot) {
+			this.root = root;
+			this.records = records;
+			this.snapshot = snapshot;
+		}
+	}
+
+	// captures the changes since the last capture. If there isn't a snapshot to add to yet, the whole
+	// filesystem is captured to be written as a new snapshot instead.
+	public synchronized Changes capture(FSBlock root, File snapshot) {
+		if (rewrite || !snapshot.exists() || snapshot.length() == 0 || !root.uuid.equals(this.root)) {
+			rewrite = false;
+			serializedMappings.clear();
+			changes(root);
+			return new Changes(this.root, null, new HashMap<>(serializedMappings));
+		}
+		return new Changes(this.root, changes(root), null);
+	}
+
+	// writes captured changes. Changes have to be written one at a time, in the order they were captured.
+	public void write(Changes changes, File snapshot, File journal) throws IOException {
+		try {
+			if (changes.snapshot != null) {
+				writeSnapshot(snapshot, changes.root, changes.snapshot);
+				if (journal.exists() && !journal.delete())
+					throw new IOException("failed to delete journal: " + journal.getAbsolutePath());
+				written = changes.snapshot;
+				writtenRoot = changes.root;
+				journalRecords = 0;
+				return;
+			}
+			if (changes.records.length == 0)
+				return;
+			try (FileOutputStream out = new FileOutputStream(journal, true)) {
+				out.write(changes.records);
+				// a crash should never lose more than the record being written
+				out.getFD().sync();
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(changes.records));
+			while (in.available() > 0) {
+				byte[] record = new byte[in.readInt()];
+				in.readFully(record);
+				in.readInt(); // crc
+				apply(written, record);
+				journalRecords++;
+			}
+			writtenRoot = changes.root;
+			compact(snapshot, journal);
+		}
+		catch (IOException e) {
+			// the changes are lost from the journal, but they are still in the tree
+			synchronized (this) {
+				rewrite = true;
+			}
+			throw e;
+		}
+	}
+
+	// writes the snapshot to a temporary file first, so it's never seen half-written
+	private static void writeSnapshot(File snapshot, UUID root, Map<UUID, byte[]> blocks) throws IOException {
+		File temp = new File(snapshot.getAbsolutePath() + ".tmp");
+		try {
+			try (FileOutputStream out = new FileOutputStream(temp)) {
+				write(out, root, blocks);
+			}
+			Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			if (temp.exists())
+				temp.delete();
+		}
+	}
+
+	// once the journal is long enough, the blocks as of its last record are written as a new snapshot,
+	// and the journal is cleared. Changes that were captured after that aren't part of the snapshot, they
+	// are written to the journal afterwards. If the journal isn't cleared (a crash), replaying it over the
+	// snapshot changes nothing, since every block ends up with the state from its last record.
+	private void compact(File snapshot, File journal) throws IOException {
+		if (journalRecords < COMPACT_RECORDS)
+			return;
+		writeSnapshot(snapshot, writtenRoot, written);
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+			file.setLength(0);
+		}
+		journalRecords = 0;
+	}
 }
@@ -0,0 +1,104 @@
+package ca.jarcode.consoles.computer.filesystem;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/*
+
+Cache for the contents of a computer's stored files, so files that are read often (programs,
+configs, etc) don't have to be read from disk every time they're opened.
+
+Files are cached whole, since every reader wants an in-memory stream over the whole file
+anyway. Open streams share the cached array: appends only write past the end of the streams,
+and other writes copy the array first, so a stream never sees data change under it.
+
+ */
+public class StoredFileCache {
+
+	// total bytes of file contents per computer
+	private static final int CAPACITY = 256 * 1024;
+	// files bigger than this are never cached
+	private static final int MAX_ENTRY = 64 * 1024;
+
+	private static final class Entry {
+		byte[] data;
+		int length;
+		Entry(byte[] data, int length) {
+			this.data = data;
+			this.length = length;
+		}
+	}
+
+	// least recently used first
+	private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private int used = 0;
+
+	// returns a stream over the cached contents, or null if the file isn't cached
+	synchronized ByteArrayInputStream open(UUID uuid) {
+		Entry entry = entries.get(uuid);
+		return entry == null ? null : new ByteArrayInputStream(entry.data, 0, entry.length);
+	}
+
+	// caches the contents of a file that was just read, the array is owned by the cache after this
+	synchronized void put(UUID uuid, byte[] data, int length) {
+		remove(uuid);
+		if (length > MAX_ENTRY)
+			return;
+		entries.put(uuid, new Entry(data, length));
+		used += data.length;
+		evict();
+	}
+
+	synchronized void append(UUID uuid, byte[] b, int off, int len) {
+		Entry entry = entries.get(uuid);
+		if (entry == null)
+			return;
+		if (entry.length + len > MAX_ENTRY) {
+			remove(uuid);
+			return;
+		}
+		if (entry.length + len > entry.data.length) {
+			// grow into a new array, open streams keep the old one
+			byte[] data = new byte[Math.min(Math.max(entry.data.length * 2, entry.length + len), MAX_ENTRY)];
+			System.arraycopy(entry.data, 0, data, 0, entry.length);
+			used += data.length - entry.data.length;
+			entry.data = data;
+		}
+		System.arraycopy(b, off, entry.data, entry.length, len);
+		entry.length += len;
+		evict();
+	}
+
+	synchronized void write(UUID uuid, long position, byte[] b, int off, int len) {
+		Entry entry = entries.get(uuid);
+		if (entry == null)
+			return;
+		long end = Math.max(position + len, entry.length);
+		if (end > MAX_ENTRY) {
+			remove(uuid);
+			return;
+		}
+		// copy first, open streams could be reading the old contents
+		byte[] data = new byte[(int) end];
+		System.arraycopy(entry.data, 0, data, 0, entry.length);
+		System.arraycopy(b, off, data, (int) position, len);
+		put(uuid, data, data.length);
+	}
+
+	synchronized void remove(UUID uuid) {
+		Entry entry = entries.remove(uuid);
+		if (entry != null)
+			used -= entry.data.length;
+	}
+
+	// drops the least recently used files until the cache is under its capacity
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (used > CAPACITY && it.hasNext()) {
+			used -= it.next().data.length;
+			it.remove();
+		}
+	}
+}
@@ -5,10 +5,12 @@ import ca.jarcode.consoles.computer.Computer;
 import ca.jarcode.consoles.computer.interpreter.types.LuaInteraction;
 import ca.jarcode.consoles.internal.ConsoleComponent;
 import ca.jarcode.consoles.internal.InputComponent;
+import ca.jarcode.consoles.internal.OffscreenCanvas;
 import org.bukkit.entity.Player;
 
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
@@ -16,22 +18,79 @@ import java.util.function.Consumer;
 
 Component used to render content/actions from Lua code.
 
+Frames are drawn off-screen, on top of the last frame that was presented, and then compared
+against it. Painting only blits the region that changed since the last frame a context saw.
+Presenting a frame waits for the last one to be painted first (up to a limit), so programs
+that draw as fast as they can are paced by the painter instead of queueing up frames.
+
  */
 public class BufferedFrameComponent extends ConsoleComponent implements InputComponent {
 
 	private final CopyOnWriteArrayList<LuaInteraction> interactions = new CopyOnWriteArrayList<>();
 	private final Object STR_LOCK = new Object();
 	private StringBuilder input = new StringBuilder();
-	private final CopyOnWriteArrayList<Consumer<CanvasGraphics>> ops = new CopyOnWriteArrayList<>();
+
+	// how long presenting a frame can wait for the last frame to be painted
+	private static final long FRAME_TIMEOUT = 100;
+	private static final byte BACKGROUND = (byte) 119;
+
+	private final Object FRAME_LOCK = new Object();
+	// the canvas that is shown, and the canvas the next frame is drawn on
+	private OffscreenCanvas front, back;
+	// region where the back canvas is out of date, only accessed by the presenting thread
+	private int[] stale = null;
+	// region that changed in the latest frame, and the amount of frames that changed something
+	private int[] changed = null;
+	private long frame = 0;
+	private long paintedFrame = 0;
+	// the last frame that was painted for each context
+	private final Map<String, PaintedFrame> painted = new HashMap<>();
 
 	public BufferedFrameComponent(Computer computer) {
 		super(computer.getViewWidth(), computer.getViewHeight(), computer.getConsole());
 		this.setEnabled(true);
+		this.setContextInvariant(true);
+		// the canvases start out as the background under this component
+		this.setBackground(BACKGROUND);
+		front = new OffscreenCanvas(getWidth(), getHeight(), BACKGROUND);
+		back = new OffscreenCanvas(getWidth(), getHeight(), BACKGROUND);
 	}
 
-	public void setOperations(Collection<Consumer<CanvasGraphics>> ops) {
-		this.ops.clear();
-		this.ops.addAll(ops);
+	// draws the frame over the last one and shows it, if anything changed
+	public void present(Consumer<OffscreenCanvas> draw) {
+		synchronized (FRAME_LOCK) {
+			long deadline = System.currentTimeMillis() + FRAME_TIMEOUT;
+			try {
+				while (paintedFrame < frame) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0)
+						break;
+					FRAME_LOCK.wait(remaining);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		// the front canvas only changes in this method, so it can be read without the lock
+		if (stale != null) {
+			back.copy(front, stale);
+			stale = null;
+		}
+		back.touched();
+		draw.accept(back);
+		int[] touched = back.touched();
+		int[] diff = touched == null ? null : back.diff(front, touched);
+		if (diff == null)
+			return;
+		synchronized (FRAME_LOCK) {
+			OffscreenCanvas shown = front;
+			front = back;
+			back = shown;
+			stale = diff;
+			changed = diff;
+			frame++;
+		}
 		repaint();
 	}
 
@@ -61,8 +120,26 @@ public class BufferedFrameComponent extends ConsoleComponent implements InputCom
 
 	@Override
 	public void paint(CanvasGraphics g, String context) {
-		for (Consumer<CanvasGraphics> op : ops) {
-			op.accept(g);
+		int generation = getRenderer().backgroundGeneration();
+		synchronized (FRAME_LOCK) {
+			PaintedFrame last = painted.get(context);
+			if (last != null && last.generation != generation)
+				painted.clear();
+			// only the latest change has to be drawn if this context saw the frame before it
+			if (last == null || last.generation != generation || last.frame < frame - 1)
+				front.paint(g);
+			else if (last.frame == frame - 1)
+				front.paint(g, changed);
+			painted.put(context, new PaintedFrame(generation, frame));
+			paintedFrame = frame;
+			FRAME_LOCK.notifyAll();
+		}
+	}
+
+	@Override
+	public void onContextRemoved(String context) {
+		synchronized (FRAME_LOCK) {
+			painted.remove(context);
 		}
 	}
 
@@ -73,4 +150,13 @@ public class BufferedFrameComponent extends ConsoleComponent implements InputCom
 			this.input.append('\n');
 		}
 	}
+
+	private static class PaintedFrame {
+		final int generation;
+		final long frame;
+		PaintedFrame(int generation, long frame) {
+			this.generation = generation;
+			this.frame = frame;
+		}
+	}
 }
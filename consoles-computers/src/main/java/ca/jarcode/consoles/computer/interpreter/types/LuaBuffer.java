@@ -1,6 +1,5 @@
 package ca.jarcode.consoles.computer.interpreter.types;
 
-import ca.jarcode.consoles.Computers;
 import ca.jarcode.consoles.computer.interpreter.BufferedFrameComponent;
 import ca.jarcode.consoles.computer.interpreter.SandboxProgram;
 import ca.jarcode.consoles.computer.manual.Arg;
@@ -17,11 +16,8 @@ import ca.jarcode.consoles.computer.manual.TypeManual;
 @SuppressWarnings("unused")
 public class LuaBuffer {
 
-	private static final int MIN_UPDATE_TIME = 100;
-
 	private SandboxProgram program;
 	private BufferedFrameComponent component;
-	private long lastUpdate = -1;
 	private final int index;
 	private Runnable update;
 
@@ -38,24 +34,12 @@ public class LuaBuffer {
 	public void update(
 			@Arg(name = "id", info = "the id of the frame to use, retrieved with LuaFrame:id()") Integer id) {
 		LuaFrame frame = program.framePool.get(id);
-		if (System.currentTimeMillis() - lastUpdate >= MIN_UPDATE_TIME) {
-			lastUpdate = System.currentTimeMillis();
-		}
-		else {
-			try {
-				Thread.sleep(MIN_UPDATE_TIME - (System.currentTimeMillis() - lastUpdate));
-				update(id);
-			}
-			catch (InterruptedException e) {
-				if (Computers.debug)
-					e.printStackTrace();
-			}
-		}
-		update.run();
 		if (frame != null) {
 			frame.remove();
-			component.setOperations(frame.operations);
-			frame.operations.clear();
+			// waits for the last frame to be shown
+			component.present(frame::render);
+			frame.clear();
+			update.run();
 		}
 		else throw new IllegalArgumentException("Invalid frame");
 	}
@@ -51,6 +51,54 @@ public class LuaFile extends LuaBlock {
 		return false;
 	}
 
+	@FunctionManual("Writes the given text at a position in the file, overwriting what was there and extending " +
+			"the file if needed. Only works for normal files.")
+	public boolean writeAt(
+			@Arg(name = "position", info = "the position to write at, in bytes") int position,
+			@Arg(name = "text", info = "the text to write to the file") String text) {
+		if (!(file instanceof FSStoredFile) || position < 0)
+			return false;
+		byte[] data = text.getBytes(Charset.forName("UTF-8"));
+		try {
+			((FSStoredFile) file).write(position, data, 0, data.length);
+			return true;
+		}
+		catch (IOException e) {
+			if (Computers.debug)
+				e.printStackTrace();
+		}
+		return false;
+	}
+
+	@FunctionManual("Reads up to the given amount of bytes from a position in the file into a string, without " +
+			"reading the rest of the file. Returns nil if the position is at or past the end of the file. Only " +
+			"works for normal files.")
+	public String readAt(
+			@Arg(name = "position", info = "the position to read from, in bytes") int position,
+			@Arg(name = "length", info = "the maximum amount of bytes to read") int length) {
+		if (!(file instanceof FSStoredFile) || position < 0 || length < 0)
+			return null;
+		FSStoredFile stored = (FSStoredFile) file;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[Math.min(length, 8192)];
+		try {
+			while (out.size() < length) {
+				int read = stored.read(position + out.size(), buffer, 0, Math.min(buffer.length, length - out.size()));
+				if (read <= 0)
+					break;
+				out.write(buffer, 0, read);
+			}
+			if (out.size() == 0 && length > 0)
+				return null;
+			return new String(out.toByteArray(), Charset.forName("UTF-8"));
+		}
+		catch (IOException e) {
+			if (Computers.debug)
+				e.printStackTrace();
+		}
+		return null;
+	}
+
 	@FunctionManual("Reads all of this file's contents into a byte array. The LuaFile:read() function should " +
 			"be used over this to conserve memory.")
 	public byte[] data() {
@@ -98,6 +146,11 @@ public class LuaFile extends LuaBlock {
 		return null;
 	}
 
+	@FunctionManual("Returns the size of this file in bytes.")
+	public int size() {
+		return file.getSize();
+	}
+
 	@FunctionManual("If this is a normal file, this will close all active streams for the given file. If this is not " +
 			"a normal file, this call is discarded.")
 	public void close() {
@@ -1,18 +1,18 @@
 package ca.jarcode.consoles.computer.interpreter.types;
 
-import ca.jarcode.consoles.api.CanvasGraphics;
 import ca.jarcode.consoles.CColor;
 import ca.jarcode.consoles.computer.Computer;
 import ca.jarcode.consoles.computer.manual.Arg;
 import ca.jarcode.consoles.computer.manual.FunctionManual;
 import ca.jarcode.consoles.computer.manual.TypeManual;
+import ca.jarcode.consoles.internal.OffscreenCanvas;
 import org.bukkit.ChatColor;
 import org.bukkit.map.MapFont;
 import org.bukkit.map.MinecraftFont;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.function.Consumer;
 
 @TypeManual(
 		value = "Represents a single frame that can be drawn to the screen. Contains " +
@@ -39,7 +39,13 @@ public class LuaFrame {
 		else return (byte) 0;
 	}
 
-	protected List<Consumer<CanvasGraphics>> operations = new ArrayList<>();
+	// opcodes for the display list, followed by their arguments
+	private static final int SET = 0, BOX = 1, FILL = 2, WRITE = 3;
+
+	// the drawing done on this frame, as opcodes and their arguments. Text is stored separately.
+	private int[] ops = new int[64];
+	private int size = 0;
+	private final List<String> text = new ArrayList<>();
 	private Computer computer;
 	private int id;
 	private Runnable remove;
@@ -71,7 +77,7 @@ public class LuaFrame {
 			@Arg(name = "c", info = "the minecraft map color to use") Integer c) {
 		if (removed) return;
 		if (x >= 0 && y >= 0 && getHeight() > y && getWidth() > x)
-			operations.add((g) -> g.draw(x, y, convert(c)));
+			record(SET, x, y, convert(c), 0, 0);
 	}
 	@FunctionManual("Returns the length, in pixels, of the text passed through this function. Ignores " +
 			"color formatting.")
@@ -89,8 +95,8 @@ public class LuaFrame {
 		if (removed) return;
 		text = ChatColor.translateAlternateColorCodes('&', text);
 		text = text.replace("\n", "");
-		final String t = text;
-		operations.add((g) -> g.drawFormatted(x, y, t));
+		record(WRITE, x, y, this.text.size(), 0, 0);
+		this.text.add(text);
 	}
 	@FunctionManual("Draws a filled box in the given area.")
 	public void box(
@@ -100,27 +106,13 @@ public class LuaFrame {
 			@Arg(name = "h", info = "box height") Integer h,
 			@Arg(name = "c", info = "box color") Integer c) {
 		if (removed) return;
-		byte converted = convert(c);
-		operations.add((g) -> {
-			for (int t = x; t < x + w; t++) {
-				for (int j = y; j < y + h; j++) {
-					g.draw(x, y, converted);
-				}
-			}
-		});
+		record(BOX, x, y, w, h, convert(c));
 	}
 	@FunctionManual("Fills the entire frame with the given color")
 	public void fill(
 			@Arg(name = "c", info = "the color to fill with") Integer c) {
 		if (removed) return;
-		byte converted = convert(c);
-		operations.add((g) -> {
-			for (int t = 0; t < g.getWidth(); t++) {
-				for (int j = 0; j < g.getHeight(); j++) {
-					g.draw(t, j, converted);
-				}
-			}
-		});
+		record(FILL, convert(c), 0, 0, 0, 0);
 	}
 	@FunctionManual("Returns the width of the frame")
 	public int getWidth() {
@@ -132,4 +124,33 @@ public class LuaFrame {
 		if (removed) return -1;
 		return computer.getViewHeight();
 	}
+
+	// every operation takes up the same amount of space, so the list can be walked in fixed steps
+	private void record(int op, int a, int b, int c, int d, int e) {
+		if (size + 6 > ops.length)
+			ops = Arrays.copyOf(ops, ops.length * 2);
+		ops[size] = op;
+		ops[size + 1] = a;
+		ops[size + 2] = b;
+		ops[size + 3] = c;
+		ops[size + 4] = d;
+		ops[size + 5] = e;
+		size += 6;
+	}
+	// draws everything that was done on this frame onto the canvas
+	void render(OffscreenCanvas canvas) {
+		canvas.setFont(FONT);
+		for (int t = 0; t < size; t += 6) {
+			switch (ops[t]) {
+				case SET: canvas.set(ops[t + 1], ops[t + 2], (byte) ops[t + 3]); break;
+				case BOX: canvas.fill(ops[t + 1], ops[t + 2], ops[t + 3], ops[t + 4], (byte) ops[t + 5]); break;
+				case FILL: canvas.fill(0, 0, canvas.getWidth(), canvas.getHeight(), (byte) ops[t + 1]); break;
+				case WRITE: canvas.drawFormatted(ops[t + 1], ops[t + 2], text.get(ops[t + 3])); break;
+			}
+		}
+	}
+	void clear() {
+		size = 0;
+		text.clear();
+	}
 }
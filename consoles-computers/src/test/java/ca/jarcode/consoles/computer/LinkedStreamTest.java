@@ -0,0 +1,132 @@
+package ca.jarcode.consoles.computer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class LinkedStreamTest {
+
+	private static byte[] sequence(int start, int length) {
+		byte[] data = new byte[length];
+		for (int t = 0; t < length; t++)
+			data[t] = (byte) (start + t);
+		return data;
+	}
+
+	private static byte[] read(LinkedStream stream, int length) {
+		byte[] data = new byte[length];
+		int total = 0;
+		while (total < length) {
+			int read = stream.read(data, total, length - total, 100);
+			assertTrue("stream ran out of data", read > 0);
+			total += read;
+		}
+		return data;
+	}
+
+	@Test
+	public void wrapsAround() {
+		LinkedStream stream = new LinkedStream();
+		stream.write(sequence(0, 200), 0, 200);
+		assertArrayEquals(sequence(0, 150), read(stream, 150));
+		// the second write starts at the end of the buffer, and continues at the start
+		stream.write(sequence(200, 200), 0, 200);
+		assertEquals(250, stream.available());
+		assertArrayEquals(sequence(150, 250), read(stream, 250));
+	}
+
+	@Test
+	public void grows() {
+		LinkedStream stream = new LinkedStream();
+		stream.write(sequence(0, 100), 0, 100);
+		assertArrayEquals(sequence(0, 60), read(stream, 60));
+		// grows while the unread data is split over the end of the buffer
+		stream.write(sequence(100, 200), 0, 200);
+		stream.write(sequence(300, 5000), 0, 5000);
+		assertArrayEquals(sequence(60, 5240), read(stream, 5240));
+	}
+
+	@Test
+	public void singleBytes() throws IOException {
+		LinkedStream stream = new LinkedStream();
+		OutputStream out = stream.createOutput();
+		out.write(1);
+		out.write(255);
+		assertEquals(1, stream.read());
+		assertEquals(255, stream.read());
+	}
+
+	@Test
+	public void endOfStream() throws IOException {
+		LinkedStream stream = new LinkedStream();
+		stream.write(sequence(0, 10), 0, 10);
+		stream.createOutput().write(-1);
+		// what was written before the end is still read
+		assertEquals(11, stream.available());
+		assertArrayEquals(sequence(0, 10), read(stream, 10));
+		assertEquals(-1, stream.read(new byte[4], 0, 4, 100));
+		assertEquals(-1, stream.read());
+		// writes after the end are discarded
+		stream.write(sequence(0, 10), 0, 10);
+		assertEquals(-1, stream.read(new byte[4], 0, 4));
+	}
+
+	@Test
+	public void timedRead() {
+		LinkedStream stream = new LinkedStream();
+		long start = System.currentTimeMillis();
+		assertEquals(0, stream.read(new byte[4], 0, 4, 50));
+		assertTrue(System.currentTimeMillis() - start >= 45);
+	}
+
+	@Test
+	public void close() {
+		LinkedStream stream = new LinkedStream();
+		boolean[] closed = new boolean[1];
+		stream.registerCloseListener(() -> closed[0] = true);
+		stream.write(sequence(0, 10), 0, 10);
+		stream.close();
+		assertTrue(closed[0]);
+		assertEquals(-1, stream.read(new byte[4], 0, 4, 100));
+		stream.write(sequence(0, 10), 0, 10);
+		assertEquals(-1, stream.read(new byte[4], 0, 4, 100));
+	}
+
+	@Test
+	public void writerWaitsForReader() throws InterruptedException {
+		LinkedStream stream = new LinkedStream(16, 5000);
+		byte[] data = sequence(0, 64);
+		Thread writer = new Thread(() -> stream.write(data, 0, data.length));
+		writer.start();
+		writer.join(200);
+		// stuck at the limit until the reader catches up
+		assertTrue(writer.isAlive());
+		assertEquals(16, stream.available());
+		assertArrayEquals(data, read(stream, 64));
+		writer.join();
+	}
+
+	@Test
+	public void growsPastLimitWithoutReader() {
+		LinkedStream stream = new LinkedStream(16, 100);
+		long start = System.currentTimeMillis();
+		stream.write(sequence(0, 32), 0, 32);
+		assertTrue(System.currentTimeMillis() - start >= 90);
+		assertEquals(32, stream.available());
+
+		// the reader already kept a writer waiting, so this doesn't wait again
+		start = System.currentTimeMillis();
+		stream.write(sequence(32, 32), 0, 32);
+		assertTrue(System.currentTimeMillis() - start < 90);
+		assertArrayEquals(sequence(0, 64), read(stream, 64));
+
+		// caught up, so writers wait again
+		start = System.currentTimeMillis();
+		stream.write(sequence(0, 32), 0, 32);
+		assertTrue(System.currentTimeMillis() - start >= 90);
+		assertArrayEquals(sequence(0, 32), read(stream, 32));
+	}
+}
@@ -0,0 +1,91 @@
+package ca.jarcode.consoles.computer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MapRegionFileTest {
+
+	private File path;
+	private MapRegionFile region;
+
+	@Before
+	public void open() throws IOException {
+		path = File.createTempFile("region", ".dat");
+		region = new MapRegionFile(path);
+	}
+
+	@After
+	public void close() throws IOException {
+		region.close();
+		path.delete();
+	}
+
+	// random data doesn't compress, so it takes up several sectors
+	private static byte[] noise(long seed) {
+		byte[] colors = new byte[128 * 128];
+		new Random(seed).nextBytes(colors);
+		return colors;
+	}
+
+	private static byte[] flat(byte color) {
+		byte[] colors = new byte[128 * 128];
+		Arrays.fill(colors, color);
+		return colors;
+	}
+
+	@Test
+	public void missingSection() throws IOException {
+		assertFalse(region.contains(3, 4));
+		assertNull(region.read(3, 4));
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		byte[] a = noise(1), b = flat((byte) 34);
+		region.write(0, 0, a);
+		region.write(31, 31, b);
+		assertTrue(region.contains(0, 0));
+		assertArrayEquals(a, region.read(0, 0));
+		assertArrayEquals(b, region.read(31, 31));
+		// coordinates wrap around to the sections in this file
+		assertArrayEquals(b, region.read(-1, -1));
+
+		region.close();
+		region = new MapRegionFile(path);
+		assertArrayEquals(a, region.read(0, 0));
+		assertArrayEquals(b, region.read(31, 31));
+		assertFalse(region.contains(1, 0));
+	}
+
+	@Test
+	public void reusesFreedSectors() throws IOException {
+		region.write(0, 0, noise(1));
+		region.write(1, 0, noise(2));
+		long length = path.length();
+		// shrinks in place, leaving free sectors before the second section
+		region.write(0, 0, flat((byte) 1));
+		region.write(2, 0, flat((byte) 2));
+		region.write(3, 0, flat((byte) 3));
+		assertEquals(length, path.length());
+
+		// growing past the sectors it has moves the section to the end
+		byte[] grown = noise(3);
+		region.write(0, 0, grown);
+		assertTrue(path.length() > length);
+
+		region.close();
+		region = new MapRegionFile(path);
+		assertArrayEquals(grown, region.read(0, 0));
+		assertArrayEquals(noise(2), region.read(1, 0));
+		assertArrayEquals(flat((byte) 2), region.read(2, 0));
+		assertArrayEquals(flat((byte) 3), region.read(3, 0));
+	}
+}
@@ -0,0 +1,113 @@
+package ca.jarcode.consoles.computer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class SaveChainTest {
+
+	private final ExecutorService io = Executors.newSingleThreadExecutor();
+	private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+	private final SaveChain saves = new SaveChain();
+	private volatile String hostname = "old";
+
+	@After
+	public void cleanup() {
+		io.shutdownNow();
+	}
+
+	// captures the hostname now, like a computer does, and writes to that folder once 'written' opens
+	private CompletableFuture<Void> save(CompletableFuture<Void> after, CountDownLatch written) {
+		String captured = hostname;
+		return after.thenRunAsync(() -> {
+			try {
+				written.await();
+			}
+			catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			events.add("write " + captured);
+		}, io);
+	}
+
+	// renames like a computer does, on the I/O thread once the last save is written
+	private CompletableFuture<Void> rename(CompletableFuture<Void> after) {
+		return after.thenRunAsync(() -> events.add("rename"), io);
+	}
+
+	@Test
+	public void renameAfterSave() {
+		CountDownLatch written = new CountDownLatch(1);
+		saves.save(after -> save(after, written));
+
+		// doesn't wait for the save captured under the old name
+		hostname = "new";
+		saves.then(this::rename);
+		saves.save(after -> save(after, new CountDownLatch(0)));
+		assertTrue(events.isEmpty());
+
+		written.countDown();
+		saves.last().join();
+		assertEquals(Arrays.asList("write old", "rename", "write new"), events);
+	}
+
+	@Test
+	public void writtenInOrder() {
+		CountDownLatch written = new CountDownLatch(1);
+		saves.save(after -> save(after, written));
+		hostname = "second";
+		CompletableFuture<Void> second = saves.save(after -> save(after, new CountDownLatch(0)));
+		written.countDown();
+		second.join();
+		assertEquals(Arrays.asList("write old", "write second"), events);
+	}
+
+	@Test
+	public void holdsBackBackgroundSaves() {
+		CountDownLatch written = new CountDownLatch(1);
+		CompletableFuture<Void> first = saves.saveIfIdle(after -> save(after, written));
+		assertNotNull(first);
+		assertNull(saves.saveIfIdle(after -> save(after, written)));
+		assertNull(saves.saveIfIdle(after -> save(after, written)));
+		written.countDown();
+		first.join();
+
+		// both requests are folded into one save
+		assertTrue(saves.takePending());
+		assertFalse(saves.takePending());
+		assertNotNull(saves.saveIfIdle(after -> save(after, new CountDownLatch(0))));
+		saves.last().join();
+		assertEquals(Arrays.asList("write old", "write old"), events);
+	}
+
+	@Test
+	public void waitingDropsHeldBackSave() {
+		CountDownLatch written = new CountDownLatch(1);
+		saves.saveIfIdle(after -> save(after, written));
+		assertNull(saves.saveIfIdle(after -> save(after, written)));
+		written.countDown();
+		saves.last().join();
+		assertFalse(saves.takePending());
+	}
+
+	@Test
+	public void renameKeepsHeldBackSave() {
+		CountDownLatch written = new CountDownLatch(1);
+		saves.saveIfIdle(after -> save(after, written));
+		assertNull(saves.saveIfIdle(after -> save(after, written)));
+		CompletableFuture<Void> rename = saves.then(this::rename);
+		written.countDown();
+		rename.join();
+		assertTrue(saves.takePending());
+	}
+}
@@ -0,0 +1,197 @@
+package ca.jarcode.consoles.computer.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SerializedFilesystemTest {
+
+	private File dir, snapshot, journal;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("fs").toFile();
+		snapshot = new File(dir, "fs.dat");
+		journal = new File(dir, "fs.journal");
+	}
+
+	@After
+	public void cleanup() {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		dir.delete();
+	}
+
+	// folders don't need a running computer to be serialized
+	private static FSFolder tree() {
+		FSFolder root = new FSFolder();
+		FSFolder bin = new FSFolder();
+		root.contents.put("bin", bin);
+		root.contents.put("home", new FSFolder());
+		bin.contents.put("local", new FSFolder());
+		return root;
+	}
+
+	private static void save(SerializedFilesystem fs, FSFolder root, File snapshot, File journal) throws IOException {
+		fs.write(fs.capture(root, snapshot), snapshot, journal);
+	}
+
+	private FSFolder load() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		fs.load(snapshot, journal);
+		return (FSFolder) fs.deserialize();
+	}
+
+	@Test
+	public void replaysJournal() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		assertFalse(journal.exists());
+
+		root.contents.put("tmp", new FSFolder());
+		root.contents.remove("home");
+		save(fs, root, snapshot, journal);
+		assertTrue(journal.length() > 0);
+
+		FSFolder loaded = load();
+		assertEquals(root.uuid, loaded.uuid);
+		assertTrue(loaded.exists("tmp"));
+		assertTrue(loaded.exists("bin/local"));
+		assertFalse(loaded.exists("home"));
+	}
+
+	@Test
+	public void nothingChanged() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		save(fs, root, snapshot, journal);
+		assertFalse(journal.exists());
+	}
+
+	@Test
+	public void truncatedRecord() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		root.contents.put("tmp", new FSFolder());
+		save(fs, root, snapshot, journal);
+		long valid = journal.length();
+		root.contents.put("var", new FSFolder());
+		save(fs, root, snapshot, journal);
+
+		// cut off the last save, like a crash in the middle of writing it
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+			file.setLength(valid + 10);
+		}
+		FSFolder loaded = load();
+		assertTrue(loaded.exists("tmp"));
+		assertFalse(loaded.exists("var"));
+		// the partial record is removed, so the next save isn't appended after it
+		assertEquals(valid, journal.length());
+	}
+
+	@Test
+	public void partialSave() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		root.contents.put("tmp", new FSFolder());
+		save(fs, root, snapshot, journal);
+
+		// the new folder is recorded, but the root that refers to it is cut off
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+			file.setLength(journal.length() - 3);
+		}
+		FSFolder loaded = load();
+		assertFalse(loaded.exists("tmp"));
+		assertTrue(loaded.exists("bin/local"));
+		assertTrue(loaded.exists("home"));
+	}
+
+	@Test
+	public void corruptRecord() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		root.contents.put("tmp", new FSFolder());
+		save(fs, root, snapshot, journal);
+		long valid = journal.length();
+		root.contents.put("var", new FSFolder());
+		save(fs, root, snapshot, journal);
+
+		// flip a bit in the first record of the last save
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+			file.seek(valid + 5);
+			int b = file.read();
+			file.seek(valid + 5);
+			file.write(b ^ 1);
+		}
+		FSFolder loaded = load();
+		assertTrue(loaded.exists("tmp"));
+		assertFalse(loaded.exists("var"));
+		// everything after the bad record is dropped
+		assertEquals(valid, journal.length());
+	}
+
+	@Test
+	public void compactsJournal() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		long longest = 0;
+		boolean compacted = false;
+		// every save is a record for the new folder, and one for the root
+		for (int t = 0; t < 200; t++) {
+			root.contents.put("dir" + t, new FSFolder());
+			save(fs, root, snapshot, journal);
+			if (journal.length() < longest)
+				compacted = true;
+			longest = Math.max(longest, journal.length());
+		}
+		assertTrue("journal was never compacted", compacted);
+
+		FSFolder loaded = load();
+		for (int t = 0; t < 200; t++)
+			assertTrue(loaded.exists("dir" + t));
+		assertEquals(202, loaded.contents.size());
+	}
+
+	@Test
+	public void compactsWrittenChanges() throws IOException {
+		SerializedFilesystem fs = new SerializedFilesystem(null);
+		FSFolder root = tree();
+		save(fs, root, snapshot, journal);
+		boolean compacted = false;
+		for (int t = 0; t < 200 && !compacted; t++) {
+			// three records: the new folder, the folder in it, and the root
+			FSFolder dir = new FSFolder();
+			dir.contents.put("sub", new FSFolder());
+			root.contents.put("dir" + t, dir);
+			SerializedFilesystem.Changes first = fs.capture(root, snapshot);
+			// captured, but not written yet when the journal is compacted
+			root.contents.put("late" + t, new FSFolder());
+			SerializedFilesystem.Changes second = fs.capture(root, snapshot);
+			fs.write(first, snapshot, journal);
+			if (journal.length() == 0) {
+				compacted = true;
+				FSFolder loaded = load();
+				assertTrue(loaded.exists("dir" + t + "/sub"));
+				assertFalse(loaded.exists("late" + t));
+			}
+			fs.write(second, snapshot, journal);
+		}
+		assertTrue("journal was never compacted", compacted);
+	}
+}
@@ -0,0 +1,121 @@
+package ca.jarcode.consoles.computer.filesystem;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class StoredFileCacheTest {
+
+	private static final int KB = 1024;
+
+	private final StoredFileCache cache = new StoredFileCache();
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String read(ByteArrayInputStream in) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1)
+			out.write(b);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private UUID put(int size) {
+		UUID uuid = UUID.randomUUID();
+		cache.put(uuid, new byte[size], size);
+		return uuid;
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		UUID a = put(64 * KB), b = put(64 * KB), c = put(64 * KB), d = put(64 * KB);
+		// reading a file makes it the most recently used one
+		assertNotNull(cache.open(a));
+		UUID e = put(64 * KB);
+		assertNull(cache.open(b));
+		assertNotNull(cache.open(a));
+		assertNotNull(cache.open(c));
+		assertNotNull(cache.open(d));
+		assertNotNull(cache.open(e));
+	}
+
+	@Test
+	public void skipsBigFiles() {
+		UUID uuid = put(64 * KB + 1);
+		assertNull(cache.open(uuid));
+	}
+
+	@Test
+	public void appendEvicts() {
+		UUID a = put(60 * KB), b = put(60 * KB), c = put(60 * KB), d = put(60 * KB);
+		UUID e = put(10 * KB);
+		// grows the last file's array past the capacity of the cache
+		cache.append(e, new byte[10 * KB], 0, 10 * KB);
+		assertNull(cache.open(a));
+		assertNotNull(cache.open(b));
+		assertNotNull(cache.open(c));
+		assertNotNull(cache.open(d));
+		assertEquals(20 * KB, cache.open(e).available());
+	}
+
+	@Test
+	public void appendOnlyShowsInNewStreams() {
+		UUID uuid = UUID.randomUUID();
+		byte[] data = new byte[8];
+		System.arraycopy(bytes("abc"), 0, data, 0, 3);
+		cache.put(uuid, data, 3);
+		ByteArrayInputStream old = cache.open(uuid);
+		// fits in the array, so it's written past the end of the open stream
+		cache.append(uuid, bytes("de"), 0, 2);
+		ByteArrayInputStream middle = cache.open(uuid);
+		// grows the array
+		cache.append(uuid, bytes("fghijk"), 0, 6);
+		assertEquals("abc", read(old));
+		assertEquals("abcde", read(middle));
+		assertEquals("abcdefghijk", read(cache.open(uuid)));
+	}
+
+	@Test
+	public void appendPastLimitDrops() {
+		UUID uuid = put(64 * KB);
+		cache.append(uuid, new byte[1], 0, 1);
+		assertNull(cache.open(uuid));
+		// files that aren't cached stay that way
+		cache.append(uuid, new byte[1], 0, 1);
+		assertNull(cache.open(uuid));
+	}
+
+	@Test
+	public void writeCopies() {
+		UUID uuid = UUID.randomUUID();
+		cache.put(uuid, bytes("hello"), 5);
+		ByteArrayInputStream old = cache.open(uuid);
+		cache.write(uuid, 1, bytes("EY"), 0, 2);
+		assertEquals("hello", read(old));
+		assertEquals("hEYlo", read(cache.open(uuid)));
+		// writing past the end extends the file
+		cache.write(uuid, 7, bytes("!"), 0, 1);
+		assertEquals("hEYlo\0\0!", read(cache.open(uuid)));
+	}
+
+	@Test
+	public void writePastLimitDrops() {
+		UUID uuid = put(KB);
+		cache.write(uuid, 64 * KB, new byte[1], 0, 1);
+		assertNull(cache.open(uuid));
+	}
+
+	@Test
+	public void remove() {
+		UUID uuid = put(KB);
+		cache.remove(uuid);
+		assertNull(cache.open(uuid));
+	}
+}
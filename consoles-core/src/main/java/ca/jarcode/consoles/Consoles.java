@@ -3,6 +3,7 @@ package ca.jarcode.consoles;
 import ca.jarcode.consoles.api.impl.InternalFunctions;
 import ca.jarcode.consoles.api.nms.ConsolesNMS;
 import ca.jarcode.consoles.images.ImageConsoleHandler;
+import ca.jarcode.consoles.images.MapQuantizer;
 import ca.jarcode.consoles.internal.ConsoleHandler;
 import ca.jarcode.consoles.messaging.ConsoleBungeeHook;
 import ca.jarcode.consoles.command.*;
@@ -28,6 +29,12 @@ public class Consoles extends JavaPlugin {
 	public static boolean debug = false;
 	// interact range
 	public static int interactRange = 6;
+	// amount of threads used to paint consoles
+	public static int paintThreads = Math.max(Runtime.getRuntime().availableProcessors() / 2, 1);
+	// maximum amount of frames painted per second for a single console
+	public static int maxFrameRate = 20;
+	// dithering used when rendering images
+	public static MapQuantizer.Dither imageDither = MapQuantizer.Dither.NONE;
 
 	public static Consoles getInstance() {
 		return instance;
@@ -50,6 +57,15 @@ public class Consoles extends JavaPlugin {
 		startingId = (short) getConfig().getInt("starting-map-index", startingId);
 		debug = getConfig().getBoolean("debug-mode", debug);
 		interactRange = getConfig().getInt("interact-range", interactRange);
+		paintThreads = getConfig().getInt("painter-threads", paintThreads);
+		maxFrameRate = getConfig().getInt("painter-max-fps", maxFrameRate);
+		try {
+			imageDither = MapQuantizer.Dither.valueOf(getConfig().getString("image-dithering", imageDither.name())
+					.toUpperCase().replace('-', '_'));
+		}
+		catch (IllegalArgumentException e) {
+			getLogger().warning("Invalid image dithering mode: " + getConfig().getString("image-dithering"));
+		}
 
 		// assigns a bunch of API function handles
 		InternalFunctions.assign();
@@ -0,0 +1,159 @@
+package ca.jarcode.consoles.images;
+
+import ca.jarcode.consoles.Consoles;
+import ca.jarcode.consoles.api.CanvasGraphics;
+import ca.jarcode.consoles.internal.ConsoleComponent;
+import ca.jarcode.consoles.internal.ConsoleRenderer;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+Component that plays back an animated image. The areas that change between each frame
+and the one before it are worked out when the component is created, so stepping to the
+next frame only copies those areas into the pixel buffer (and only they get sent).
+
+Playback runs on the server scheduler, with the delay of each frame rounded to ticks.
+
+ */
+public class AnimatedImageComponent extends ConsoleComponent {
+
+	// changed areas are tracked per map section
+	private static final int SECTION = 128;
+
+	// delay after each frame, in milliseconds
+	private final int[] delays;
+	// row-major copies of the frames, the component doesn't keep the image itself so the
+	// quantized frames it was made from can be collected
+	private final byte[][] frames;
+	// changed rectangles (x, y, w, h) from the previous frame to each frame,
+	// the first frame's are from the last frame, so the animation can loop.
+	private final int[][] changes;
+
+	// the frame to paint
+	private volatile int frame = 0;
+
+	// the frame (and background generation) last painted for each context, only accessed while painting
+	private final Map<String, int[]> painted = new HashMap<>();
+
+	private int task = -1;
+	// milliseconds that playback is behind because of rounding to ticks
+	private int owed = 0;
+
+	public AnimatedImageComponent(ConsoleRenderer renderer, AnimatedMapImage image) {
+		super(image.getWidth(), image.getHeight(), renderer);
+		setContextInvariant(true);
+		int w = image.getWidth(), h = image.getHeight();
+		frames = new byte[image.getFrameCount()][];
+		delays = new int[frames.length];
+		for (int i = 0; i < frames.length; i++) {
+			delays[i] = image.getDelay(i);
+			PreparedMapImage prepared = image.getFrame(i);
+			byte[] buffer = new byte[w * h];
+			for (int t = 0; t < w; t++) {
+				for (int j = 0; j < h; j++) {
+					buffer[t + (j * w)] = prepared.data[t][j];
+				}
+			}
+			frames[i] = buffer;
+		}
+		changes = new int[frames.length][];
+		for (int i = 0; i < frames.length; i++)
+			changes[i] = diff(frames[(i + frames.length - 1) % frames.length], frames[i], w, h);
+	}
+
+	// finds the bounding box of the changed pixels in each section
+	private static int[] diff(byte[] from, byte[] to, int w, int h) {
+		List<int[]> boxes = new ArrayList<>();
+		for (int sy = 0; sy < h; sy += SECTION) {
+			for (int sx = 0; sx < w; sx += SECTION) {
+				int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE, x2 = -1, y2 = -1;
+				for (int j = sy; j < Math.min(sy + SECTION, h); j++) {
+					for (int t = sx; t < Math.min(sx + SECTION, w); t++) {
+						if (from[t + (j * w)] != to[t + (j * w)]) {
+							if (t < x1) x1 = t;
+							if (t > x2) x2 = t;
+							if (j < y1) y1 = j;
+							y2 = j;
+						}
+					}
+				}
+				if (x2 >= 0)
+					boxes.add(new int[] {x1, y1, x2 - x1 + 1, y2 - y1 + 1});
+			}
+		}
+		int[] result = new int[boxes.size() * 4];
+		for (int t = 0; t < boxes.size(); t++)
+			System.arraycopy(boxes.get(t), 0, result, t * 4, 4);
+		return result;
+	}
+
+	// starts playing the animation, must be called from the main thread
+	public void play() {
+		if (task != -1 || frames.length <= 1) return;
+		schedule();
+	}
+
+	// stops playing the animation, must be called from the main thread
+	public void stop() {
+		if (task != -1) {
+			Bukkit.getScheduler().cancelTask(task);
+			task = -1;
+		}
+	}
+
+	private void schedule() {
+		owed += delays[frame];
+		long ticks = Math.max(owed / 50, 1);
+		owed = Math.max(owed - (int) ticks * 50, 0);
+		task = Bukkit.getScheduler().scheduleSyncDelayedTask(Consoles.getInstance(), () -> {
+			// the console is gone, don't keep playing to nobody
+			if (!getRenderer().created() || getRenderer().removed()) {
+				task = -1;
+				return;
+			}
+			frame = (frame + 1) % frames.length;
+			getRenderer().repaint();
+			schedule();
+		}, ticks);
+	}
+
+	@Override
+	public void onRemove() {
+		stop();
+	}
+
+	@Override
+	public void onContextRemoved(String context) {
+		painted.remove(context);
+	}
+
+	@Override
+	public void paint(CanvasGraphics g, String context) {
+		int current = frame;
+		int generation = getRenderer().backgroundGeneration();
+		int[] last = isContained() ? null : painted.get(context);
+		int w = getWidth();
+		byte[] buffer = frames[current];
+		if (last != null && last[1] == generation && last[0] == current)
+			return;
+		if (last != null && last[1] == generation && (last[0] + 1) % frames.length == current) {
+			// only copy what changed since the last frame
+			int[] rects = changes[current];
+			for (int t = 0; t < rects.length; t += 4) {
+				int x = rects[t], y = rects[t + 1];
+				g.blit(x, y, buffer, x + (y * w), w, rects[t + 2], rects[t + 3]);
+			}
+		}
+		else {
+			// frames skipped, or the background was drawn over us
+			g.blit(0, 0, buffer, 0, w, w, getHeight());
+		}
+		if (!isContained())
+			painted.put(context, new int[] {current, generation});
+	}
+}
@@ -0,0 +1,208 @@
+package ca.jarcode.consoles.images;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+
+Sequence of prepared images with a delay for each frame. Animated GIFs are decoded and
+composited into full frames once, and then every frame is quantized.
+
+Local folders (file: URLs) are read as frame sequences: every PNG image in the folder is
+a frame, in order of their file names.
+
+Images that only have a single frame are still images, with no delay.
+
+ */
+public class AnimatedMapImage {
+
+	// delay used for frame sequences and for GIF frames that don't have a (sane) delay
+	private static final int DEFAULT_DELAY = 100;
+	// most browsers treat delays this short as broken, so we do the same
+	private static final int MIN_DELAY = 20;
+
+	public static AnimatedMapImage still(PreparedMapImage image) {
+		return new AnimatedMapImage(new PreparedMapImage[] {image}, new int[] {0});
+	}
+
+	public static AnimatedMapImage read(URL url, MapQuantizer.Dither dither) throws IOException {
+		if ("file".equals(url.getProtocol())) {
+			File file;
+			try {
+				file = new File(url.toURI());
+			}
+			catch (URISyntaxException e) {
+				throw new IOException(e);
+			}
+			if (file.isDirectory())
+				return readSequence(file, dither);
+		}
+		try (InputStream in = url.openStream(); ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+			Iterator<ImageReader> it = ImageIO.getImageReaders(stream);
+			if (!it.hasNext())
+				throw new IOException("unsupported image format: " + url);
+			ImageReader reader = it.next();
+			try {
+				reader.setInput(stream);
+				if ("gif".equalsIgnoreCase(reader.getFormatName()))
+					return readGIF(reader, dither);
+				return still(new PreparedMapImage(reader.read(0), dither));
+			}
+			finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private static AnimatedMapImage readSequence(File folder, MapQuantizer.Dither dither) throws IOException {
+		File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".png"));
+		if (files == null || files.length == 0)
+			throw new IOException("no frames in folder: " + folder.getAbsolutePath());
+		Arrays.sort(files);
+		PreparedMapImage[] frames = new PreparedMapImage[files.length];
+		int[] delays = new int[files.length];
+		for (int t = 0; t < files.length; t++) {
+			BufferedImage image = ImageIO.read(files[t]);
+			if (image == null)
+				throw new IOException("unsupported image format: " + files[t].getAbsolutePath());
+			if (t > 0 && (image.getWidth() != frames[0].w || image.getHeight() != frames[0].h))
+				throw new IOException("frame size mismatch: " + files[t].getAbsolutePath());
+			frames[t] = new PreparedMapImage(image, dither);
+			delays[t] = DEFAULT_DELAY;
+		}
+		return new AnimatedMapImage(frames, delays);
+	}
+
+	private static AnimatedMapImage readGIF(ImageReader reader, MapQuantizer.Dither dither) throws IOException {
+		int count = reader.getNumImages(true);
+		if (count <= 1)
+			return still(new PreparedMapImage(reader.read(0), dither));
+
+		// the logical screen is the size of the whole animation, frames can be smaller
+		int width = -1, height = -1;
+		IIOMetadata streamMeta = reader.getStreamMetadata();
+		if (streamMeta != null) {
+			Node screen = child(streamMeta.getAsTree("javax_imageio_gif_stream_1.0"), "LogicalScreenDescriptor");
+			if (screen != null) {
+				width = attribute(screen, "logicalScreenWidth", -1);
+				height = attribute(screen, "logicalScreenHeight", -1);
+			}
+		}
+		if (width <= 0 || height <= 0) {
+			width = reader.getWidth(0);
+			height = reader.getHeight(0);
+		}
+
+		BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = canvas.createGraphics();
+		g.setComposite(AlphaComposite.SrcOver);
+
+		List<PreparedMapImage> frames = new ArrayList<>(count);
+		int[] delays = new int[count];
+		try {
+			for (int t = 0; t < count; t++) {
+				BufferedImage frame = reader.read(t);
+				Node tree = reader.getImageMetadata(t).getAsTree("javax_imageio_gif_image_1.0");
+				Node descriptor = child(tree, "ImageDescriptor");
+				Node control = child(tree, "GraphicControlExtension");
+				int x = descriptor == null ? 0 : attribute(descriptor, "imageLeftPosition", 0);
+				int y = descriptor == null ? 0 : attribute(descriptor, "imageTopPosition", 0);
+				String disposal = control == null ? "none" : ((IIOMetadataNode) control).getAttribute("disposalMethod");
+				// GIF delays are in hundredths of a second
+				int delay = control == null ? 0 : attribute(control, "delayTime", 0) * 10;
+				delays[t] = delay < MIN_DELAY ? DEFAULT_DELAY : delay;
+
+				BufferedImage previous = null;
+				if ("restoreToPrevious".equals(disposal)) {
+					previous = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+					previous.setData(canvas.getData());
+				}
+				g.drawImage(frame, x, y, null);
+				frames.add(new PreparedMapImage(canvas, dither));
+
+				// dispose of the frame before drawing the next one
+				if ("restoreToBackgroundColor".equals(disposal)) {
+					g.setComposite(AlphaComposite.Clear);
+					g.fillRect(x, y, frame.getWidth(), frame.getHeight());
+					g.setComposite(AlphaComposite.SrcOver);
+				}
+				else if (previous != null) {
+					canvas.setData(previous.getData());
+				}
+			}
+		}
+		finally {
+			g.dispose();
+		}
+		return new AnimatedMapImage(frames.toArray(new PreparedMapImage[frames.size()]), delays);
+	}
+
+	private static Node child(Node node, String name) {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (name.equals(child.getNodeName()))
+				return child;
+		}
+		return null;
+	}
+
+	private static int attribute(Node node, String name, int def) {
+		try {
+			return Integer.parseInt(((IIOMetadataNode) node).getAttribute(name));
+		}
+		catch (NumberFormatException e) {
+			return def;
+		}
+	}
+
+	final PreparedMapImage[] frames;
+	// delay after each frame, in milliseconds
+	final int[] delays;
+
+	private AnimatedMapImage(PreparedMapImage[] frames, int[] delays) {
+		this.frames = frames;
+		this.delays = delays;
+	}
+
+	public boolean isAnimated() {
+		return frames.length > 1;
+	}
+	public int getFrameCount() {
+		return frames.length;
+	}
+	public PreparedMapImage getFrame(int index) {
+		return frames[index];
+	}
+	public int getDelay(int index) {
+		return delays[index];
+	}
+	public int getWidth() {
+		return frames[0].getWidth();
+	}
+	public int getHeight() {
+		return frames[0].getHeight();
+	}
+	public void center() {
+		for (PreparedMapImage frame : frames)
+			frame.center();
+	}
+	public void background(byte b) {
+		for (PreparedMapImage frame : frames)
+			frame.background(b);
+	}
+}
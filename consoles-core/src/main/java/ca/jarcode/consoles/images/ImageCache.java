@@ -0,0 +1,112 @@
+package ca.jarcode.consoles.images;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+
+On-disk cache of quantized images, so image consoles can be restored without downloading
+and quantizing their images again.
+
+Entries are keyed by a hash of the image URL and the dithering mode, and hold the image
+size followed by the deflated, column-major map colors.
+
+ */
+class ImageCache {
+
+	private static final int MAGIC = 0x434D4947; // 'CMIG'
+	private static final int VERSION = 1;
+	private static final String EXTENSION = ".bin";
+
+	static String key(URL url, MapQuantizer.Dither dither) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest((url.toString() + '\0' + dither.name()).getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every JVM is required to support SHA-1
+			throw new RuntimeException(e);
+		}
+	}
+
+	private final File folder;
+
+	ImageCache(File folder) {
+		this.folder = folder;
+	}
+
+	// returns the cached image for the key, or null if there is no (valid) entry
+	PreparedMapImage read(String key) {
+		File file = new File(folder, key + EXTENSION);
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION)
+				return null;
+			int w = in.readInt();
+			int h = in.readInt();
+			if (w <= 0 || h <= 0)
+				return null;
+			byte[][] data = new byte[w][h];
+			DataInputStream body = new DataInputStream(new InflaterInputStream(in));
+			for (int x = 0; x < w; x++)
+				body.readFully(data[x]);
+			return new PreparedMapImage(data, w, h);
+		}
+		catch (IOException e) {
+			// truncated or corrupt entries are just treated as missing
+			return null;
+		}
+	}
+
+	void write(String key, PreparedMapImage image) throws IOException {
+		if (!folder.exists() && !folder.mkdirs())
+			throw new IOException("could not create cache folder: " + folder.getAbsolutePath());
+		// write to a temporary file first, so an entry is never seen half-written
+		File temp = File.createTempFile(key, ".tmp", folder);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeByte(VERSION);
+				out.writeInt(image.w);
+				out.writeInt(image.h);
+				DeflaterOutputStream body = new DeflaterOutputStream(out);
+				for (int x = 0; x < image.w; x++)
+					body.write(image.data[x]);
+				body.finish();
+			}
+			Files.move(temp.toPath(), new File(folder, key + EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			if (temp.exists())
+				temp.delete();
+		}
+	}
+
+	// deletes all entries that are not in the given set of keys
+	void retain(Collection<String> keys) {
+		Set<String> names = new HashSet<>();
+		for (String key : keys)
+			names.add(key + EXTENSION);
+		File[] files = folder.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			if (file.getName().endsWith(EXTENSION) && !names.contains(file.getName()))
+				file.delete();
+		}
+	}
+}
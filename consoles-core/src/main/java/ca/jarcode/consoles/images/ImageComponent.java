@@ -29,57 +29,16 @@ public class ImageComponent extends ConsoleComponent {
 	private static int color(int r, int g, int b) {
 		return new Color(r, g, b, 0).getRGB();
 	}
-	// sample the pixel at x, y and return the best map pixel id for the color
-	private static byte sample(int x, int y, BufferedImage image) {
-		int color = image.getRGB(x, y);
-		int r = (color >> 16) & 0xFF;
-		int g = (color >> 8) & 0xFF;
-		int b = color & 0xFF;
-		// if 100% transparent pixel, return 0 (transparent)
-		if ((color >> 24) == 0x00) {
-			return 0;
-		}
-		byte best = 0;
-		double bd = Double.MAX_VALUE;
-		for (int k = 0; k < MAPPINGS.length; k++) {
-			int c = MAPPINGS[k];
-			if (c != 0) {
-				int kr = (c >> 16) & 0xFF;
-				int kg = (c >> 8) & 0xFF;
-				int kb = c & 0xFF;
-				double kd = getDistance(r, g, b, kr, kg, kb);
-				if (bd > kd) {
-					bd = kd;
-					// handle overflow
-					best = (byte) (k < 128 ? k : -129 + (k - 127));
-				}
-				// exact color match!
-				if (bd == 0)
-					break;
-			}
-		}
-		return best;
-	}
-	// extracted & modified from spigot source
-	private static double getDistance(int r1, int g1, int b1, int r2, int g2, int b2) {
-		double mean = (r1 + r2) / 2.0;
-		double r = r1 - r2;
-		double g = g1 - g2;
-		int b = b1 - b2;
-		double weightR = 2 + mean / 256.0;
-		double weightG = 4.0;
-		double weightB = 2 + (255 - mean) / 256.0;
-		return weightR * r * r + weightG * g * g + weightB * b * b;
-	}
 	// can be used to render the image off-thread
 	public static PreparedMapImage render(BufferedImage image) {
-		byte[][] buffer = new byte[image.getWidth()][image.getHeight()];
-		for (int x = 0; x < image.getWidth(); x++) {
-			for (int y = 0; y < image.getHeight(); y++) {
-				buffer[x][y] = sample(x, y, image);
-			}
-		}
-		return new PreparedMapImage(buffer, image.getWidth(), image.getHeight());
+		return render(image, MapQuantizer.Dither.NONE);
+	}
+	public static PreparedMapImage render(BufferedImage image, MapQuantizer.Dither dither) {
+		return new PreparedMapImage(image, dither);
+	}
+	public static PreparedMapImage render(URL url, MapQuantizer.Dither dither) throws IOException {
+		BufferedImage image = ImageIO.read(url);
+		return render(image, dither);
 	}
 	public static PreparedMapImage render(URL url) throws IOException {
 		BufferedImage image = ImageIO.read(url);
@@ -90,19 +49,31 @@ public class ImageComponent extends ConsoleComponent {
 		return new ImageComponent(renderer, render(image));
 	}
 
-	private byte[][] buffer;
+	// row-major copy of the image, so rows can be copied straight into the pixel buffer
+	private byte[] buffer;
 
 	public ImageComponent(ConsoleRenderer renderer, PreparedMapImage image) {
 		super(image.w, image.h, renderer);
-		buffer = image.data;
+		setContextInvariant(true);
+		buffer = new byte[image.w * image.h];
+		for (int t = 0; t < image.w; t++) {
+			for (int j = 0; j < image.h; j++) {
+				buffer[t + (j * image.w)] = image.data[t][j];
+			}
+		}
 	}
 	@Override
 	public void paint(CanvasGraphics g, String context) {
-		for (int t = 0; t < getWidth(); t++) {
-			for (int j = 0; j < getHeight(); j++) {
-				byte b = buffer[t][j];
-				if (b != 0)
-					g.draw(t, j, b);
+		int w = getWidth();
+		for (int j = 0; j < getHeight(); j++) {
+			int row = j * w;
+			// blit runs of opaque pixels, transparent pixels (0) are skipped
+			for (int t = 0; t < w; t++) {
+				if (buffer[row + t] == 0) continue;
+				int start = t;
+				while (t < w && buffer[row + t] != 0)
+					t++;
+				g.blit(start, j, buffer, row + start, w, t - start, 1);
 			}
 		}
 	}
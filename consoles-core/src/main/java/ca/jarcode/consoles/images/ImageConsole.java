@@ -21,6 +21,8 @@ public class ImageConsole {
 
 	protected URL url;
 	protected ManagedConsole console;
+	// set if the image is animated
+	private AnimatedImageComponent animation;
 	private boolean created = false;
 	private BlockFace face;
 	private Location location;
@@ -37,6 +39,8 @@ public class ImageConsole {
 		}
 	}
 	public void remove() {
+		if (animation != null)
+			animation.stop();
 		if (console != null)
 			console.remove();
 	}
@@ -49,16 +53,38 @@ public class ImageConsole {
 	public void create(final boolean save) {
 		if (created) return;
 		SyncTaskScheduler.getInstance().runSyncTask(() -> {
-			PreparedMapImage image = null;
-			try {
-				image = ImageComponent.render(url);
-				// perform manipulation on the image
-				image.center();
-				image.background((byte) 84);
+			ImageCache cache = ImageConsoleHandler.getInstance().cache;
+			MapQuantizer.Dither dither = Consoles.imageDither;
+			String key = ImageCache.key(url, dither);
+			// consoles that are being restored use the cached image if there is one,
+			// new consoles always fetch the image again.
+			PreparedMapImage cached = save ? null : cache.read(key);
+			AnimatedMapImage image;
+			if (cached != null) {
+				image = AnimatedMapImage.still(cached);
 			}
-			catch (IOException e) {
-				e.printStackTrace();
+			else {
+				try {
+					image = AnimatedMapImage.read(url, dither);
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+					return null;
+				}
+				// only still images are cached
+				if (!image.isAnimated()) {
+					try {
+						cache.write(key, image.getFrame(0));
+					}
+					catch (IOException e) {
+						if (Consoles.debug)
+							e.printStackTrace();
+					}
+				}
 			}
+			// perform manipulation on the image
+			image.center();
+			image.background((byte) 84);
 			return image;
 		}, image -> {
 			if (image == null) {
@@ -75,9 +101,16 @@ public class ImageConsole {
 			int h = image.getHeight() % 128 == 0 ? ht : ht + 1;
 			console = new ManagedConsole(w, h, false);
 			console.setType("image");
-			console.putComponent(new Position2D(0, 0), new ImageComponent(console, image));
+			if (image.isAnimated()) {
+				animation = new AnimatedImageComponent(console, image);
+				console.putComponent(new Position2D(0, 0), animation);
+			}
+			else
+				console.putComponent(new Position2D(0, 0), new ImageComponent(console, image.getFrame(0)));
 			try {
 				console.create(face, location);
+				if (animation != null)
+					animation.play();
 				if (save)
 					ImageConsoleHandler.getInstance().save();
 			} catch (ConsoleCreateException e) {
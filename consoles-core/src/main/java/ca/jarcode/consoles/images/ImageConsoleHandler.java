@@ -40,6 +40,8 @@ public class ImageConsoleHandler {
 	private File file;
 	private final Gson gson;
 
+	final ImageCache cache;
+
 	private final LocationTypeAdapter locationTypeAdapter = new LocationTypeAdapter();
 
 	public ImageConsoleHandler() {
@@ -76,6 +78,7 @@ public class ImageConsoleHandler {
 
 		file = new File(plugin.getDataFolder().getAbsolutePath() +
 				File.separator + "images.json");
+		cache = new ImageCache(new File(plugin.getDataFolder(), "image-cache"));
 		if (!file.exists()) {
 			File folder = plugin.getDataFolder();
 			if (!folder.exists() && !folder.mkdir()) {
@@ -167,11 +170,17 @@ public class ImageConsoleHandler {
 		ArrayList<ConsoleMeta> metaList = new ArrayList<>();
 		ArrayList<String> urls = new ArrayList<>();
 
+		List<String> keys = new ArrayList<>();
+
 		for (ImageConsole console : imageConsoles) {
 			metaList.add(console.console.createMeta());
 			urls.add(console.url.toString());
+			keys.add(ImageCache.key(console.url, Consoles.imageDither));
 		}
 
+		// drop cached images that no console uses anymore
+		cache.retain(keys);
+
 		FileOutputStream out = null;
 		try {
 			JsonObject obj = new JsonObject();
@@ -0,0 +1,224 @@
+package ca.jarcode.consoles.images;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+
+Converts RGB colors to map colors. Instead of measuring the distance to every map color
+for each pixel, the nearest color is looked up in a table that covers the whole RGB cube
+at 6 bits per channel (256K entries). The table is built once, the first time a color is
+quantized.
+
+Images are quantized in 128x128 sections, in parallel. Sections are also the unit for
+error diffusion, so Floyd-Steinberg dithering does not carry error over section edges.
+
+ */
+public final class MapQuantizer {
+
+	public enum Dither {
+		// nearest color only
+		NONE,
+		// 4x4 bayer matrix, stable across frames and cheap
+		ORDERED,
+		// error diffusion, looks better for photos
+		FLOYD_STEINBERG
+	}
+
+	private static final int BITS = 6;
+	private static final int SHIFT = 8 - BITS;
+	// offset to the center of a table cell
+	private static final int HALF = 1 << (SHIFT - 1);
+
+	private static final int SECTION = 128;
+
+	// bayer matrix thresholds, scaled to roughly the distance between neighbouring map colors
+	private static final int[] BAYER = {
+			0, 8, 2, 10,
+			12, 4, 14, 6,
+			3, 11, 1, 9,
+			15, 7, 13, 5
+	};
+	private static final int SPREAD = 24;
+
+	// map color (unsigned byte) -> RGB, used to measure the error when dithering
+	private static final int[] PALETTE = new int[256];
+
+	static {
+		for (int k = 0; k < ImageComponent.MAPPINGS.length; k++)
+			PALETTE[k] = ImageComponent.MAPPINGS[k] & 0xFFFFFF;
+	}
+
+	private static volatile byte[] table;
+
+	// this isn't built in the static initializer, because the worker threads would block
+	// on class initialization when they call back into this class.
+	private static byte[] table() {
+		byte[] result = table;
+		if (result == null) {
+			synchronized (MapQuantizer.class) {
+				result = table;
+				if (result == null) {
+					byte[] built = new byte[1 << (BITS * 3)];
+					IntStream.range(0, built.length).parallel().forEach(i -> {
+						int r = ((i >> (BITS * 2)) << SHIFT) | HALF;
+						int g = (((i >> BITS) & ((1 << BITS) - 1)) << SHIFT) | HALF;
+						int b = ((i & ((1 << BITS) - 1)) << SHIFT) | HALF;
+						built[i] = nearest(r, g, b);
+					});
+					table = result = built;
+				}
+			}
+		}
+		return result;
+	}
+
+	private MapQuantizer() {}
+
+	// builds the lookup table ahead of time, so the first image doesn't have to wait for it
+	public static void prepare() {
+		table();
+	}
+
+	// returns the map color for an ARGB color, 100% transparent pixels map to 0 (transparent)
+	public static byte quantize(int argb) {
+		return quantize(table(), argb);
+	}
+
+	// quantizes the image into column-major map colors
+	public static byte[][] quantize(BufferedImage image, Dither dither) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		byte[][] data = new byte[w][h];
+		byte[] table = table();
+		int columns = (w + SECTION - 1) / SECTION;
+		int rows = (h + SECTION - 1) / SECTION;
+		IntStream.range(0, columns * rows).parallel().forEach(section -> {
+			int x = (section % columns) * SECTION;
+			int y = (section / columns) * SECTION;
+			int sw = Math.min(SECTION, w - x);
+			int sh = Math.min(SECTION, h - y);
+			int[] rgb = image.getRGB(x, y, sw, sh, null, 0, sw);
+			switch (dither) {
+				case ORDERED:
+					ordered(table, rgb, data, x, y, sw, sh);
+					break;
+				case FLOYD_STEINBERG:
+					diffuse(table, rgb, data, x, y, sw, sh);
+					break;
+				default:
+					for (int j = 0; j < sh; j++) {
+						for (int t = 0; t < sw; t++)
+							data[x + t][y + j] = quantize(table, rgb[t + (j * sw)]);
+					}
+			}
+		});
+		return data;
+	}
+
+	private static byte quantize(byte[] table, int argb) {
+		if ((argb >>> 24) == 0)
+			return 0;
+		return lookup(table, (argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF);
+	}
+
+	private static byte lookup(byte[] table, int r, int g, int b) {
+		return table[((r >> SHIFT) << (BITS * 2)) | ((g >> SHIFT) << BITS) | (b >> SHIFT)];
+	}
+
+	private static int clamp(int v) {
+		return v < 0 ? 0 : (v > 255 ? 255 : v);
+	}
+
+	private static void ordered(byte[] table, int[] rgb, byte[][] data, int x, int y, int sw, int sh) {
+		for (int j = 0; j < sh; j++) {
+			for (int t = 0; t < sw; t++) {
+				int color = rgb[t + (j * sw)];
+				if ((color >>> 24) == 0) {
+					data[x + t][y + j] = 0;
+					continue;
+				}
+				// use absolute coordinates, so the pattern lines up between sections
+				int offset = ((BAYER[((y + j) & 3) * 4 + ((x + t) & 3)] * 2 - 15) * SPREAD) / 32;
+				data[x + t][y + j] = lookup(table,
+						clamp(((color >> 16) & 0xFF) + offset),
+						clamp(((color >> 8) & 0xFF) + offset),
+						clamp((color & 0xFF) + offset)
+				);
+			}
+		}
+	}
+
+	private static void diffuse(byte[] table, int[] rgb, byte[][] data, int x, int y, int sw, int sh) {
+		// error for the current and next row, three channels per pixel, scaled by 16.
+		// there is an extra pixel on each side, so we don't need to check the edges.
+		int[] current = new int[(sw + 2) * 3];
+		int[] next = new int[(sw + 2) * 3];
+		for (int j = 0; j < sh; j++) {
+			for (int t = 0; t < sw; t++) {
+				int color = rgb[t + (j * sw)];
+				if ((color >>> 24) == 0) {
+					// transparent pixels don't carry any error
+					data[x + t][y + j] = 0;
+					continue;
+				}
+				int e = (t + 1) * 3;
+				int r = clamp(((color >> 16) & 0xFF) + (current[e] >> 4));
+				int g = clamp(((color >> 8) & 0xFF) + (current[e + 1] >> 4));
+				int b = clamp((color & 0xFF) + (current[e + 2] >> 4));
+				byte result = lookup(table, r, g, b);
+				data[x + t][y + j] = result;
+				int actual = PALETTE[result & 0xFF];
+				spread(current, next, e, r - ((actual >> 16) & 0xFF));
+				spread(current, next, e + 1, g - ((actual >> 8) & 0xFF));
+				spread(current, next, e + 2, b - (actual & 0xFF));
+			}
+			int[] swap = current;
+			current = next;
+			next = swap;
+			Arrays.fill(next, 0);
+		}
+	}
+
+	private static void spread(int[] current, int[] next, int index, int error) {
+		current[index + 3] += error * 7;
+		next[index - 3] += error * 3;
+		next[index] += error * 5;
+		next[index + 3] += error;
+	}
+
+	private static byte nearest(int r, int g, int b) {
+		byte best = 0;
+		double bd = Double.MAX_VALUE;
+		for (int k = 0; k < ImageComponent.MAPPINGS.length; k++) {
+			int c = ImageComponent.MAPPINGS[k];
+			if (c != 0) {
+				int kr = (c >> 16) & 0xFF;
+				int kg = (c >> 8) & 0xFF;
+				int kb = c & 0xFF;
+				double kd = getDistance(r, g, b, kr, kg, kb);
+				if (bd > kd) {
+					bd = kd;
+					best = (byte) k;
+				}
+				// exact color match!
+				if (bd == 0)
+					break;
+			}
+		}
+		return best;
+	}
+
+	// extracted & modified from spigot source
+	private static double getDistance(int r1, int g1, int b1, int r2, int g2, int b2) {
+		double mean = (r1 + r2) / 2.0;
+		double r = r1 - r2;
+		double g = g1 - g2;
+		int b = b1 - b2;
+		double weightR = 2 + mean / 256.0;
+		double weightG = 4.0;
+		double weightB = 2 + (255 - mean) / 256.0;
+		return weightR * r * r + weightG * g * g + weightB * b * b;
+	}
+}
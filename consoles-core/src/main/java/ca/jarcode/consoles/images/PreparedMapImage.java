@@ -1,5 +1,7 @@
 package ca.jarcode.consoles.images;
 
+import java.awt.image.BufferedImage;
+
 /*
 
 Prepared/rendered image that is ready to be displayed on an image component.
@@ -16,6 +18,11 @@ public class PreparedMapImage {
 		this.h = h;
 	}
 
+	// quantizes the image to map colors, this can be done off-thread
+	public PreparedMapImage(BufferedImage image, MapQuantizer.Dither dither) {
+		this(MapQuantizer.quantize(image, dither), image.getWidth(), image.getHeight());
+	}
+
 	public int getWidth() {
 		return w;
 	}
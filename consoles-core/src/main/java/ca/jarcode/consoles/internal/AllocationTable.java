@@ -0,0 +1,95 @@
+package ca.jarcode.consoles.internal;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+
+Map index table for a single context (player). Global map indexes are translated
+to the indexes the client actually sees through a flat array, and the client
+indexes that are currently taken are tracked in a bitset.
+
+Reserved indexes are client values that are still in use by the client (old map IDs
+from before a dimension change, or IDs blacklisted by the proxy), but no longer have
+a global index that maps to them.
+
+This class is not thread safe, it is guarded by the allocation lock in ConsoleHandler.
+
+ */
+class AllocationTable {
+
+	private static final int UNMAPPED = -1;
+
+	// global index -> client index, UNMAPPED if there is no mapping
+	private int[] translation = new int[0];
+	// client indexes that are taken, either by a mapping or a reservation
+	private final BitSet used = new BitSet();
+
+	// creates a table that maps all the given global indexes to themselves
+	static AllocationTable identity(BitSet globals) {
+		AllocationTable table = new AllocationTable();
+		for (int t = globals.nextSetBit(0); t >= 0; t = globals.nextSetBit(t + 1))
+			table.put(t, t);
+		return table;
+	}
+
+	// returns the client index for the given global index, or -1 if it is not mapped
+	int get(int global) {
+		return global >= 0 && global < translation.length ? translation[global] : UNMAPPED;
+	}
+
+	boolean contains(int global) {
+		return get(global) != UNMAPPED;
+	}
+
+	// maps the global index to the lowest free client index at or above the given start,
+	// or returns the current client index if the global index is already mapped.
+	int map(int global, int start) {
+		int current = get(global);
+		if (current != UNMAPPED) return current;
+		int to = used.nextClearBit(start);
+		if (to > Short.MAX_VALUE) return Short.MAX_VALUE;
+		put(global, to);
+		return to;
+	}
+
+	// removes the mapping for a global index, freeing up its client index
+	void remove(int global) {
+		int current = get(global);
+		if (current != UNMAPPED) {
+			translation[global] = UNMAPPED;
+			used.clear(current);
+		}
+	}
+
+	// reserves a client index without mapping any global index to it
+	void reserve(int client) {
+		if (client < 0) return;
+		used.set(client);
+	}
+
+	// turns every mapped client index into a reserved one, and drops all the mappings
+	// (the client indexes stay marked as used, so nothing gets mapped to them again)
+	void reserveAll() {
+		Arrays.fill(translation, UNMAPPED);
+	}
+
+	// all client indexes that are in use, mapped or reserved
+	short[] values() {
+		short[] arr = new short[used.cardinality()];
+		int index = 0;
+		for (int t = used.nextSetBit(0); t >= 0; t = used.nextSetBit(t + 1))
+			arr[index++] = (short) t;
+		return arr;
+	}
+
+	private void put(int global, int client) {
+		if (global >= translation.length) {
+			int old = translation.length;
+			translation = Arrays.copyOf(translation, Math.max(global + 1, old * 2));
+			Arrays.fill(translation, old, translation.length, UNMAPPED);
+		}
+		translation[global] = client;
+		used.set(client);
+	}
+}
@@ -30,6 +30,7 @@ public class ConsoleButton extends ConsoleComponent
 	private boolean toggleable = false;
 	private ConsoleButton(int w, int h, ConsoleRenderer renderer) {
 		super(w, h, renderer);
+		setContextInvariant(true);
 	}
 
 	public ConsoleButton(ConsoleRenderer renderer, String text) {
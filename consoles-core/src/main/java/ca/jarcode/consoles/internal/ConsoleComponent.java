@@ -17,6 +17,8 @@ public abstract class ConsoleComponent implements CanvasComponent, CanvasPainter
 	private boolean enabled;
 	private final ConsoleRenderer renderer;
 	private boolean contained = false;
+	// whether this component paints the same pixels regardless of the context
+	private boolean contextInvariant = false;
 	public ConsoleComponent(int w, int h, ConsoleRenderer renderer) {
 		this.w = w;
 		this.h = h;
@@ -38,6 +40,14 @@ public abstract class ConsoleComponent implements CanvasComponent, CanvasPainter
 			renderer.cacheBackground();
 		}
 	}
+	public void setContextInvariant(boolean contextInvariant) {
+		this.contextInvariant = contextInvariant;
+	}
+	// consoles that only contain context-invariant components are painted once,
+	// into a buffer that is shared between all players
+	public boolean isContextInvariant() {
+		return contextInvariant;
+	}
 	public boolean enabled() {
 		return enabled;
 	}
@@ -70,6 +80,9 @@ public abstract class ConsoleComponent implements CanvasComponent, CanvasPainter
 	}
 	public void handleClick(int x, int y, Player player) {}
 	public void onRemove() {}
+	// called on a painting thread when a context is gone (the player left), for components that keep
+	// track of what they painted for each context
+	public void onContextRemoved(String context) {}
 	protected void doLater(Runnable runnable, long delay) {
 		renderer.doLater(runnable, delay);
 	}
@@ -60,6 +60,16 @@ public abstract class ConsoleContainer extends ConsoleComponent implements Canva
 		onAdd(comp);
 	}
 	public void onAdd(CanvasComponent comp) {}
+	@Override
+	public boolean isContextInvariant() {
+		if (!super.isContextInvariant())
+			return false;
+		for (ConsoleComponent component : contained) {
+			if (!component.isContextInvariant())
+				return false;
+		}
+		return true;
+	}
 	protected final int totalContainedWidth(int margin) {
 		int width = 0;
 		for (int t = 0; t < contained.size(); t++) {
@@ -59,6 +59,7 @@ public class ConsoleDialog extends ConsoleContainer {
 	// manual dialog creation. Don't use this outside of component code.
 	public ConsoleDialog(int w, int h, ConsoleRenderer renderer) {
 		super(w, h, renderer, false);
+		setContextInvariant(true);
 		setBackground((byte) 20);
 	}
 
@@ -11,7 +11,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /*
 
@@ -20,6 +19,12 @@ An extension of a normal text area, this has significant changes:
 - Reads input from an input stream in a separate thread
 - Writes to either a FeedCreator, or the current output stream (if active)
 
+The IO thread blocks on the input stream instead of polling it, and is interrupted when the
+feed is stopped. Output that is read is collected and printed once per tick, with a single
+repaint, by one task on the main thread (the text area is also written to by the main thread,
+so printing has to happen there). Input is written to the output stream as soon as it's sent,
+so the output stream shouldn't block (the ones of programs never do).
+
 This class is relatively abstract, while this is the superclass of Terminal,
 you can use this for steaming any I/O.
 
@@ -54,17 +59,19 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 	protected final Object LOCK = new Object();
 	protected FeedEncoder encoder = null;
 
+	private static final int READ_SIZE = 4096;
+
 	protected volatile String prompt = null;
 	private volatile boolean showPrompt = true;
 
 	private FeedCreator creator = null;
 	protected boolean initialized = false;
 
-	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-	protected ByteArrayOutputStream outgoing = new ByteArrayOutputStream();
-
 	private final Object TASK_LOCK = new Object();
-	private final List<Integer> tasks = new ArrayList<>();
+	// output that has been read, but not printed yet
+	private final StringBuilder pending = new StringBuilder();
+	// whether a task is scheduled to print the pending output
+	private boolean flushScheduled = false;
 
 	private final List<Runnable> afterTasks = new ArrayList<>();
 
@@ -100,13 +107,15 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 	public void startFeed() {
 		if (running && !ended)
 			throw new IllegalStateException("Feed is already set up to IO");
-		running = true;
-		ended = false;
-		feed = new Thread(this);
-		feed.setName("Minecraft Console IO Feed");
-		feed.setDaemon(true);
-		feed.setPriority(Thread.MIN_PRIORITY);
-		feed.start();
+		synchronized (LOCK) {
+			running = true;
+			ended = false;
+			feed = new Thread(this);
+			feed.setName("Minecraft Console IO Feed");
+			feed.setDaemon(true);
+			feed.setPriority(Thread.MIN_PRIORITY);
+			feed.start();
+		}
 	}
 	public void setShowPrompt(boolean show) {
 		showPrompt = show;
@@ -115,7 +124,13 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 		return feed;
 	}
 	public void stop() {
-		running = false;
+		synchronized (LOCK) {
+			running = false;
+			// wakes up the IO thread if it's waiting for input. Once it has ended it could
+			// already be running something else, so it's left alone.
+			if (feed != null && !ended)
+				feed.interrupt();
+		}
 	}
 	public boolean hasEnded() {
 		return ended;
@@ -152,10 +167,8 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 		}
 		else if (initialized && running && !ended) {
 			try {
-				if (out != null) synchronized (LOCK) {
-					byte[] arr = encoder.encode(string + "\n");
-					outgoing.write(arr);
-				}
+				if (out != null)
+					out.write(encoder.encode(string + "\n"));
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -182,34 +195,25 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 
 	@Override
 	public void run() {
+		byte[] chunk = new byte[READ_SIZE];
 		try {
 			while (running) {
-				synchronized (LOCK) {
-					if (outgoing.size() > 0 && out != null) {
-						out.write(outgoing.toByteArray());
-						outgoing = new ByteArrayOutputStream();
-					}
-					boolean eof = false;
-					while (in.available() > 0) {
-						int v = in.read();
-						if (v == -1) {
-							eof = true;
-							break;
-						}
-						else
-							buffer.write(v);
-					}
-					if (buffer.size() > 0) {
-						String result = encoder.get(buffer.toByteArray());
-						if (result != null)
-							writeConsole(result);
-						buffer = new ByteArrayOutputStream();
-					}
-					if (eof) {
-						break;
-					}
+				int read = read(chunk);
+				if (read == -1)
+					break;
+				if (read > 0) {
+					String result = encoder.get(Arrays.copyOf(chunk, read));
+					if (result != null)
+						writeConsole(result);
 				}
-				Thread.sleep(50);
+			}
+		}
+		catch (InterruptedIOException e) {
+			// stopped while waiting on a stream that can be interrupted
+			if (running) synchronized (LOCK) {
+				if (Consoles.debug)
+					e.printStackTrace();
+				exception = e;
 			}
 		}
 		catch (Exception e) {
@@ -220,9 +224,11 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 			}
 		}
 		finally {
-			ended = true;
-			running = false;
 			synchronized (LOCK) {
+				ended = true;
+				running = false;
+				// clears an interrupt from stop(), nothing can interrupt the thread after this
+				Thread.interrupted();
 				if (prompt != null && showPrompt) {
 					writeConsole("\n" + prompt);
 				}
@@ -237,25 +243,56 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 						it.remove();
 			});
 			synchronized (TASK_LOCK) {
-				TASK_LOCK.notify();
+				TASK_LOCK.notifyAll();
 			}
 		}
 	}
+	// blocks until there is something to read. Returns the amount of bytes read (which is
+	// only 0 if the feed was stopped), or -1 at the end of the stream.
+	private int read(byte[] chunk) throws IOException {
+		if (in instanceof TimedInput)
+			return ((TimedInput) in).read(chunk, 0, chunk.length, 0);
+		// plain streams can block until the whole array is filled, so this blocks on the first
+		// byte, and then only reads what's available.
+		int first = in.read();
+		if (first == -1)
+			return -1;
+		chunk[0] = (byte) first;
+		int available = Math.min(in.available(), chunk.length - 1);
+		return available > 0 ? 1 + Math.max(in.read(chunk, 1, available), 0) : 1;
+	}
+	// queues text to be printed, output that is read in the same tick is printed together
 	private void writeConsole(String text) {
-		if (Consoles.getInstance().isEnabled()) {
-			AtomicInteger id = new AtomicInteger(-1);
-			id.set(Bukkit.getScheduler().scheduleSyncDelayedTask(Consoles.getInstance(), () -> {
-				this.print(text);
-				repaint();
-				synchronized (TASK_LOCK) {
-					tasks.remove((Integer) id.get());
-					TASK_LOCK.notify();
-				}
-			}));
-			synchronized (TASK_LOCK) {
-				tasks.add(id.get());
-			}
+		synchronized (TASK_LOCK) {
+			if (discardIfDisabled())
+				return;
+			pending.append(text);
+			if (flushScheduled)
+				return;
+			flushScheduled = Bukkit.getScheduler()
+					.scheduleSyncDelayedTask(Consoles.getInstance(), this::flush) != -1;
+		}
+	}
+	private void flush() {
+		synchronized (TASK_LOCK) {
+			print(pending.toString());
+			pending.setLength(0);
+			flushScheduled = false;
+			TASK_LOCK.notifyAll();
 		}
+		repaint();
+	}
+
+	// Nothing can be printed once the plugin is disabled, and a task that was scheduled to print
+	// won't run. Drops the pending output so waitFor() doesn't wait on it, must be called while
+	// holding the task lock.
+	private boolean discardIfDisabled() {
+		if (Consoles.getInstance().isEnabled())
+			return false;
+		pending.setLength(0);
+		flushScheduled = false;
+		TASK_LOCK.notifyAll();
+		return true;
 	}
 
 	// should be used by the main thread instead of waitFor()
@@ -268,7 +305,9 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 	public void waitFor() {
 		synchronized (TASK_LOCK) {
 			try {
-				while (tasks.size() > 0 || !ended) {
+				while (flushScheduled || !ended) {
+					if (discardIfDisabled() && ended)
+						break;
 					TASK_LOCK.wait();
 				}
 			}
@@ -277,6 +316,14 @@ public class ConsoleFeed extends ConsoleTextArea implements Runnable {
 			}
 		}
 	}
+	// input streams that can wait for data with a timeout, the feed reads everything that is
+	// buffered from these at once
+	public interface TimedInput {
+		// reads up to len bytes, waiting at most 'timeout' milliseconds for data (0 waits until
+		// there is data, or the thread is interrupted). Returns 0 if nothing arrived in time,
+		// and -1 at the end of the stream.
+		int read(byte[] b, int off, int len, long timeout) throws IOException;
+	}
 	public interface FeedEncoder {
 		String get(byte[] read);
 		byte[] encode(String text);
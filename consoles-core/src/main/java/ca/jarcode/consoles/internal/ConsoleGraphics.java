@@ -122,66 +122,37 @@ public class ConsoleGraphics implements CanvasGraphics {
 		}
 		else return (byte) 0;
 	}
-	@SuppressWarnings("ConstantConditions")
-	public final byte drawFormatted(int x, int y, byte inherit, String text, CharacterModifier modifier) {
-		int at = 0;
-		int i = 0;
-		int charIndex = 0;
-		char[] arr = text.toCharArray();
-		byte color = inherit;
-		boolean skipNext = false;
-		for (char c : arr) {
-			if (i != text.length() - 1 &&
-					c == '\u00A7' && CColor.colorCharRange(arr[i + 1])) {
-				ChatColor chatColor = ChatColor.getByChar((arr[i + 1] + "").toLowerCase().charAt(0));
-				switch (chatColor) {
-					case WHITE: color = 32; break;
-					case DARK_GRAY: color = 24; break;
-					case GRAY: color = 36; break;
-					case BLACK: color = 119; break;
-					case DARK_BLUE: color = 48; break;
-					case DARK_AQUA: color = 127; break;
-					case AQUA: color = 125; break;
-					case BLUE: color = 70; break;
-					case DARK_GREEN: color = 28; break;
-					case GREEN: color = 6; break;
-					case DARK_PURPLE: color = 67; break;
-					case LIGHT_PURPLE: color = 66; break;
-					case YELLOW: color = 74; break;
-					case RED: color = 114; break;
-					case DARK_RED: color = 115; break;
-					case GOLD: color = 61; break;
-					case RESET: color = 32; break;
-				}
-				skipNext = true;
-			}
-			else if(skipNext) {
-				skipNext = false;
-			}
-			else {
-				if (c == '\u00A7')
-					c = '&';
-				MapFont.CharacterSprite sprite = font.getChar(c);
-				for (int k = 0; k < sprite.getWidth(); k++) {
-					for (int j = 0; j < sprite.getHeight(); j++) {
-						if (sprite.get(j, k)) {
-							if (!relative)
-								renderer.getPixelBuffer().set(k + at + x, j + y, color, renderer.getPaintContext());
-							else
-								renderer.getPixelBuffer().set(k + at + x + pos.getX(), j + y + pos.getY(), color,
-										renderer.getPaintContext());
-						}
-					}
-				}
-				if (modifier != null)
-					modifier.paint(charIndex, c, sprite, at + x, y);
-				at += sprite.getWidth() + 1;
-				charIndex++;
-			}
-			i++;
+	// the map color for a formatting code, or the current color if the code isn't a color
+	static byte formatColor(ChatColor chatColor, byte color) {
+		switch (chatColor) {
+			case WHITE: color = 32; break;
+			case DARK_GRAY: color = 24; break;
+			case GRAY: color = 36; break;
+			case BLACK: color = 119; break;
+			case DARK_BLUE: color = 48; break;
+			case DARK_AQUA: color = 127; break;
+			case AQUA: color = 125; break;
+			case BLUE: color = 70; break;
+			case DARK_GREEN: color = 28; break;
+			case GREEN: color = 6; break;
+			case DARK_PURPLE: color = 67; break;
+			case LIGHT_PURPLE: color = 66; break;
+			case YELLOW: color = 74; break;
+			case RED: color = 114; break;
+			case DARK_RED: color = 115; break;
+			case GOLD: color = 61; break;
+			case RESET: color = 32; break;
 		}
 		return color;
 	}
+	public final byte drawFormatted(int x, int y, byte inherit, String text, CharacterModifier modifier) {
+		String context = renderer.getPaintContext();
+		return GlyphAtlas.walkFormatted(font, text, inherit, (glyph, c, index, at, color) -> {
+			drawGlyph(glyph, at + x, y, color, context);
+			if (modifier != null)
+				modifier.paint(index, c, glyph.sprite, at + x, y);
+		});
+	}
 
 	@Override
 	public void setFont(MapFont font) {
@@ -190,28 +161,50 @@ public class ConsoleGraphics implements CanvasGraphics {
 
 	public final void draw(int x, int y, byte color, String text) {
 		int at = 0;
+		String context = renderer.getPaintContext();
 		for (char c : text.toCharArray()) {
-			MapFont.CharacterSprite sprite = font.getChar(c);
-			for (int k = 0; k < sprite.getWidth(); k++) {
-				for (int j = 0; j < sprite.getHeight(); j++) {
-					if (sprite.get(j, k)) {
-						if (!relative)
-							renderer.getPixelBuffer().set(k + at + x, j + y, color, renderer.getPaintContext());
-						else
-							renderer.getPixelBuffer().set(k + at + x + pos.getX(), j + y + pos.getY(), color,
-									renderer.getPaintContext());
-					}
-				}
-			}
-			at += sprite.getWidth() + 1;
+			GlyphAtlas.Glyph glyph = GlyphAtlas.glyph(font, c);
+			drawGlyph(glyph, at + x, y, color, context);
+			at += glyph.width + 1;
 		}
 	}
+	// blits the rows of a pre-baked glyph straight into the pixel buffer
+	private void drawGlyph(GlyphAtlas.Glyph glyph, int x, int y, byte color, String context) {
+		if (!relative)
+			renderer.getPixelBuffer().setMask(x, y, glyph.rows, glyph.width, color, context);
+		else
+			renderer.getPixelBuffer().setMask(x + pos.getX(), y + pos.getY(), glyph.rows, glyph.width, color,
+					context);
+	}
 	public final void draw(int x, int y, byte color) {
 		if (!relative)
 			renderer.getPixelBuffer().set(x, y, color, renderer.getPaintContext());
 		else
 			renderer.getPixelBuffer().set(x + pos.getX(), y + pos.getY(), color, renderer.getPaintContext());
 	}
+	@Override
+	public void fillRect(int x, int y, int w, int h, byte color) {
+		if (!relative)
+			renderer.getPixelBuffer().fill(x, y, w, h, color, renderer.getPaintContext());
+		else
+			renderer.getPixelBuffer().fill(x + pos.getX(), y + pos.getY(), w, h, color, renderer.getPaintContext());
+	}
+	@Override
+	public void blit(int x, int y, byte[] src, int offset, int stride, int w, int h) {
+		if (!relative)
+			renderer.getPixelBuffer().blit(x, y, src, offset, stride, w, h, renderer.getPaintContext());
+		else
+			renderer.getPixelBuffer().blit(x + pos.getX(), y + pos.getY(), src, offset, stride, w, h,
+					renderer.getPaintContext());
+	}
+	@Override
+	public void copyRect(int x, int y, int w, int h, int toX, int toY) {
+		if (!relative)
+			renderer.getPixelBuffer().copy(x, y, w, h, toX, toY, renderer.getPaintContext());
+		else
+			renderer.getPixelBuffer().copy(x + pos.getX(), y + pos.getY(), w, h,
+					toX + pos.getX(), toY + pos.getY(), renderer.getPaintContext());
+	}
 	public void drawBackground() {
 		if (!component.isContained())
 			renderer.drawBackground(pos.getX(), pos.getY(), component.getWidth(), component.getHeight());
@@ -1,8 +1,6 @@
 package ca.jarcode.consoles.internal;
 
 import ca.jarcode.consoles.api.nms.ConsolesNMS;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import ca.jarcode.consoles.Consoles;
 import ca.jarcode.consoles.messaging.ConsoleBungeeHook;
 import org.bukkit.*;
@@ -70,7 +68,7 @@ public class ConsoleHandler implements Listener {
 
 	static {
 		INSTANCE = new ConsoleHandler();
-		INSTANCE.paintThread.start();
+		INSTANCE.painter.start(Consoles.paintThreads, Consoles.maxFrameRate);
 	}
 
 	private static Object get(Field field, Object instance) {
@@ -91,13 +89,15 @@ public class ConsoleHandler implements Listener {
 	// we lock allocation code because it has to be accessed from the painting thread to send packets
 	private final Object ALLOCATION_LOCK = new Object();
 	// this holds all indexes of the maps that the server refers to
-	private ArrayList<Short> defaultAllocation = new ArrayList<>();
+	private final BitSet defaultAllocation = new BitSet();
 	// this is the index mappings for every client
-	private Map<String, BiMap<Short, Short>> allocations = new HashMap<>();
-	// the painter (Runnable) ran in separate thread that handles requests/paints
+	private Map<String, AllocationTable> allocations = new HashMap<>();
+	// spatial index of created consoles, used for ray intersection
+	private final ConsoleIndex<ManagedConsole> index = new ConsoleIndex<>();
+	// entity id -> console index for item frames, read from netty threads
+	private final FrameIndex<ManagedConsole> frames = new FrameIndex<>();
+	// the painter that handles requests/paints in its own pool of threads
 	private final MapPainter painter = new MapPainter();
-	// the single thread used for painting
-	private final Thread paintThread = new Thread(painter);
 
 	public final List<RawInteractionListener> interactionHooks = new ArrayList<>();
 
@@ -112,11 +112,6 @@ public class ConsoleHandler implements Listener {
 
 	public boolean local = true;
 
-	{
-		paintThread.setDaemon(true);
-		paintThread.setName("Console Painting Thread");
-	}
-
 	public ConsoleHandler() {
 
 		ConsolesNMS.internals.setCommandBlocksEnabled(true);
@@ -134,17 +129,11 @@ public class ConsoleHandler implements Listener {
 
 	public short translateIndex(String context, short global) {
 		synchronized (ALLOCATION_LOCK) {
-			if (!getIndexTable(context).containsKey(global))
-				return -1;
-			else return grabIndex(context, global);
+			return (short) getIndexTable(context).get(global);
 		}
 	}
-	private short grabIndex(String context, short global) {
-		Short s = allocations.containsKey(context) ? allocations.get(context).get(global) : Short.valueOf((short) 0);
-		return s == null ? 0 : s;
-	}
 	// this takes all the currently allocated values for this context and
-	// remaps them to -ive keys, and re-allocates all the global values to
+	// reserves them, and re-allocates all the global values to
 	// new context values
 	//
 	// used to refresh map damage values after a dimension change
@@ -154,23 +143,10 @@ public class ConsoleHandler implements Listener {
 		if (!Thread.holdsLock(ALLOCATION_LOCK)) synchronized (ALLOCATION_LOCK) {
 			return allocateNew(context);
 		}
-		Map<Short, Short> target = getIndexTable(context);
-		Map<Short, Short> old = HashBiMap.create();
-		for (Map.Entry<Short, Short> entry : target.entrySet()) {
-			for (short t = -1; ; t--) {
-				if (!old.containsKey(t)) {
-					old.put(t, entry.getValue());
-					break;
-				}
-			}
-		}
-		target.clear();
-		for (Map.Entry<Short, Short> entry : old.entrySet()) {
-			target.put(entry.getKey(), entry.getValue());
-		}
-		for (short index : defaultAllocation) {
-			short to = mapIndex(context, index);
-			if (to == Short.MAX_VALUE) return false;
+		AllocationTable target = getIndexTable(context);
+		target.reserveAll();
+		for (int t = defaultAllocation.nextSetBit(0); t >= 0; t = defaultAllocation.nextSetBit(t + 1)) {
+			if (target.map(t, Consoles.startingId) == Short.MAX_VALUE) return false;
 		}
 		return true;
 	}
@@ -181,32 +157,15 @@ public class ConsoleHandler implements Listener {
 		if (!Thread.holdsLock(ALLOCATION_LOCK)) synchronized (ALLOCATION_LOCK) {
 			return mapIndex(context, global);
 		}
-		Map<Short, Short> target = getIndexTable(context);
-		if (target.containsKey(global)) return target.get(global);
-		short result;
-		for (short t = Consoles.startingId;; t++) {
-			if (!target.containsValue(t)) {
-				target.put(global, t);
-				result = t;
-				break;
-			}
-		}
-		return result;
+		return (short) getIndexTable(context).map(global, Consoles.startingId);
 	}
-	private BiMap<Short, Short> getIndexTable(String context) {
-		if (!allocations.containsKey(context)) {
-			BiMap<Short, Short> target = createTable();
+	private AllocationTable getIndexTable(String context) {
+		AllocationTable target = allocations.get(context);
+		if (target == null) {
+			// when we create new allocation mappings for a client, we can copy over
+			// the global/default allocations
+			target = AllocationTable.identity(defaultAllocation);
 			allocations.put(context, target);
-			return target;
-		}
-		else return allocations.get(context);
-	}
-	// when we create new allocation mappings for a client, we can copy over
-	// the global/default allocations
-	private BiMap<Short, Short> createTable() {
-		BiMap<Short, Short> target = HashBiMap.create();
-		for (short s : defaultAllocation) {
-			target.put(s, s);
 		}
 		return target;
 	}
@@ -315,21 +274,12 @@ public class ConsoleHandler implements Listener {
 		if (!Thread.holdsLock(ALLOCATION_LOCK)) synchronized (ALLOCATION_LOCK) {
 			replaceWithBlacklist(player, ids);
 		}
-		BiMap<Short, Short> target = HashBiMap.create();
-
-		short n = -1;
-		for (short id : ids) {
-			for (; ; n--) {
-				if (!target.containsKey(n)) {
-					target.put(n, id);
-					break;
-				}
-			}
-		}
+		AllocationTable target = new AllocationTable();
+		for (short id : ids)
+			target.reserve(id);
 		allocations.put(player.getName(), target);
-		for (short s : defaultAllocation) {
-			mapIndex(player.getName(), s);
-		}
+		for (int t = defaultAllocation.nextSetBit(0); t >= 0; t = defaultAllocation.nextSetBit(t + 1))
+			target.map(t, Consoles.startingId);
 	}
 	private void doLater(Runnable runnable) {
 		Bukkit.getScheduler().scheduleSyncDelayedTask(Consoles.getInstance(), runnable);
@@ -359,21 +309,13 @@ public class ConsoleHandler implements Listener {
 
 	public short[] getContextIds(Player player) {
 		synchronized (ALLOCATION_LOCK) {
-			if (!allocations.containsKey(player.getName())) return new short[0];
-			Map<Short, Short> map = getIndexTable(player.getName());
-			short[] arr = new short[map.size()];
-			int index = 0;
-			for (short s : map.values()) {
-				arr[index] = s;
-				index++;
-			}
-			return arr;
+			AllocationTable table = allocations.get(player.getName());
+			return table == null ? new short[0] : table.values();
 		}
 	}
 	public void clearAllocations(Player player) {
 		synchronized (ALLOCATION_LOCK) {
-			if (allocations.containsKey(player.getName()))
-				allocations.remove(player.getName());
+			allocations.remove(player.getName());
 			getIndexTable(player.getName());
 		}
 	}
@@ -446,24 +388,25 @@ public class ConsoleHandler implements Listener {
 		clickEvent(e.getPlayer(), e::setCancelled);
 	}
 	public ManagedConsole[] getConsolesLookingAt(Location eye) {
-		return consoles.stream().filter(console -> console.intersect(eye, 7) != null)
+		int[] arr = new int[2];
+		return index.near(eye, 7).stream().filter(console -> console.intersect(eye, 7, arr))
 				.toArray(ManagedConsole[]::new);
 	}
 	public boolean hittingConsole(Player player) {
-		for (ManagedConsole console : consoles.toArray(new ManagedConsole[consoles.size()])) {
-			if (console.created()) {
-				int[] arr = console.intersect(player.getEyeLocation(), 7);
-				if (arr != null)
-					return true;
-			}
+		Location eye = player.getEyeLocation();
+		int[] arr = new int[2];
+		for (ManagedConsole console : index.near(eye, 7)) {
+			if (console.intersect(eye, 7, arr))
+				return true;
 		}
 		return false;
 	}
 	private void clickEvent(Player player, Consumer<Boolean> cancel) {
 		boolean cancelled = false;
-		for (ManagedConsole console : consoles.toArray(new ManagedConsole[consoles.size()])) {
+		Location eye = player.getEyeLocation();
+		for (ManagedConsole console : index.near(eye, Consoles.interactRange)) {
 			if (console.created()) {
-				int[] arr = console.intersect(player.getEyeLocation(), Consoles.interactRange);
+				int[] arr = console.intersect(eye, Consoles.interactRange);
 				if (arr != null) {
 					if (!cancelled && cancel != null) {
 						cancel.accept(true);
@@ -483,25 +426,14 @@ public class ConsoleHandler implements Listener {
 		removeAll();
 	}
 	public boolean isConsoleEntity(ItemFrame entity) {
-		for (ManagedConsole console : consoles) {
-			if (console.protect(entity))
-				return true;
-		}
-		return false;
+		ManagedConsole console = frames.get(entity.getEntityId());
+		return console != null && console.protect(entity);
 	}
 	public boolean isConsoleEntity(int id) {
-		for (ManagedConsole console : consoles) {
-			if (console.isFrameId(id))
-				return true;
-		}
-		return false;
+		return frames.contains(id);
 	}
 	public ManagedConsole getConsoleForId(int id) {
-		for (ManagedConsole console : consoles) {
-			if (console.isFrameId(id))
-				return console;
-		}
-		return null;
+		return frames.get(id);
 	}
 	public void removeAll() {
 		for (ManagedConsole console : consoles) {
@@ -509,21 +441,29 @@ public class ConsoleHandler implements Listener {
 			handleRemove(console, false);
 		}
 		consoles.clear();
+		index.clear();
+		frames.clear();
+	}
+	void handleCreate(ManagedConsole console) {
+		index.add(console, console.getLocation().getWorld(), console.getBounds());
+		frames.put(console, console.frameIds());
 	}
 	void handleRemove(ManagedConsole console) {
 		handleRemove(console, true);
 	}
 	private void handleRemove(ManagedConsole console, boolean rm) {
 		if (console.created()) {
+			index.remove(console, console.getLocation().getWorld());
+			frames.remove(console);
 			int size = console.getFrameWidth() * console.getFrameHeight();
 			synchronized (ALLOCATION_LOCK) {
-				for (short t = console.getMapIndex(); t < console.getMapIndex() + size; t++) {
+				for (int t = console.getMapIndex(); t < console.getMapIndex() + size; t++) {
 					// update context allocations
-					for (Map<Short, Short> map : allocations.values()) {
-						map.remove(t);
+					for (AllocationTable table : allocations.values()) {
+						table.remove(t);
 					}
-					defaultAllocation.remove(Short.valueOf(t));
 				}
+				defaultAllocation.clear(console.getMapIndex(), console.getMapIndex() + size);
 			}
 		}
 		if (rm)
@@ -534,36 +474,35 @@ public class ConsoleHandler implements Listener {
 	public short allocate(int size) {
 		short lowest = Consoles.startingId;
 		synchronized (ALLOCATION_LOCK) {
+			// skip over allocated blocks until we find a gap that is large enough
 			while (!fits(lowest, size))
-				lowest++;
-			for (short t = lowest; t < lowest + size; t++) {
+				lowest = (short) defaultAllocation.nextClearBit(defaultAllocation.nextSetBit(lowest));
+			for (int t = lowest; t < lowest + size; t++) {
 				// update context allocations
-				for (String context : allocations.keySet()) {
-					if (getIndexTable(context).containsKey(t))
+				for (Map.Entry<String, AllocationTable> entry : allocations.entrySet()) {
+					if (entry.getValue().contains(t))
 						Consoles.getInstance().getLogger().warning(
-								String.format(lang.getString("allocation-overwrite"),context));
-					mapIndex(context, t);
+								String.format(lang.getString("allocation-overwrite"), entry.getKey()));
+					entry.getValue().map(t, Consoles.startingId);
 				}
-				defaultAllocation.add(t);
 			}
+			defaultAllocation.set(lowest, lowest + size);
 		}
 		return lowest;
 	}
 	public void free(short index, int size) {
 		synchronized (ALLOCATION_LOCK) {
-			for (short t = index; t < index + size; t++) {
-				for (Map<Short, Short> map : allocations.values()) {
-					map.remove(t);
+			for (int t = index; t < index + size; t++) {
+				for (AllocationTable table : allocations.values()) {
+					table.remove(t);
 				}
-				defaultAllocation.remove(Short.valueOf(t));
 			}
+			defaultAllocation.clear(index, index + size);
 		}
 	}
 	private boolean fits(short i, int size) {
-		for (short index : defaultAllocation) {
-			if (index >= i && index < i + size) return false;
-		}
-		return true;
+		int next = defaultAllocation.nextSetBit(i);
+		return next < 0 || next >= i + size;
 	}
 	public List<ManagedConsole> get(String identifier) {
 		return consoles.stream()
@@ -0,0 +1,94 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.util.LocalPosition;
+import ca.jarcode.consoles.util.Region;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+
+/*
+
+Spatial index for created consoles, used to find the consoles that are close to a
+player's eye without ray-testing every console on the server.
+
+Consoles are stored per world, in every chunk column that their bounds cover.
+
+ */
+class ConsoleIndex<T> {
+
+	// chunk sized cells (16 blocks)
+	private static final int CELL_SHIFT = 4;
+
+	private static long key(int cx, int cz) {
+		return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+	}
+
+	private final Map<UUID, Map<Long, List<T>>> worlds = new HashMap<>();
+
+	// indexes a console in every cell that its bounds cover
+	synchronized void add(T console, World world, Region bounds) {
+		Map<Long, List<T>> cells = worlds.get(world.getUID());
+		if (cells == null) {
+			cells = new HashMap<>();
+			worlds.put(world.getUID(), cells);
+		}
+		LocalPosition origin = bounds.getOrigin();
+		int x1 = origin.x >> CELL_SHIFT, x2 = (origin.x + bounds.getWidth() - 1) >> CELL_SHIFT;
+		int z1 = origin.z >> CELL_SHIFT, z2 = (origin.z + bounds.getDepth() - 1) >> CELL_SHIFT;
+		for (int cx = x1; cx <= x2; cx++) {
+			for (int cz = z1; cz <= z2; cz++) {
+				List<T> list = cells.get(key(cx, cz));
+				if (list == null) {
+					list = new ArrayList<>(2);
+					cells.put(key(cx, cz), list);
+				}
+				if (!list.contains(console))
+					list.add(console);
+			}
+		}
+	}
+
+	synchronized void remove(T console, World world) {
+		Map<Long, List<T>> cells = worlds.get(world.getUID());
+		if (cells == null) return;
+		Iterator<List<T>> it = cells.values().iterator();
+		while (it.hasNext()) {
+			List<T> list = it.next();
+			if (list.remove(console) && list.isEmpty())
+				it.remove();
+		}
+		if (cells.isEmpty())
+			worlds.remove(world.getUID());
+	}
+
+	synchronized void clear() {
+		worlds.clear();
+	}
+
+	// returns all consoles that could intersect with a ray of the given length, cast from the eye.
+	// consoles pop out by 1/16th of a block from their bounds, so we pad the range by one block.
+	synchronized List<T> near(Location eye, double range) {
+		World world = eye.getWorld();
+		Map<Long, List<T>> cells = world == null ? null : worlds.get(world.getUID());
+		if (cells == null) return Collections.emptyList();
+		double pad = range + 1;
+		int x1 = (int) Math.floor(eye.getX() - pad) >> CELL_SHIFT, x2 = (int) Math.floor(eye.getX() + pad) >> CELL_SHIFT;
+		int z1 = (int) Math.floor(eye.getZ() - pad) >> CELL_SHIFT, z2 = (int) Math.floor(eye.getZ() + pad) >> CELL_SHIFT;
+		List<T> result = null;
+		for (int cx = x1; cx <= x2; cx++) {
+			for (int cz = z1; cz <= z2; cz++) {
+				List<T> list = cells.get(key(cx, cz));
+				if (list == null) continue;
+				if (result == null)
+					result = new ArrayList<>(list.size());
+				for (T console : list) {
+					// consoles can span over multiple cells
+					if (!result.contains(console))
+						result.add(console);
+				}
+			}
+		}
+		return result == null ? Collections.emptyList() : result;
+	}
+}
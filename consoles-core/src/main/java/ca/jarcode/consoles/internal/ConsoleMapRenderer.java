@@ -2,22 +2,39 @@ package ca.jarcode.consoles.internal;
 
 import ca.jarcode.consoles.api.nms.ClientConnection;
 import ca.jarcode.consoles.api.nms.ConsolesNMS;
+import ca.jarcode.consoles.api.nms.EncodedMapPacket;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 /*
 
 This class is for a single 128x128 map, it handles the actual sending of packets
 and update triggers.
 
+None of this is thread safe, it should only be used by the painter while it holds the
+renderer's lock. Shared packets are released while resetting, which would otherwise
+race with another thread sending them.
+
  */
 public class ConsoleMapRenderer {
 
+	private static final int[] FULL_REGION = {0, 0, ConsolePixelBuffer.SIZE, ConsolePixelBuffer.SIZE};
+
 	private ConsoleRenderer renderer;
 	private short id;
 	private ConsolePixelBuffer pixelBuffer;
 	private int x, y;
 	private HashMap<String, Short> newContexts = new HashMap<>();
+	// the last data sent to each context, used to only send the pixels that changed
+	private HashMap<String, byte[]> sent = new HashMap<>();
+	// regions of the shared buffer that have changed since they were last sent to each context
+	private HashMap<String, int[]> pending = new HashMap<>();
+	// packets for regions of the shared buffer, which are serialized once and then sent to every
+	// context that needs the same region. They are released when the shared buffer is published again.
+	private List<SharedPacket> encoded = new ArrayList<>();
 
 	public ConsoleMapRenderer(ConsolePixelBuffer pixelBuffer, int x, int y, ConsoleRenderer renderer, short id) {
 		this.id = id;
@@ -28,8 +45,21 @@ public class ConsoleMapRenderer {
 	}
 	public void clearContextCache(String context) {
 		newContexts.remove(context);
+		sent.remove(context);
+		pending.remove(context);
+	}
+	// clears everything we know about what the clients have, so the entire section is sent again
+	public void reset() {
+		newContexts.clear();
+		sent.clear();
+		pending.clear();
+		releaseEncoded();
 	}
 	public void forceSwitch(String context) {
+		if (pixelBuffer.isShared()) {
+			pending.put(context, FULL_REGION);
+			return;
+		}
 		ConsolePixelBuffer.UpdateSwitch update = pixelBuffer.getSwitch(context, x, y);
 		if (update != null)
 			update.fire();
@@ -38,25 +68,67 @@ public class ConsoleMapRenderer {
 
 		if (!renderer.created()) return false;
 
-		// this switch determines whether the packet should be sent to the client.
-		// it is only true/fired if this section of the pixel buffer has been written to since the last check,
-		// and returns null if the context has never been written to for the entire console
-		ConsolePixelBuffer.UpdateSwitch update = pixelBuffer.getSwitch(context, x, y);
+		boolean shared = pixelBuffer.isShared();
+		// whether the region already only contains pixels that the client doesn't have
+		boolean exact;
+		// the region of the section that was written to, as {x, y, w, h}
+		int[] region;
+
+		if (shared) {
+			// the changes to the shared buffer are collected once, and handed out to every context
+			publish();
+			region = pending.remove(context);
+			exact = true;
+		}
+		else {
+			// this switch determines whether the packet should be sent to the client.
+			// it is only fired if this section of the pixel buffer has been written to since the last check,
+			// and returns null if the context has never been written to for the entire console
+			ConsolePixelBuffer.UpdateSwitch update = pixelBuffer.getSwitch(context, x, y);
+
+			// forced updates always send the entire section, regardless of what the client already has
+			exact = update != null && update.isForced();
+			region = update != null ? update.take() : null;
+		}
 
 		// get the id of the map we're actually sending to, instead of the global id we generally refer to
 		short clientId = ConsoleHandler.getInstance().translateIndex(context, id);
 		// send an update if an update was fired, or if the context map id hasn't been seen to this player before
 		short lastId = getLastId(context);
-		if ((update != null && update.wasFired()) || lastId != clientId) {
+		if (region != null || lastId != clientId) {
 			if (lastId == -1)
 				return true;
 			byte[] data = pixelBuffer.getBuffer(context, x, y);
-			// if the id of the map for this player changed, send them an update packet
+			// if the id of the map for this player changed, send them the entire section
 			if (lastId != clientId) {
 				newContexts.put(context, clientId);
+				region = FULL_REGION;
+				exact = true;
+			}
+			if (data == null)
+				return true;
+			// otherwise, shrink the region to the pixels that actually differ from what we sent last
+			else if (!exact) {
+				region = trim(sent.get(context), data, region);
+				if (region == null)
+					return false;
 			}
-			// create the packet
-			Object packet = ConsolesNMS.packetInternals.createMapPacket(data, clientId);
+			// contexts reading from the shared buffer are sent the same packets, instead of their own
+			if (shared) {
+				EncodedMapPacket packet = encode(data, region);
+				if (packet != null)
+					packet.sendTo(connection, clientId);
+				return true;
+			}
+			// create the packet, only containing the modified region of the section. Packets for the
+			// whole section use the array they're given, and are serialized later on a netty thread,
+			// so they get a copy: the client has to end up with exactly what we record below.
+			Object packet = region[2] == ConsolePixelBuffer.SIZE && region[3] == ConsolePixelBuffer.SIZE ?
+					ConsolesNMS.packetInternals.createMapPacket(data.clone(), clientId) :
+					ConsolesNMS.packetInternals.createMapPacket(data, clientId, region[0], region[1],
+							region[2], region[3]);
+			// keep track of what the client has
+			record(context, data, region);
 			// send the packet
 			if (packet != null)
 				connection.sendPacket(packet);
@@ -64,11 +136,102 @@ public class ConsoleMapRenderer {
 		}
 		return false;
 	}
+	// takes the changes made to this section of the shared buffer, and merges them into
+	// the pending regions of every context that has been sent this map before.
+	private void publish() {
+		ConsolePixelBuffer.UpdateSwitch update = pixelBuffer.getSwitch(ConsolePixelBuffer.SHARED_CONTEXT, x, y);
+		if (update == null)
+			return;
+		boolean forced = update.isForced();
+		int[] region = update.take();
+		byte[] data = pixelBuffer.getBuffer(ConsolePixelBuffer.SHARED_CONTEXT, x, y);
+		if (region == null || data == null)
+			return;
+		if (!forced) {
+			region = trim(sent.get(ConsolePixelBuffer.SHARED_CONTEXT), data, region);
+			if (region == null)
+				return;
+		}
+		record(ConsolePixelBuffer.SHARED_CONTEXT, data, region);
+		// the shared buffer changed, so the packets we serialized are out of date
+		releaseEncoded();
+		for (String context : newContexts.keySet()) {
+			pending.merge(context, region, ConsoleMapRenderer::union);
+		}
+	}
+	// returns the packet for a region of the shared buffer, it is only serialized for the first
+	// context that needs it after the buffer is published.
+	private EncodedMapPacket encode(byte[] data, int[] region) {
+		for (SharedPacket entry : encoded) {
+			if (Arrays.equals(entry.region, region))
+				return entry.packet;
+		}
+		EncodedMapPacket packet = ConsolesNMS.packetInternals.encodeMapPacket(data, region[0], region[1],
+				region[2], region[3]);
+		if (packet != null)
+			encoded.add(new SharedPacket(region, packet));
+		return packet;
+	}
+	private void releaseEncoded() {
+		for (SharedPacket entry : encoded)
+			entry.packet.release();
+		encoded.clear();
+	}
+	// bounding box of both regions
+	static int[] union(int[] a, int[] b) {
+		int minX = Math.min(a[0], b[0]);
+		int minY = Math.min(a[1], b[1]);
+		int maxX = Math.max(a[0] + a[2], b[0] + b[2]);
+		int maxY = Math.max(a[1] + a[3], b[1] + b[3]);
+		return new int[] {minX, minY, maxX - minX, maxY - minY};
+	}
+	// copies the region of the section that was sent into the last sent data for the context
+	private void record(String context, byte[] data, int[] region) {
+		byte[] last = sent.get(context);
+		if (last == null) {
+			last = new byte[data.length];
+			sent.put(context, last);
+			region = FULL_REGION;
+		}
+		for (int j = region[1]; j < region[1] + region[3]; j++) {
+			int offset = region[0] + (j * ConsolePixelBuffer.SIZE);
+			System.arraycopy(data, offset, last, offset, region[2]);
+		}
+	}
+	// finds the bounding box of the pixels in the given region that differ from the last
+	// data sent, returning null if nothing has changed.
+	static int[] trim(byte[] last, byte[] data, int[] region) {
+		if (last == null)
+			return region;
+		int minX = ConsolePixelBuffer.SIZE, minY = ConsolePixelBuffer.SIZE, maxX = -1, maxY = -1;
+		for (int j = region[1]; j < region[1] + region[3]; j++) {
+			for (int i = region[0]; i < region[0] + region[2]; i++) {
+				int index = i + (j * ConsolePixelBuffer.SIZE);
+				if (last[index] != data[index]) {
+					if (i < minX) minX = i;
+					if (i > maxX) maxX = i;
+					if (j < minY) minY = j;
+					if (j > maxY) maxY = j;
+				}
+			}
+		}
+		if (maxX < 0)
+			return null;
+		return new int[] {minX, minY, maxX - minX + 1, maxY - minY + 1};
+	}
 	private short getLastId(String context) {
 		if (newContexts.containsKey(context))
 			return newContexts.get(context);
 		else return -2;
 	}
+	private static class SharedPacket {
+		final int[] region;
+		final EncodedMapPacket packet;
+		SharedPacket(int[] region, EncodedMapPacket packet) {
+			this.region = region;
+			this.packet = packet;
+		}
+	}
 	// old code used to manually update the metadata of an item frame
 	// this was before I even split NMS code, but I'm keeping this around just in case
 	/*
@@ -10,9 +10,11 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
 
@@ -27,19 +29,27 @@ public class ConsolePixelBuffer {
     // painting width and height. I doubt this will change.
     public static final int SIZE = 128;
 
+    // the context that consoles with only context-invariant components are painted in.
+    // player names can't contain this character, so this won't collide with a real context.
+    public static final String SHARED_CONTEXT = "#shared";
+
     // segmented buffers for every context
     HashMap<String, byte[][][]> buffers = new HashMap<>();
     // flipped when a single map needs to update
-    // triggered on forced repaints/updates and when a pixel in this map is modified
+    // triggered on forced repaints/updates and when a pixel in this map is modified,
+    // also tracks the region of the map that was modified.
     HashMap<String, UpdateSwitch[][]> switches = new HashMap<>();
-    // flipped when the buffer needs to be repainted for a context
-    List<String> repaintStack = new ArrayList<>();
+    // contexts that don't need to be repainted, cleared when the buffer needs to be repainted.
+    // modified from both the painting threads and the main thread.
+    Set<String> repaintStack = ConcurrentHashMap.newKeySet();
     // player listener, used to trigger updates on certain events
     private PlayerListener listener;
     // console renderer this belongs to
     private ConsoleRenderer renderer;
     // width and height
     private int w, h;
+    // whether every context reads from and writes to the shared buffer
+    private volatile boolean shared = false;
 
     public ConsolePixelBuffer(ConsoleRenderer renderer, int w, int h) {
         this.w = w;
@@ -56,6 +66,36 @@ public class ConsolePixelBuffer {
     private byte[][][] newBuffer() {
         return new byte[w][h][SIZE * SIZE];
     }
+    // copy-on-write for contexts that start writing after the console was shared
+    private byte[][][] copyBuffer(byte[][][] from) {
+        byte[][][] buffer = new byte[w][h][];
+        for (int i = 0; i < w; i++) {
+            for (int j = 0; j < h; j++) {
+                buffer[i][j] = from[i][j].clone();
+            }
+        }
+        return buffer;
+    }
+    // sets whether all contexts share the same buffer, returns true if this changed. Buffers for
+    // individual contexts are dropped when switching to the shared buffer.
+    boolean setShared(boolean shared) {
+        if (this.shared == shared)
+            return false;
+        this.shared = shared;
+        if (shared) {
+            buffers.keySet().retainAll(Collections.singleton(SHARED_CONTEXT));
+            switches.keySet().retainAll(Collections.singleton(SHARED_CONTEXT));
+        }
+        // what components painted before was painted into the other buffers
+        renderer.invalidateBackground();
+        return true;
+    }
+    boolean isShared() {
+        return shared;
+    }
+    private String resolve(String context) {
+        return shared ? SHARED_CONTEXT : context;
+    }
     private UpdateSwitch[][] initSwitches(String str) {
         UpdateSwitch[][] updated = new UpdateSwitch[w][h];
         for (int i = 0; i < w; i++) {
@@ -67,6 +107,7 @@ public class ConsolePixelBuffer {
         return updated;
     }
     public byte get(int x, int y, String context) {
+        context = resolve(context);
         byte[][][] buffer = buffers.get(context);
         if (buffer == null)
             return 0;
@@ -75,30 +116,191 @@ public class ConsolePixelBuffer {
         else return 0;
     }
     public void set(int x, int y, byte b, String context) {
+        context = resolve(context);
+        byte[][][] buffer = writableBuffer(context);
+        UpdateSwitch[][] updated = writableSwitches(context);
+        if (x >= 0 && x < this.w * SIZE && y >= 0 && y < this.h * SIZE) {
+            byte[] section = buffer[x / SIZE][y / SIZE];
+            int i = x % SIZE + ((y % SIZE) * SIZE);
+            // only flip the switch if the pixel actually changed
+            if (section[i] != b) {
+                section[i] = b;
+                updated[x / SIZE][y / SIZE].fire(x % SIZE, y % SIZE);
+            }
+        }
+    }
+    // draws a 1-bit mask in a single color, where each row is a bitmask (lowest bit is the leftmost
+    // pixel). This resolves the buffer once and marks the modified region once, which is a lot
+    // cheaper than calling set(...) for every pixel of a glyph.
+    void setMask(int x, int y, long[] rows, int width, byte b, String context) {
+        context = resolve(context);
+        byte[][][] buffer = writableBuffer(context);
+        UpdateSwitch[][] updated = writableSwitches(context);
+        int maxW = this.w * SIZE, maxH = this.h * SIZE;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+        for (int j = 0; j < rows.length; j++) {
+            int py = y + j;
+            if (rows[j] == 0 || py < 0 || py >= maxH) continue;
+            int row = (py % SIZE) * SIZE;
+            // the row can cross into the next section
+            for (int sx = Math.max(x, 0) / SIZE; sx < this.w && sx * SIZE < x + width; sx++) {
+                long changed = GlyphAtlas.writeRow(rows[j], Math.max((sx * SIZE) - x, 0),
+                        Math.min(((sx + 1) * SIZE) - x, Math.min(maxW - x, width)),
+                        buffer[sx][py / SIZE], x - (sx * SIZE) + row, b);
+                if (changed == 0) continue;
+                int first = x + Long.numberOfTrailingZeros(changed);
+                int last = x + 63 - Long.numberOfLeadingZeros(changed);
+                if (first < minX) minX = first;
+                if (last > maxX) maxX = last;
+                if (py < minY) minY = py;
+                if (py > maxY) maxY = py;
+            }
+        }
+        if (maxX < 0) return;
+        // mark the modified region in every section it covers
+        for (int i = minX / SIZE; i <= maxX / SIZE; i++) {
+            for (int j = minY / SIZE; j <= maxY / SIZE; j++) {
+                UpdateSwitch sw = updated[i][j];
+                sw.fire(Math.max(minX - (i * SIZE), 0), Math.max(minY - (j * SIZE), 0));
+                sw.fire(Math.min(maxX - (i * SIZE), SIZE - 1), Math.min(maxY - (j * SIZE), SIZE - 1));
+            }
+        }
+    }
+    // fills a rectangle with a single color
+    void fill(int x, int y, int w, int h, byte b, String context) {
+        context = resolve(context);
+        byte[][][] buffer = writableBuffer(context);
+        UpdateSwitch[][] updated = writableSwitches(context);
+        int x1 = Math.max(x, 0), x2 = Math.min(x + w, this.w * SIZE);
+        int y1 = Math.max(y, 0), y2 = Math.min(y + h, this.h * SIZE);
+        for (int py = y1; py < y2; py++)
+            writeSpan(buffer, updated, x1, py, x2 - x1, null, 0, b);
+    }
+    // copies a rectangle of row-major pixel data into the buffer, where 'stride' is the
+    // length of a row in the source array
+    void blit(int x, int y, byte[] src, int offset, int stride, int w, int h, String context) {
+        context = resolve(context);
+        byte[][][] buffer = writableBuffer(context);
+        UpdateSwitch[][] updated = writableSwitches(context);
+        int x1 = Math.max(x, 0), x2 = Math.min(x + w, this.w * SIZE);
+        int y1 = Math.max(y, 0), y2 = Math.min(y + h, this.h * SIZE);
+        for (int py = y1; py < y2; py++)
+            writeSpan(buffer, updated, x1, py, x2 - x1, src, offset + ((py - y) * stride) + (x1 - x), (byte) 0);
+    }
+    // copies a rectangle of pixels from (sx, sy) to (tx, ty), the areas can overlap.
+    void copy(int sx, int sy, int w, int h, int tx, int ty, String context) {
+        context = resolve(context);
+        byte[][][] buffer = writableBuffer(context);
+        UpdateSwitch[][] updated = writableSwitches(context);
+        int maxW = this.w * SIZE, maxH = this.h * SIZE;
+        // clip both the source and the destination
+        int left = Math.max(Math.max(-sx, -tx), 0), top = Math.max(Math.max(-sy, -ty), 0);
+        int right = Math.min(Math.min(maxW - sx, maxW - tx), w), bottom = Math.min(Math.min(maxH - sy, maxH - ty), h);
+        if (left >= right || top >= bottom) return;
+        int len = right - left;
+        byte[] row = new byte[len];
+        // copy rows in the opposite direction of the move, so we don't read rows we already wrote
+        boolean up = ty <= sy;
+        for (int j = up ? top : bottom - 1; up ? j < bottom : j >= top; j += up ? 1 : -1) {
+            readSpan(buffer, sx + left, sy + j, len, row);
+            writeSpan(buffer, updated, tx + left, ty + j, len, row, 0, (byte) 0);
+        }
+    }
+    private void readSpan(byte[][][] buffer, int x, int y, int len, byte[] dest) {
+        int row = (y % SIZE) * SIZE;
+        int at = 0;
+        while (at < len) {
+            int lx = (x + at) % SIZE;
+            int n = Math.min(len - at, SIZE - lx);
+            System.arraycopy(buffer[(x + at) / SIZE][y / SIZE], row + lx, dest, at, n);
+            at += n;
+        }
+    }
+    // writes a horizontal span of pixels, either from 'src' or filled with 'b' if the source is null.
+    // only the part of each section that actually changes is written and marked as modified.
+    private void writeSpan(byte[][][] buffer, UpdateSwitch[][] updated, int x, int y, int len,
+                           byte[] src, int offset, byte b) {
+        int ly = y % SIZE;
+        int row = ly * SIZE;
+        int at = 0;
+        while (at < len) {
+            int lx = (x + at) % SIZE;
+            int n = Math.min(len - at, SIZE - lx);
+            byte[] section = buffer[(x + at) / SIZE][y / SIZE];
+            int base = row + lx;
+            int first = -1, last = -1;
+            for (int i = 0; i < n; i++) {
+                if (section[base + i] != (src == null ? b : src[offset + at + i])) {
+                    if (first < 0) first = i;
+                    last = i;
+                }
+            }
+            if (first >= 0) {
+                if (src == null)
+                    Arrays.fill(section, base + first, base + last + 1, b);
+                else
+                    System.arraycopy(src, offset + at + first, section, base + first, last - first + 1);
+                UpdateSwitch sw = updated[(x + at) / SIZE][y / SIZE];
+                sw.fire(lx + first, ly);
+                sw.fire(lx + last, ly);
+            }
+            at += n;
+        }
+    }
+    private byte[][][] writableBuffer(String context) {
         byte[][][] buffer = buffers.get(context);
-        UpdateSwitch[][] updated = switches.get(context);
         if (buffer == null) {
-            buffer = newBuffer();
+            byte[][][] sharedBuffer = buffers.get(SHARED_CONTEXT);
+            buffer = sharedBuffer != null ? copyBuffer(sharedBuffer) : newBuffer();
             buffers.put(context, buffer);
         }
+        return buffer;
+    }
+    private UpdateSwitch[][] writableSwitches(String context) {
+        UpdateSwitch[][] updated = switches.get(context);
         if (updated == null) {
             updated = initSwitches(context);
         }
-        if (x >= 0 && x < this.w * SIZE && y >= 0 && y < this.h * SIZE) {
-            buffer[x / SIZE][y / SIZE][x % SIZE + ((y % SIZE) * SIZE)] = b;
-            updated[x / SIZE][y / SIZE].fire();
-        }
+        return updated;
     }
     static class UpdateSwitch {
 
-        private boolean fired = false;
+        // forced switches always send the entire section
+        private boolean forced = false;
+        // bounding box of the pixels modified since the last check, relative to the section
+        private int minX = SIZE, minY = SIZE, maxX = -1, maxY = -1;
+
         public void fire() {
-            fired = true;
+            forced = true;
+        }
+        public void fire(int x, int y) {
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        public boolean isForced() {
+            return forced;
         }
         public boolean wasFired() {
-            boolean b = fired;
-            fired = false;
-            return b;
+            return take() != null;
+        }
+        // returns the modified region as {x, y, w, h} and resets the switch,
+        // or null if nothing in the section was modified.
+        public int[] take() {
+            int[] region;
+            if (forced)
+                region = new int[] {0, 0, SIZE, SIZE};
+            else if (maxX < 0)
+                region = null;
+            else
+                region = new int[] {minX, minY, maxX - minX + 1, maxY - minY + 1};
+            forced = false;
+            minX = SIZE;
+            minY = SIZE;
+            maxX = -1;
+            maxY = -1;
+            return region;
         }
     }
     boolean needsRepaint(String context) {
@@ -111,6 +313,7 @@ public class ConsolePixelBuffer {
         repaintStack.clear();
     }
     byte[] getBuffer(String context, int x, int y) {
+        context = resolve(context);
         return !buffers.containsKey(context) ?
                 null : buffers.get(context)[x][y];
     }
@@ -130,7 +333,7 @@ public class ConsolePixelBuffer {
                 null : switches.get(context)[x][y];
     }
     boolean contextExists(String context) {
-        return switches.containsKey(context);
+        return switches.containsKey(resolve(context));
     }
     public void updateFor(Player player, boolean force, boolean paintIfNew) {
         ConsoleHandler.getInstance().getPainter().updateFor(renderer, player, force, paintIfNew);
@@ -156,10 +359,8 @@ public class ConsolePixelBuffer {
         @EventHandler
         @SuppressWarnings("unused")
         public void onPlayerQuit(PlayerQuitEvent e) {
-            for (ConsoleMapRenderer map : renderer.renderers()) {
-                map.clearContextCache(e.getPlayer().getName());
-            }
             repaintStack.remove(e.getPlayer().getName());
+            ConsoleHandler.getInstance().getPainter().removeContexts(renderer, e.getPlayer().getName());
         }
         // update the painting for players that just entered the area
         @EventHandler
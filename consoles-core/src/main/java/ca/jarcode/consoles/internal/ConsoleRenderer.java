@@ -51,11 +51,17 @@ public abstract class ConsoleRenderer implements Canvas {
 	// entity list of item frames
 	private List<ItemFrame> frames = new ArrayList<>();
 
-	// cached background pixels
-	private byte[][] bg;
+	// cached background pixels (row-major)
+	private byte[] bg;
+
+	// incremented every time the entire background is drawn over the buffer, components
+	// that only repaint what changed use this to know when they have to redraw everything.
+	private volatile int backgroundGeneration = 0;
 
 	// the origin of this console (corner at lowest x and y value in world coordinates)
 	protected Location pos;
+	// set once the console has been removed from the world
+	private volatile boolean removed = false;
 
 	// the direction this console faces
 	protected BlockFace face;
@@ -90,6 +96,9 @@ public abstract class ConsoleRenderer implements Canvas {
 	// Mappings for map id -> entity id, multi-threaded
 	private HashBiMap<Short, Integer> entityMap = HashBiMap.create();
 
+	// time of the last frame painted for this console, used by the painter to cap the frame rate
+	volatile long lastFrame = 0;
+
 	// Name of the console type. Doesn't actually do anything.
 	protected String type = "unknown";
 
@@ -102,7 +111,7 @@ public abstract class ConsoleRenderer implements Canvas {
 		screen = new ConsolePixelBuffer(this, width, height);
 		this.drawConsoleBackground = drawConsoleBackground;
 
-		bg = new byte[getWidth()][getHeight()];
+		bg = new byte[getWidth() * getHeight()];
 
 		cacheBackground();
 	}
@@ -111,6 +120,7 @@ public abstract class ConsoleRenderer implements Canvas {
 	void create(short index, BlockFace face, Location location) {
 		this.face = face;
 		pos = location.clone();
+		removed = false;
 		this.index = index;
 		for (int length = 0; length < width; length++) {
 			for (int y = 0; y < height; y++) {
@@ -171,8 +181,14 @@ public abstract class ConsoleRenderer implements Canvas {
 	}
 	// I don't expect you to understand this.
 	public int[] intersect(Location eye, double distance) {
+		int[] arr = new int[2];
+		return intersect(eye, distance, arr) ? arr : null;
+	}
+	// allocation-free version of the above, writes the screen coordinates into 'out' and returns
+	// true if the eye is looking at this console.
+	public boolean intersect(Location eye, double distance, int[] out) {
 		// ignore different worlds
-		if (eye.getWorld() != pos.getWorld()) return null;
+		if (eye.getWorld() != pos.getWorld()) return false;
 
 		double yaw = eye.getYaw() > 0 ? eye.getYaw() : 360 - Math.abs(eye.getYaw()); // remove negative degrees
 		yaw += 90; // rotate +90 degrees
@@ -186,44 +202,46 @@ public abstract class ConsoleRenderer implements Canvas {
 		double zp = Math.sin(pitch) * Math.sin(yaw);
 		double yp = Math.cos(pitch);
 
+		double ex = eye.getX(), ey = eye.getY(), ez = eye.getZ();
+
 		// where our plane (screen) is in world-space, as x = c or z = c.
 		// we add 1/16 to the pane, because consoles pop out by 1/16th of a block.
 		double c = vertical ? pos.getX() + (face == BlockFace.WEST ? 1 - (1/16D) : (1/16D))
 				: pos.getZ() + (face == BlockFace.NORTH ? 1 - (1/16D) : (1/16D));
 
+		// players shouldn't be able to interact in the opposite direction, or behind the console, so let's fix that.
+		if (face == BlockFace.NORTH && (zp < 0 || ez > c))
+			return false;
+		if (face == BlockFace.SOUTH && (zp > 0 || ez < c))
+			return false;
+		if (face == BlockFace.EAST && (xp > 0 || ex < c))
+			return false;
+		if (face == BlockFace.WEST && (xp < 0 || ex > c))
+			return false;
+
 		// now we need two points for this process, which we use from the above
 		// we're supposed to use v1 - v0 here, but that's just (v0 + h) - v0, simplifying to h.
 		// now, 't' from parametric equation
-		double t = vertical ? ((c - eye.getX()) / xp) : ((c - eye.getZ()) / zp);
+		double t = vertical ? ((c - ex) / xp) : ((c - ez) / zp);
 		// intersection points!
-		double xi = eye.getX() + (xp * t);
-		double yi = eye.getY() + (yp * t);
-		double zi = eye.getZ() + (zp * t);
-		// Our coordinates relative to the screen's position.
-		Location intersect = new Location(eye.getWorld(), xi, yi, zi);
-		Location local = intersect.clone().subtract(pos);
+		double xi = ex + (xp * t);
+		double yi = ey + (yp * t);
+		double zi = ez + (zp * t);
+		// too far away! (or looking parallel to the screen, in which case this is NaN)
+		double dx = xi - ex, dy = yi - ey, dz = zi - ez;
+		if (!((dx * dx) + (dy * dy) + (dz * dz) <= distance * distance))
+			return false;
 		// return 2D screen coordinates, relative to its top-left origin and multiply by 128.
-		int y = getHeight() - (int) Math.round(local.getY() * 128);
+		int y = getHeight() - (int) Math.round((yi - pos.getY()) * 128);
 		boolean b = (face == BlockFace.EAST || face == BlockFace.NORTH);
 		int inv = b ? getWidth() : 0;
-		int[] arr = vertical ?
-				new int[] {b ? (inv - (int) Math.round(local.getZ() * 128)) : (int) Math.round(local.getZ() * 128), y}
-				: new int[] {b ? (inv - (int) Math.round(local.getX() * 128)) : (int) Math.round(local.getX() * 128), y};
-		if (arr[0] < 0 || arr[0] >= getWidth() || arr[1] < 0 || arr[1] >= getHeight())
-			return null;
-		// players shouldn't be able to interact in the opposite direction, or behind the console, so let's fix that.
-		if (face == BlockFace.NORTH && (zp < 0 || eye.getZ() > c))
-			return null;
-		if (face == BlockFace.SOUTH && (zp > 0 || eye.getZ() < c))
-			return null;
-		if (face == BlockFace.EAST && (xp > 0 || eye.getX() < c))
-			return null;
-		if (face == BlockFace.WEST && (xp < 0 || eye.getX() > c))
-			return null;
-		// too far away!
-		if (intersect.distance(eye) > distance)
-			return null;
-		else return arr;
+		int l = vertical ? (int) Math.round((zi - pos.getZ()) * 128) : (int) Math.round((xi - pos.getX()) * 128);
+		int x = b ? inv - l : l;
+		if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight())
+			return false;
+		out[0] = x;
+		out[1] = y;
+		return true;
 	}
 	// this is a way to obtain a map view by ID, regardless if it exists or not.
 	// from before the NMS abstraction update
@@ -248,6 +266,9 @@ public abstract class ConsoleRenderer implements Canvas {
 	public final boolean created() {
 		return pos != null;
 	}
+	public final boolean removed() {
+		return removed;
+	}
 	final short getMapIndex() {
 		return index;
 	}
@@ -257,6 +278,15 @@ public abstract class ConsoleRenderer implements Canvas {
 	public final boolean protect(ItemFrame entity) {
 		return frames.contains(entity);
 	}
+	final int[] frameIds() {
+		synchronized (ENTITY_MAP_LOCK) {
+			int[] arr = new int[entityMap.size()];
+			int index = 0;
+			for (int id : entityMap.values())
+				arr[index++] = id;
+			return arr;
+		}
+	}
 	public final boolean isFrameId(int entityId) {
 		synchronized (ENTITY_MAP_LOCK) {
 			for (int id : entityMap.values()) {
@@ -293,7 +323,7 @@ public abstract class ConsoleRenderer implements Canvas {
 	public final void draw(int x, int y, byte color) {
 		screen.set(x, y, color, getPaintContext());
 	}
-	protected String getPaintContext() {
+	String getPaintContext() {
 		return ConsoleHandler.getInstance().getPainter().getPaintContext();
 	}
 	// The context (at the moment) is just a String with the player's name. Bukkit objects should be avoided in
@@ -310,18 +340,19 @@ public abstract class ConsoleRenderer implements Canvas {
 	//
 	// It also calls threaded code, so it won't block, but will put stress on the server
 	public void repaint() {
-		if (Thread.currentThread().getName().equals("Console Painting Thread")) {
+		if (MapPainter.isPaintThread()) {
 			throw new RuntimeException("repaint() cannot be called within a paint cycle!");
 		}
 		ConsoleHandler.getInstance().getPainter().repaint(this);
 	}
 	public void repaint(int tickDelay) {
-		if (Thread.currentThread().getName().equals("Console Painting Thread")) {
+		if (MapPainter.isPaintThread()) {
 			throw new RuntimeException("repaint() cannot be called within a paint cycle!");
 		}
 		Bukkit.getScheduler().scheduleSyncDelayedTask(Consoles.getInstance(), this::repaint, tickDelay);
 	}
 	public void remove() {
+		removed = true;
 		synchronized (RENDERER_LOCK) {
 			screen.remove();
 		}
@@ -399,6 +430,18 @@ public abstract class ConsoleRenderer implements Canvas {
 	private boolean drewBackground(String context) {
 		return bgCheck.containsKey(context) && bgCheck.get(context);
 	}
+	// whether every enabled component paints the same pixels for every context. These consoles
+	// are painted once into a buffer that is shared between all players.
+	boolean isContextInvariant() {
+		if (!Thread.holdsLock(RENDERER_LOCK)) synchronized (RENDERER_LOCK) {
+			return isContextInvariant();
+		}
+		for (ConsoleComponent obj : components.values()) {
+			if (obj.enabled() && !obj.isContextInvariant())
+				return false;
+		}
+		return true;
+	}
 	@Deprecated
 	public ConsoleComponent[] getComponents() {
 		return components.values().toArray(new ConsoleComponent[components.size()]);
@@ -426,22 +469,26 @@ public abstract class ConsoleRenderer implements Canvas {
 			return;
 		}
 		toggleBackground(getPaintContext(), true);
-		for (int xi = x; xi < x + w; xi++) {
-			for (int yi = y; yi < y + h; yi++) {
-				draw(xi, yi, bg[xi][yi]);
-			}
-		}
+		// clip to the console, the background cache has no pixels outside of it
+		int x1 = Math.max(x, 0), y1 = Math.max(y, 0);
+		int x2 = Math.min(x + w, getWidth()), y2 = Math.min(y + h, getHeight());
+		if (x1 < x2 && y1 < y2)
+			screen.blit(x1, y1, bg, x1 + (y1 * getWidth()), getWidth(), x2 - x1, y2 - y1, getPaintContext());
 	}
 	private void drawBackground() {
 		if (!Thread.holdsLock(RENDERER_LOCK)) synchronized (RENDERER_LOCK) {
 			drawBackground();
 			return;
 		}
-		for (int x = 0; x < getWidth(); x++) {
-			for (int y = 0; y < getHeight(); y++) {
-				draw(x, y, bg[x][y]);
-			}
-		}
+		screen.blit(0, 0, bg, 0, getWidth(), getWidth(), getHeight(), getPaintContext());
+		backgroundGeneration++;
+	}
+	// makes components that only repaint what changed redraw everything the next time they are painted
+	void invalidateBackground() {
+		backgroundGeneration++;
+	}
+	public final int backgroundGeneration() {
+		return backgroundGeneration;
 	}
 	void handleClick(int x, int y, Player player) {
 		for (Map.Entry<Position2D, ConsoleComponent> entry : Collections.unmodifiableCollection(components.entrySet())) {
@@ -463,9 +510,11 @@ public abstract class ConsoleRenderer implements Canvas {
 		for (Position2D pos : components.keySet()) {
 			ConsoleComponent obj = components.get(pos);
 			byte b = obj.getBackground();
-			if (obj.enabled() && b != -1) for (int x = pos.getX(); x < obj.getWidth() + pos.getX(); x++) {
-				for (int y = pos.getY(); y < obj.getHeight() + pos.getY(); y++) {
-					bg[x][y] = b;
+			if (obj.enabled() && b != -1) {
+				int x1 = Math.max(pos.getX(), 0), x2 = Math.min(pos.getX() + obj.getWidth(), getWidth());
+				int y1 = Math.max(pos.getY(), 0), y2 = Math.min(pos.getY() + obj.getHeight(), getHeight());
+				for (int y = y1; y < y2 && x1 < x2; y++) {
+					Arrays.fill(bg, x1 + (y * getWidth()), x2 + (y * getWidth()), b);
 				}
 			}
 		}
@@ -474,13 +523,13 @@ public abstract class ConsoleRenderer implements Canvas {
 		for (int x = 0; x < getWidth(); x++) {
 			for (int y = 0; y < getHeight(); y++) {
 				if (x <= 0 || x >= getWidth() - 1 || y <= 0 || y >= getHeight() - 1) {
-					bg[x][y] = (byte) 44;
+					bg[x + (y * getWidth())] = (byte) 44;
 				}
 				else if (x <= 1 || x >= getWidth() - 2 || y <= 1 || y >= getHeight() - 2) {
-					bg[x][y] = (byte) 47;
+					bg[x + (y * getWidth())] = (byte) 47;
 				}
 				else
-					bg[x][y] = (byte) 119;
+					bg[x + (y * getWidth())] = (byte) 119;
 			}
 		}
 	}
@@ -33,6 +33,12 @@ public class ConsoleTextArea extends ConsoleComponent implements WritableCompone
 	private byte defaultTextColor = 32;
 	private byte lastColor = defaultTextColor;
 
+	// amount of lines that have been removed from the top of the stack, used to scroll
+	// the text that was already painted instead of redrawing all of it.
+	private volatile long scrolled = 0;
+	// the lines that were last painted for each context, only accessed while painting
+	private final Map<String, PaintedLines> painted = new HashMap<>();
+
 	{
 		stack.add("");
 	}
@@ -54,6 +60,7 @@ public class ConsoleTextArea extends ConsoleComponent implements WritableCompone
 		super(w, h, renderer);
 		maxStackSize = (h - MARGIN) / textHeight;
 		maxWidth = w;
+		setContextInvariant(true);
 	}
 	public void print(String text) {
 		text = text.replace("\t", "    ");
@@ -154,20 +161,20 @@ public class ConsoleTextArea extends ConsoleComponent implements WritableCompone
 			stack.set(currentLine(), getLastLine() + text);
 		}
 		while (stack.size() > maxStackSize) {
-			stack.remove(0);
+			removeFirstLine();
 		}
 	}
 	public void println(String text) {
 		print(text);
 		stack.add("");
 		if (stack.size() > maxStackSize) {
-			stack.remove(0);
+			removeFirstLine();
 		}
 	}
 	public void advanceLine() {
 		stack.add("");
 		if (stack.size() > maxStackSize) {
-			stack.remove(0);
+			removeFirstLine();
 		}
 	}
 	public void clear() {
@@ -189,12 +196,73 @@ public class ConsoleTextArea extends ConsoleComponent implements WritableCompone
 	protected String getLastLine() {
 		return stack.size() == 0 ? "" : stack.get(currentLine());
 	}
+	private void removeFirstLine() {
+		stack.remove(0);
+		scrolled++;
+	}
 	@Override
 	public void paint(CanvasGraphics g, String context) {
 		g.setFont(font);
-		g.drawBackground();
-		for (int t = 0; t < stack.size(); t++) {
-			lastColor = g.drawFormatted(0, (t * textHeight) + MARGIN, lastColor, stack.get(t));
+		String[] lines = stack.toArray(new String[stack.size()]);
+		long scrolled = this.scrolled;
+		int generation = getRenderer().backgroundGeneration();
+		byte[] inherited = new byte[lines.length];
+		byte[] result = new byte[lines.length];
+		// contained text areas don't own their background, so they always redraw everything
+		PaintedLines last = isContained() ? null : painted.get(context);
+		if (last == null || last.generation != generation || scrolled - last.scrolled >= maxStackSize) {
+			if (last != null && last.generation != generation)
+				painted.clear();
+			g.drawBackground();
+			for (int t = 0; t < lines.length; t++) {
+				inherited[t] = lastColor;
+				lastColor = g.drawFormatted(0, (t * textHeight) + MARGIN, lastColor, lines[t]);
+				result[t] = lastColor;
+			}
+		}
+		else {
+			// move the text that is still on the screen up, instead of redrawing it
+			int shift = (int) (scrolled - last.scrolled);
+			if (shift > 0)
+				g.scroll(0, MARGIN, getWidth(), getHeight() - MARGIN, 0, -shift * textHeight);
+			for (int t = 0; t < Math.max(lines.length, last.lines.length - shift); t++) {
+				int y = (t * textHeight) + MARGIN;
+				int old = t + shift;
+				// a line only has to be redrawn if its text or the color it starts with changed
+				if (t < lines.length && old < last.lines.length
+						&& lines[t].equals(last.lines[old]) && last.inherited[old] == lastColor) {
+					inherited[t] = lastColor;
+					lastColor = last.result[old];
+					result[t] = lastColor;
+					continue;
+				}
+				g.drawBackground(0, y, getWidth(), Math.min(textHeight, getHeight() - y));
+				if (t < lines.length) {
+					inherited[t] = lastColor;
+					lastColor = g.drawFormatted(0, y, lastColor, lines[t]);
+					result[t] = lastColor;
+				}
+			}
+		}
+		if (!isContained())
+			painted.put(context, new PaintedLines(generation, scrolled, lines, inherited, result));
+	}
+	@Override
+	public void onContextRemoved(String context) {
+		painted.remove(context);
+	}
+	private static class PaintedLines {
+		final int generation;
+		final long scrolled;
+		final String[] lines;
+		// the color each line started and ended with
+		final byte[] inherited, result;
+		PaintedLines(int generation, long scrolled, String[] lines, byte[] inherited, byte[] result) {
+			this.generation = generation;
+			this.scrolled = scrolled;
+			this.lines = lines;
+			this.inherited = inherited;
+			this.result = result;
 		}
 	}
 }
\ No newline at end of file
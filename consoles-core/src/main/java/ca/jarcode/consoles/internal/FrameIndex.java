@@ -0,0 +1,100 @@
+package ca.jarcode.consoles.internal;
+
+import java.util.Arrays;
+
+/*
+
+Global entity id -> console index for item frames.
+
+This is read from netty threads for every outgoing entity metadata packet, so reads
+do not lock or allocate: the whole table is an open-addressing snapshot that is copied
+and swapped out when frames are created or removed, which is rare.
+
+ */
+class FrameIndex<T> {
+
+	// empty slots in the key array
+	private static final int EMPTY = Integer.MIN_VALUE;
+
+	// tables are only modified before they are published to the 'table' field
+	private static final class Table {
+		final int[] keys;
+		final Object[] values;
+		int size = 0;
+		Table(int capacity) {
+			keys = new int[capacity];
+			values = new Object[capacity];
+			Arrays.fill(keys, EMPTY);
+		}
+	}
+
+	private static int slot(int id, int mask) {
+		// entity ids are mostly sequential, so spread them out
+		int h = id * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private volatile Table table = new Table(16);
+
+	@SuppressWarnings("unchecked")
+	T get(int id) {
+		Table t = table;
+		int mask = t.keys.length - 1;
+		for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+			int key = t.keys[i];
+			if (key == id) return (T) t.values[i];
+			if (key == EMPTY) return null;
+		}
+	}
+
+	boolean contains(int id) {
+		return get(id) != null;
+	}
+
+	synchronized void put(T console, int[] ids) {
+		Table old = table;
+		// keep the load factor at or under 1/2
+		int capacity = old.keys.length;
+		while ((old.size + ids.length) * 2 > capacity)
+			capacity <<= 1;
+		Table next = copy(old, capacity, null);
+		for (int id : ids)
+			insert(next, id, console);
+		table = next;
+	}
+
+	synchronized void remove(T console) {
+		Table old = table;
+		table = copy(old, old.keys.length, console);
+	}
+
+	synchronized void clear() {
+		table = new Table(16);
+	}
+
+	// copies a table into a new one of the given capacity, skipping all entries for 'skip'
+	private static Table copy(Table old, int capacity, Object skip) {
+		Table next = new Table(capacity);
+		for (int i = 0; i < old.keys.length; i++) {
+			if (old.keys[i] != EMPTY && old.values[i] != skip)
+				insert(next, old.keys[i], old.values[i]);
+		}
+		return next;
+	}
+
+	private static void insert(Table t, int id, Object console) {
+		int mask = t.keys.length - 1;
+		for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+			if (t.keys[i] == EMPTY) {
+				t.keys[i] = id;
+				t.values[i] = console;
+				t.size++;
+				return;
+			}
+			if (t.keys[i] == id) {
+				t.values[i] = console;
+				return;
+			}
+		}
+	}
+}
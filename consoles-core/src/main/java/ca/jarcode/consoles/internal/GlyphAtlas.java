@@ -0,0 +1,135 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.CColor;
+import ca.jarcode.consoles.util.MonospacedMinecraftFont;
+import org.bukkit.ChatColor;
+import org.bukkit.map.MapFont;
+import org.bukkit.map.MinecraftFont;
+
+/*
+
+Pre-baked glyph bitmasks for the fonts that consoles use. Each glyph row is a bitmask
+(lowest bit is the leftmost pixel), so text can be drawn a row at a time instead of
+sampling the character sprite for every pixel.
+
+Only the built-in fonts are cached, since they can't be modified. Other fonts are baked
+on the fly.
+
+Text is laid out and drawn with the same helpers here, whether it goes to a pixel buffer
+or an offscreen canvas.
+
+ */
+class GlyphAtlas {
+
+	private static final GlyphAtlas MINECRAFT = new GlyphAtlas(MinecraftFont.Font);
+	private static final GlyphAtlas MONOSPACED = new GlyphAtlas(MonospacedMinecraftFont.FONT);
+
+	// returns the glyph for the given character in the font
+	static Glyph glyph(MapFont font, char c) {
+		if (font == MinecraftFont.Font)
+			return MINECRAFT.get(c);
+		else if (font == MonospacedMinecraftFont.FONT)
+			return MONOSPACED.get(c);
+		else return bake(font.getChar(c));
+	}
+
+	static Glyph bake(MapFont.CharacterSprite sprite) {
+		int width = sprite.getWidth();
+		int height = sprite.getHeight();
+		long[] rows = new long[height];
+		for (int j = 0; j < height; j++) {
+			long mask = 0;
+			for (int k = 0; k < width && k < 64; k++) {
+				if (sprite.get(j, k))
+					mask |= 1L << k;
+			}
+			rows[j] = mask;
+		}
+		return new Glyph(sprite, width, rows);
+	}
+
+	// receives the characters of formatted text that are drawn
+	interface GlyphVisitor {
+		// 'index' counts the characters that are drawn, and 'at' is the offset from the start of the text
+		void visit(Glyph glyph, char c, int index, int at, byte color);
+	}
+
+	// walks formatted text: color codes change the color, and every other character is visited with
+	// its glyph. Returns the color at the end of the text.
+	static byte walkFormatted(MapFont font, String text, byte inherit, GlyphVisitor visitor) {
+		int at = 0;
+		int index = 0;
+		char[] arr = text.toCharArray();
+		byte color = inherit;
+		for (int i = 0; i < arr.length; i++) {
+			char c = arr[i];
+			if (i != arr.length - 1 && c == '\u00A7' && CColor.colorCharRange(arr[i + 1])) {
+				color = ConsoleGraphics.formatColor(ChatColor.getByChar(Character.toLowerCase(arr[i + 1])), color);
+				i++;
+			}
+			else {
+				if (c == '\u00A7')
+					c = '&';
+				Glyph glyph = glyph(font, c);
+				visitor.visit(glyph, c, index++, at, color);
+				at += glyph.width + 1;
+			}
+		}
+		return color;
+	}
+
+	// writes the columns of a glyph row that are set, and in [from, to), to a row of pixels where
+	// dst[offset] is the pixel for the leftmost column. Returns the columns that changed.
+	static long writeRow(long mask, int from, int to, byte[] dst, int offset, byte color) {
+		if (to > 64)
+			to = 64;
+		if (from >= to)
+			return 0;
+		long range = (to == 64 ? -1L : (1L << to) - 1) & -(1L << from);
+		long bits = mask & range;
+		long changed = 0;
+		while (bits != 0) {
+			int k = Long.numberOfTrailingZeros(bits);
+			bits &= bits - 1;
+			if (dst[offset + k] != color) {
+				dst[offset + k] = color;
+				changed |= 1L << k;
+			}
+		}
+		return changed;
+	}
+
+	static final class Glyph {
+		final MapFont.CharacterSprite sprite;
+		final int width;
+		final long[] rows;
+		private Glyph(MapFont.CharacterSprite sprite, int width, long[] rows) {
+			this.sprite = sprite;
+			this.width = width;
+			this.rows = rows;
+		}
+	}
+
+	private final MapFont font;
+	// glyphs are baked lazily into pages of 256 characters. Painting threads can race
+	// on this, but baking is idempotent, so the worst case is baking a glyph twice.
+	private final Glyph[][] pages = new Glyph[256][];
+
+	private GlyphAtlas(MapFont font) {
+		this.font = font;
+	}
+
+	private Glyph get(char c) {
+		Glyph[] page = pages[c >>> 8];
+		if (page == null) {
+			page = new Glyph[256];
+			pages[c >>> 8] = page;
+		}
+		Glyph glyph = page[c & 0xFF];
+		if (glyph == null) {
+			glyph = bake(font.getChar(c));
+			page[c & 0xFF] = glyph;
+		}
+		return glyph;
+	}
+}
@@ -100,6 +100,7 @@ public class IndexedConsoleTextArea extends ConsoleComponent implements Writable
 	}
 	public IndexedConsoleTextArea(int w, int h, ConsoleRenderer renderer) {
 		super(w, h, renderer);
+		setContextInvariant(true);
 		maxStackSize = (h - H_MARGIN) / textHeight;
 		maxWidth = w - OFFSET;
 	}
@@ -48,8 +48,10 @@ public class ManagedConsole extends ConsoleRenderer {
 		catch (Throwable e) {
 			e.printStackTrace();
 		}
-		if (result)
+		if (result) {
 			super.create(index, face, location);
+			ConsoleHandler.getInstance().handleCreate(this);
+		}
 		else throw new ConsoleCreateException("Cancelled by external plugin");
 	}
 	@Override
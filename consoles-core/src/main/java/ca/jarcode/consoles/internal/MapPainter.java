@@ -6,9 +6,12 @@ import ca.jarcode.consoles.api.nms.ConsolesNMS;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ca.jarcode.consoles.Lang.lang;
@@ -18,136 +21,209 @@ import static ca.jarcode.consoles.Lang.lang;
 The class that handles tasks and requests for repainting and updates
 
  */
-public class MapPainter implements Runnable {
+public class MapPainter {
+
+	// prefix for the names of the painting threads
+	private static final String THREAD_NAME = "Console Painting Thread";
+
+	// returns true if the current thread is one of the painting threads
+	public static boolean isPaintThread() {
+		return Thread.currentThread().getName().startsWith(THREAD_NAME);
+	}
 
 	private final Object LOCK = new Object();
-	private ArrayList<StackEntry> stack = new ArrayList<>();
+	// pending work for each console that is waiting to be (or is being) painted. Requests for the
+	// same console and context are merged together when they are made.
+	private final HashMap<ConsoleRenderer, PendingWork> queues = new HashMap<>();
+	// pool of painting threads. Each console only ever has one task submitted to the pool, so
+	// requests for the same console are still handled in order, while different consoles are
+	// painted concurrently.
+	private ScheduledExecutorService pool;
+	// minimum time between two frames of the same console, in milliseconds
+	private long frameTime;
 	private volatile boolean running = false;
 
-	// only in paint thread
-	private String context;
-
-	@Override
-	public void run() {
+	// only in paint threads
+	private final ThreadLocal<String> context = new ThreadLocal<>();
+
+	public void start(int threads, int maxFrameRate) {
+		AtomicInteger count = new AtomicInteger(0);
+		frameTime = maxFrameRate > 0 ? 1000 / maxFrameRate : 0;
+		pool = Executors.newScheduledThreadPool(Math.max(threads, 1), (runnable) -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(THREAD_NAME + " #" + count.incrementAndGet());
+			return thread;
+		});
 		running = true;
-		while (running) {
+	}
+
+	// merges a request into the pending work for a console, and schedules the console if it isn't already
+	private void submit(ConsoleRenderer renderer, Consumer<PendingWork> request) {
+		long at = System.currentTimeMillis();
+		synchronized (LOCK) {
+			if (System.currentTimeMillis() - at > 20)
+				System.out.println(lang.getString("painter-lock1"));
+			if (!running)
+				return;
+			PendingWork work = queues.get(renderer);
+			boolean idle = work == null;
+			if (idle) {
+				work = new PendingWork();
+				queues.put(renderer, work);
+			}
+			request.accept(work);
+			if (idle)
+				schedule(renderer);
+		}
+	}
+
+	// schedules the next frame for a console, respecting the frame cap
+	private void schedule(ConsoleRenderer renderer) {
+		long delay = (renderer.lastFrame + frameTime) - System.currentTimeMillis();
+		if (delay > 0)
+			pool.schedule(() -> drain(renderer), delay, TimeUnit.MILLISECONDS);
+		else
+			pool.execute(() -> drain(renderer));
+	}
 
-			long at = System.currentTimeMillis();
-			ArrayList<StackEntry> stack;
+	// handles all the pending work for the given console. Anything requested while painting is handled
+	// in the next frame, after the other consoles waiting in the pool had their turn.
+	private void drain(ConsoleRenderer renderer) {
+		PendingWork work;
+		synchronized (LOCK) {
+			// leave an empty entry behind, so the console isn't scheduled twice
+			work = queues.put(renderer, new PendingWork());
+		}
+		try {
+			renderer.lastFrame = System.currentTimeMillis();
+			paint(renderer, work);
+		}
+		finally {
 			synchronized (LOCK) {
-				if (System.currentTimeMillis() - at > 20)
-					System.out.println(lang.getString("painter-lock1"));
+				PendingWork next = queues.get(renderer);
+				if (next != null && next.isEmpty())
+					queues.remove(renderer);
+				else if (next != null && running)
+					schedule(renderer);
+			}
+		}
+	}
 
-				while (this.stack.isEmpty()) {
-					try {
-						LOCK.wait();
-					} catch (InterruptedException ignored) {}
+	private void paint(ConsoleRenderer renderer, PendingWork work) {
+		long at = System.currentTimeMillis();
+		synchronized (renderer.RENDERER_LOCK) {
+			if (System.currentTimeMillis() - at > 20)
+				System.out.println(lang.getString("painter-lock2"));
+			for (String name : work.toggles) {
+				renderer.getPixelBuffer().resetSwitches(name);
+				// contexts reading from the shared buffer don't have their own switches
+				if (renderer.getPixelBuffer().isShared()) {
+					for (ConsoleMapRenderer map : renderer.renderers())
+						map.forceSwitch(name);
 				}
-				stack = this.stack;
-				this.stack = new ArrayList<>();
 			}
+			for (String name : work.removed) {
+				for (ConsoleMapRenderer map : renderer.renderers())
+					map.clearContextCache(name);
+				for (ConsoleComponent component : renderer.getComponents())
+					component.onContextRemoved(name);
+			}
+			if (work.repaint) {
+				// removes all contexts in the repaint stack for the buffer
+				// this makes it so that every player who walks in range of the
+				// console will have have it repainted
+				renderer.getPixelBuffer().callRepaint();
+			}
+			if (work.updates.isEmpty() || !renderer.created())
+				return;
+
+			// consoles that paint the same pixels for every player are only painted once,
+			// into a buffer that is shared between all of them
+			boolean shared = renderer.isContextInvariant();
+			if (renderer.getPixelBuffer().setShared(shared)) {
+				// the buffer players read from changed, so send them everything again
+				for (ConsoleMapRenderer map : renderer.renderers())
+					map.reset();
+			}
+			// contexts we have already painted for in this frame
+			Set<String> paintedContexts = new HashSet<>();
+			int index = 0;
+			for (Map.Entry<String, UpdateRequest> entry : work.updates.entrySet()) {
+				String identifier = entry.getKey();
+				UpdateRequest update = entry.getValue();
+				String paintContext = shared ? ConsolePixelBuffer.SHARED_CONTEXT : identifier;
+				if ((
+				// We only repaint if:
+				// a repaint is required for this context (the content changed)
 
-			HashMap<ConsoleRenderer, List<String>> painted = new HashMap<>();
-			for (StackEntry entry : stack) {
-				ConsoleRenderer renderer = entry.renderer;
+						renderer.getPixelBuffer().needsRepaint(paintContext)
 
-				// check for duplicate paint requests and ignore them
-				List<String> paintedContexts = painted.get(renderer);
-				if (paintedContexts == null) {
-					paintedContexts = new ArrayList<>();
-					painted.put(renderer, paintedContexts);
-				}
+				// the update requested a repaint (for whatever reason)
 
-				at = System.currentTimeMillis();
-				synchronized (renderer.RENDERER_LOCK) {
-					if (System.currentTimeMillis() - at > 20)
-						System.out.println(lang.getString("painter-lock2"));
-					if (entry.type == EntryType.TOGGLE) {
-						for (String context : entry.identifiers) {
-							renderer.getPixelBuffer().resetSwitches(context);
-						}
+						|| update.paint
+
+				// if this has not been painted for this player before, and the update allows painting
+				// for new consoles
+
+				        || (update.paintIfNew && !renderer.getPixelBuffer().contextExists(paintContext)))
+
+				// And we also do not re-repaint, so if we've already handled a paint
+				// request for this context, we ignore any other ones.
+
+						&& !paintedContexts.contains(paintContext)
+
+						){
+					try {
+						context.set(paintContext);
+						at = System.currentTimeMillis();
+						renderer.paint();
+						if (System.currentTimeMillis() - at > 100)
+							Consoles.getInstance().getLogger()
+									.warning(lang.getString("painter-overload") + " (" +
+									(System.currentTimeMillis() - at) + "), class: "
+									+ renderer.getClass() + ", name: " + renderer.type +
+									", index: " + index + ", update size: " + work.updates.size()
+									+ ", identifiers: " + identifier);
 					}
-					else if (entry.type == EntryType.REPAINT_TOGGLE) {
-						// removes all contexts in the repaint stack for the buffer
-						// this makes it so that every player who walks in range of the
-						// console will have have it repainted
-						renderer.getPixelBuffer().callRepaint();
+					catch (Throwable e) {
+						e.printStackTrace();
 					}
-					else if (entry.type == EntryType.UPDATE) {
-						if (renderer.created()) {
-							for (int t = 0; t < entry.connections.length; t++) {
-								if ((
-								// We only repaint if:
-								// a repaint is required for this context (the content changed)
-
-										renderer.getPixelBuffer().needsRepaint(context)
-
-								// the update requested a repaint (for whatever reason)
-
-										|| entry.paint
-
-								// if this has not been painted for this player before, and the update allows painting
-								// for new consoles
-
-								        || (entry.paintIfNew && !renderer.getPixelBuffer()
-										.contextExists(entry.identifiers[t])))
-
-								// And we also do not re-repaint, so if we've already handled a paint
-								// request for this context, we ignore any other ones.
-
-										&& !paintedContexts.contains(entry.identifiers[t])
-
-										){
-									try {
-										context = entry.identifiers[t];
-										at = System.currentTimeMillis();
-										renderer.paint();
-										if (System.currentTimeMillis() - at > 100)
-											Consoles.getInstance().getLogger()
-													.warning(lang.getString("painter-overload") + " (" +
-													(System.currentTimeMillis() - at) + "), class: "
-													+ renderer.getClass() + ", name: " + renderer.type +
-													", index: " + t + ", entry size: " + entry.connections.length
-													+ ", stack size: " + stack.size() + ", identifiers: "
-													+ entry.identifiers[t]);
-									}
-									catch (Throwable e) {
-										e.printStackTrace();
-									}
-									finally {
-										context = null;
-									}
-									paintedContexts.add(entry.identifiers[t]);
-									// add this context back to our list of contexts we have already painted for
-									renderer.getPixelBuffer().switchRepaint(context);
-								}
-								at = System.currentTimeMillis();
-								for (ConsoleMapRenderer map : renderer.renderers()) {
-									// if this request forces updates, toggle switches
-									if (entry.force)
-										map.forceSwitch(entry.identifiers[t]);
-									// send packets
-									map.update(entry.connections[t], entry.identifiers[t]);
-								}
-								if (System.currentTimeMillis() - at > 20)
-									System.out.println(lang.getString("painter-packet-overload"));
-							}
-						}
+					finally {
+						context.remove();
 					}
+					paintedContexts.add(paintContext);
+					// add this context back to our list of contexts we have already painted for
+					renderer.getPixelBuffer().switchRepaint(paintContext);
 				}
+				at = System.currentTimeMillis();
+				for (ConsoleMapRenderer map : renderer.renderers()) {
+					// if this request forces updates, toggle switches
+					if (update.force)
+						map.forceSwitch(identifier);
+					// send packets
+					map.update(update.connection, identifier);
+				}
+				if (System.currentTimeMillis() - at > 20)
+					System.out.println(lang.getString("painter-packet-overload"));
+				index++;
 			}
-			stack.clear();
 		}
 	}
 
 	// this is for simplifying painting code so we don't have to supply parameters in paint methods.
-	// must be in paint thread. This is not synchronized to anything.
+	// must be in a paint thread, the context is local to the thread.
 	public String getPaintContext() {
-		return context;
+		return context.get();
 	}
 
 	public void stop() {
-		running = false;
+		synchronized (LOCK) {
+			running = false;
+			queues.clear();
+		}
+		if (pool != null)
+			pool.shutdownNow();
 	}
 
 	/**
@@ -163,19 +239,20 @@ public class MapPainter implements Runnable {
 						&& renderer.pos.distance(player.getLocation()) <= 64)
 				.collect(Collectors.toList());
 
-		synchronized (LOCK) {
+		ClientConnection[] arr = new ClientConnection[close.size()];
+		String[] names = new String[close.size()];
+		for (int t = 0; t < arr.length; t++) {
+			arr[t] = ConsolesNMS.packetInternals.getConnection(close.get(t));
+			names[t] = close.get(t).getName();
+		}
+		submit(renderer, (work) -> {
 			// repaint switch
-			stack.add(new StackEntry(renderer));
-			ClientConnection[] arr = new ClientConnection[close.size()];
-			String[] names = new String[close.size()];
+			work.repaint = true;
+			// add update requests
 			for (int t = 0; t < arr.length; t++) {
-				arr[t] = ConsolesNMS.packetInternals.getConnection(close.get(t));
-				names[t] = close.get(t).getName();
+				work.update(names[t], arr[t], true, false, false);
 			}
-			// add update requests
-			stack.add(new StackEntry(renderer, arr, names, true, false, false));
-			LOCK.notify();
-		}
+		});
 	}
 
 	/**
@@ -186,10 +263,24 @@ public class MapPainter implements Runnable {
 	 * @param contexts the contexts to update
  	 */
 	public void toggle(ConsoleRenderer renderer, String... contexts) {
-		synchronized (LOCK) {
-			stack.add(new StackEntry(renderer, contexts));
-			LOCK.notify();
-		}
+		submit(renderer, (work) -> Collections.addAll(work.toggles, contexts));
+	}
+
+	/**
+	 * Drops everything that was kept for the given contexts while painting the console,
+	 * along with any requests for them that haven't been handled yet.
+	 *
+	 * @param renderer the console to manipulate
+	 * @param contexts the contexts that are gone
+	 */
+	public void removeContexts(ConsoleRenderer renderer, String... contexts) {
+		submit(renderer, (work) -> {
+			for (String context : contexts) {
+				work.toggles.remove(context);
+				work.updates.remove(context);
+				work.removed.add(context);
+			}
+		});
 	}
 
 	/**
@@ -213,12 +304,9 @@ public class MapPainter implements Runnable {
 	public void updateFor(ConsoleRenderer renderer, Player player, boolean force, boolean paintIfNew) {
 		if (renderer.pos.getWorld() == player.getWorld() && renderer.pos.distance(player.getLocation()) > 64) return;
 
-		synchronized (LOCK) {
-			stack.add(new StackEntry(renderer,
-					new ClientConnection[]{ConsolesNMS.packetInternals.getConnection(player)},
-					new String[]{player.getName()}, false, force, paintIfNew));
-			LOCK.notify();
-		}
+		ClientConnection connection = ConsolesNMS.packetInternals.getConnection(player);
+		String name = player.getName();
+		submit(renderer, (work) -> work.update(name, connection, false, force, paintIfNew));
 	}
 	public Player translateContext(String context) {
 		for (Player player : Bukkit.getOnlinePlayers()) {
@@ -230,42 +318,47 @@ public class MapPainter implements Runnable {
 	public void repaintFor(ConsoleRenderer renderer, Player player) {
 		if (renderer.pos.distance(player.getLocation()) > 64) return;
 
-		synchronized (LOCK) {
-			stack.add(new StackEntry(renderer,
-					new ClientConnection[] {ConsolesNMS.packetInternals.getConnection(player)},
-					new String[] {player.getName()}, true, false, false));
-			LOCK.notify();
+		ClientConnection connection = ConsolesNMS.packetInternals.getConnection(player);
+		String name = player.getName();
+		submit(renderer, (work) -> work.update(name, connection, true, false, false));
+	}
+	// requests for a single console that haven't been handled yet
+	private static class PendingWork {
+		// whether the repaint stack should be cleared
+		boolean repaint = false;
+		// contexts to toggle the switches for
+		final Set<String> toggles = new LinkedHashSet<>();
+		// update requests, merged together for each context
+		final Map<String, UpdateRequest> updates = new LinkedHashMap<>();
+		// contexts that are gone
+		final Set<String> removed = new HashSet<>();
+
+		void update(String context, ClientConnection connection, boolean paint, boolean force, boolean paintIfNew) {
+			UpdateRequest request = updates.get(context);
+			if (request == null) {
+				updates.put(context, new UpdateRequest(connection, paint, force, paintIfNew));
+			}
+			else {
+				request.connection = connection;
+				request.paint |= paint;
+				request.force |= force;
+				request.paintIfNew |= paintIfNew;
+			}
+		}
+		boolean isEmpty() {
+			return !repaint && toggles.isEmpty() && updates.isEmpty() && removed.isEmpty();
 		}
 	}
-	private class StackEntry {
-		ConsoleRenderer renderer;
-		ClientConnection[] connections;
-		String[] identifiers;
+	private static class UpdateRequest {
+		ClientConnection connection;
 		boolean paint;
-		boolean paintIfNew;
 		boolean force;
-		EntryType type;
-		public StackEntry(ConsoleRenderer renderer, ClientConnection[] connections,
-		                  String[] identifiers, boolean paint, boolean force, boolean paintIfNew) {
-			this.renderer = renderer;
-			this.connections = connections;
-			this.identifiers = identifiers;
+		boolean paintIfNew;
+		public UpdateRequest(ClientConnection connection, boolean paint, boolean force, boolean paintIfNew) {
+			this.connection = connection;
 			this.paint = paint;
 			this.force = force;
 			this.paintIfNew = paintIfNew;
-			type = EntryType.UPDATE;
 		}
-		public StackEntry(ConsoleRenderer renderer, String... contexts) {
-			this.renderer = renderer;
-			this.identifiers = contexts;
-			type = EntryType.TOGGLE;
-		}
-		public StackEntry(ConsoleRenderer renderer) {
-			this.renderer = renderer;
-			type = EntryType.REPAINT_TOGGLE;
-		}
-	}
-	private enum EntryType {
-		UPDATE, TOGGLE, REPAINT_TOGGLE
 	}
 }
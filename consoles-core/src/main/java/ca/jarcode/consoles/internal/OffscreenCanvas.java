@@ -0,0 +1,131 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.api.CanvasGraphics;
+import org.bukkit.map.MapFont;
+import org.bukkit.map.MinecraftFont;
+
+import java.util.Arrays;
+
+/*
+
+A row-major array of map colors that isn't tied to a console or a context. Content can be
+composed in here from any thread, compared against another canvas to find out what changed,
+and then blitted to a component while painting.
+
+Regions are passed around as {x, y, w, h}, like the modified regions in the pixel buffer.
+
+ */
+public class OffscreenCanvas {
+
+	private final int width, height;
+	private final byte[] pixels;
+
+	private MapFont font = MinecraftFont.Font;
+
+	// bounding box of the pixels written since the last call to touched(), max values are exclusive
+	private int minX, minY, maxX, maxY;
+
+	public OffscreenCanvas(int width, int height, byte color) {
+		this.width = width;
+		this.height = height;
+		pixels = new byte[width * height];
+		Arrays.fill(pixels, color);
+		touched();
+	}
+	public int getWidth() {
+		return width;
+	}
+	public int getHeight() {
+		return height;
+	}
+	public void setFont(MapFont font) {
+		this.font = font;
+	}
+	public byte get(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height ? pixels[x + (y * width)] : 0;
+	}
+	public void set(int x, int y, byte color) {
+		if (x >= 0 && y >= 0 && x < width && y < height) {
+			pixels[x + (y * width)] = color;
+			touch(x, y, x + 1, y + 1);
+		}
+	}
+	public void fill(int x, int y, int w, int h, byte color) {
+		int x1 = Math.max(x, 0), x2 = Math.min(x + w, width);
+		int y1 = Math.max(y, 0), y2 = Math.min(y + h, height);
+		if (x1 >= x2 || y1 >= y2) return;
+		for (int py = y1; py < y2; py++)
+			Arrays.fill(pixels, x1 + (py * width), x2 + (py * width), color);
+		touch(x1, y1, x2, y2);
+	}
+	public byte drawFormatted(int x, int y, String text) {
+		return drawFormatted(x, y, (byte) 32, text);
+	}
+	// same as ConsoleGraphics.drawFormatted(...), without character modifiers
+	public byte drawFormatted(int x, int y, byte inherit, String text) {
+		return GlyphAtlas.walkFormatted(font, text, inherit,
+				(glyph, c, index, at, color) -> drawGlyph(glyph, at + x, y, color));
+	}
+	private void drawGlyph(GlyphAtlas.Glyph glyph, int x, int y, byte color) {
+		for (int j = 0; j < glyph.rows.length; j++) {
+			int py = y + j;
+			if (glyph.rows[j] == 0 || py < 0 || py >= height) continue;
+			long changed = GlyphAtlas.writeRow(glyph.rows[j], Math.max(-x, 0), Math.min(width - x, glyph.width),
+					pixels, x + (py * width), color);
+			if (changed != 0)
+				touch(x + Long.numberOfTrailingZeros(changed), py, x + 64 - Long.numberOfLeadingZeros(changed), py + 1);
+		}
+	}
+	private void touch(int x1, int y1, int x2, int y2) {
+		if (x1 >= x2 || y1 >= y2) return;
+		if (x1 < minX) minX = x1;
+		if (y1 < minY) minY = y1;
+		if (x2 > maxX) maxX = x2;
+		if (y2 > maxY) maxY = y2;
+	}
+	// returns the region written to since the last call, or null if nothing was written
+	public int[] touched() {
+		int[] region = minX < maxX ? new int[] {minX, minY, maxX - minX, maxY - minY} : null;
+		minX = Integer.MAX_VALUE;
+		minY = Integer.MAX_VALUE;
+		maxX = -1;
+		maxY = -1;
+		return region;
+	}
+	// copies a region from a canvas of the same size
+	public void copy(OffscreenCanvas from, int[] region) {
+		for (int py = region[1]; py < region[1] + region[3]; py++) {
+			int i = region[0] + (py * width);
+			System.arraycopy(from.pixels, i, pixels, i, region[2]);
+		}
+	}
+	// returns the part of the region where this canvas differs from the other one (which has
+	// to be the same size), or null if they're the same.
+	public int[] diff(OffscreenCanvas other, int[] region) {
+		int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE, x2 = -1, y2 = -1;
+		for (int py = region[1]; py < region[1] + region[3]; py++) {
+			int row = py * width;
+			int first = -1, last = -1;
+			for (int px = region[0]; px < region[0] + region[2]; px++) {
+				if (pixels[px + row] != other.pixels[px + row]) {
+					if (first < 0) first = px;
+					last = px;
+				}
+			}
+			if (first >= 0) {
+				if (first < x1) x1 = first;
+				if (last + 1 > x2) x2 = last + 1;
+				if (py < y1) y1 = py;
+				y2 = py + 1;
+			}
+		}
+		return x2 < 0 ? null : new int[] {x1, y1, x2 - x1, y2 - y1};
+	}
+	// blits a region of this canvas to the same position in the graphics context
+	public void paint(CanvasGraphics g, int[] region) {
+		g.blit(region[0], region[1], pixels, region[0] + (region[1] * width), width, region[2], region[3]);
+	}
+	public void paint(CanvasGraphics g) {
+		g.blit(0, 0, pixels, 0, width, width, height);
+	}
+}
@@ -0,0 +1,158 @@
+package ca.jarcode.consoles.util;
+
+import java.util.Arrays;
+
+/*
+
+Open-addressing hash map with primitive long keys, so lookups don't box the key or
+allocate entries. Removal shifts the following entries back instead of leaving
+tombstones, so the table never fills up with dead slots.
+
+This class is not thread safe.
+
+ */
+public class LongHashMap<V> {
+
+	public interface Visitor<V> {
+		void visit(long key, V value);
+	}
+
+	// packs two ints (usually grid coordinates) into a key
+	public static long key(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+	public static int keyX(long key) {
+		return (int) (key >> 32);
+	}
+	public static int keyZ(long key) {
+		return (int) key;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private long[] keys;
+	private Object[] values;
+	private int size = 0;
+	private int mask;
+
+	public LongHashMap() {
+		this(16);
+	}
+	public LongHashMap(int capacity) {
+		int n = 16;
+		while (n < capacity * 2)
+			n <<= 1;
+		keys = new long[n];
+		values = new Object[n];
+		mask = n - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return (V) values[i];
+		}
+		return null;
+	}
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	// null values are not allowed, they mark empty slots
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new NullPointerException();
+		int i = hash(key) & mask;
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		// keep the load factor at or under 1/2
+		if (++size * 2 > keys.length)
+			resize(keys.length << 1);
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = hash(key) & mask;
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				break;
+		}
+		if (values[i] == null)
+			return null;
+		V old = (V) values[i];
+		// shift back entries that probed past the removed slot
+		int gap = i;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			// move the entry if its home slot is not between the gap and its current slot
+			if (gap <= j ? (home <= gap || home > j) : (home <= gap && home > j)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		values[gap] = null;
+		size--;
+		return old;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	// copy of all the keys in the map
+	public long[] keys() {
+		long[] result = new long[size];
+		int index = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null)
+				result[index++] = keys[i];
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(Visitor<? super V> visitor) {
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null)
+				visitor.visit(keys[i], (V) values[i]);
+		}
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] == null) continue;
+			int j = hash(oldKeys[i]) & mask;
+			while (values[j] != null)
+				j = (j + 1) & mask;
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package ca.jarcode.consoles.internal;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class AllocationTableTest {
+
+	@Test
+	public void identity() {
+		BitSet globals = new BitSet();
+		globals.set(0, 3);
+		globals.set(10);
+		AllocationTable table = AllocationTable.identity(globals);
+		assertEquals(2, table.get(2));
+		assertEquals(10, table.get(10));
+		assertFalse(table.contains(5));
+		assertArrayEquals(new short[] {0, 1, 2, 10}, table.values());
+	}
+
+	@Test
+	public void mapsToLowestFreeIndex() {
+		AllocationTable table = new AllocationTable();
+		assertEquals(4, table.map(7, 4));
+		assertEquals(5, table.map(3, 4));
+		// already mapped
+		assertEquals(4, table.map(7, 0));
+		assertEquals(0, table.map(100, 0));
+		assertEquals(0, table.get(100));
+		assertEquals(-1, table.get(8));
+		assertEquals(-1, table.get(-1));
+	}
+
+	@Test
+	public void removeFreesIndex() {
+		AllocationTable table = new AllocationTable();
+		table.map(1, 0);
+		table.map(2, 0);
+		table.remove(1);
+		assertFalse(table.contains(1));
+		assertEquals(0, table.map(3, 0));
+		assertArrayEquals(new short[] {0, 1}, table.values());
+		// removing something that isn't mapped does nothing
+		table.remove(50);
+		assertArrayEquals(new short[] {0, 1}, table.values());
+	}
+
+	@Test
+	public void reservedIndexesAreSkipped() {
+		AllocationTable table = new AllocationTable();
+		table.reserve(0);
+		table.reserve(1);
+		table.reserve(-1);
+		assertEquals(2, table.map(0, 0));
+		assertArrayEquals(new short[] {0, 1, 2}, table.values());
+	}
+
+	@Test
+	public void reserveAll() {
+		AllocationTable table = new AllocationTable();
+		table.map(0, 0);
+		table.map(1, 0);
+		table.reserveAll();
+		assertFalse(table.contains(0));
+		assertFalse(table.contains(1));
+		// the old client indexes are still taken
+		assertEquals(2, table.map(0, 0));
+		assertArrayEquals(new short[] {0, 1, 2}, table.values());
+	}
+
+	@Test
+	public void runsOutOfIndexes() {
+		AllocationTable table = new AllocationTable();
+		assertEquals(Short.MAX_VALUE, table.map(0, Short.MAX_VALUE));
+		assertEquals(Short.MAX_VALUE, table.map(1, Short.MAX_VALUE));
+		assertFalse(table.contains(1));
+	}
+}
@@ -0,0 +1,100 @@
+package ca.jarcode.consoles.internal;
+
+import ca.jarcode.consoles.util.LocalPosition;
+import ca.jarcode.consoles.util.Region;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ConsoleIndexTest {
+
+	private final ConsoleIndex<String> index = new ConsoleIndex<>();
+	private final World world = world();
+
+	// a world that only has an id
+	private static World world() {
+		UUID uid = UUID.randomUUID();
+		return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] {World.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getUID": return uid;
+						case "hashCode": return uid.hashCode();
+						case "equals": return proxy == args[0];
+						default: throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	// indexes a console covering 'width' blocks on the x axis and 'depth' blocks on the z axis
+	private String add(String console, int x, int z, int width, int depth) {
+		index.add(console, world, new Region(new LocalPosition(x, 64, z), new LocalPosition(x + width - 1, 64, z + depth - 1)));
+		return console;
+	}
+
+	private List<String> near(World world, double x, double z, double range) {
+		return index.near(new Location(world, x, 65, z), range);
+	}
+
+	@Test
+	public void findsNearbyConsoles() {
+		String console = add("console", 0, 0, 3, 1);
+		String far = add("far", 200, 200, 3, 1);
+		assertEquals(Collections.singletonList(console), near(world, 1, -2, 5));
+		assertEquals(Collections.singletonList(far), near(world, 201, 198, 5));
+		assertTrue(near(world, 100, 100, 5).isEmpty());
+	}
+
+	@Test
+	public void rangeCoversNeighbouringCells() {
+		// in the chunk column next to the eye, but within range
+		String console = add("console", 17, 0, 1, 1);
+		assertEquals(Collections.singletonList(console), near(world, 14.5, 0, 3));
+		// out of range, two columns away
+		assertTrue(near(world, 1, 0, 5).isEmpty());
+	}
+
+	@Test
+	public void negativeCoordinates() {
+		String console = add("console", -5, -20, 1, 4);
+		assertEquals(Collections.singletonList(console), near(world, -3, -18, 5));
+		assertTrue(near(world, 3, 18, 5).isEmpty());
+	}
+
+	@Test
+	public void spansCells() {
+		// covers four chunk columns
+		String console = add("console", 14, 14, 4, 4);
+		add(console, 14, 14, 4, 4);
+		assertEquals(Collections.singletonList(console), near(world, 16, 16, 20));
+		assertEquals(Collections.singletonList(console), near(world, 17.5, 17.5, 1));
+	}
+
+	@Test
+	public void separateWorlds() {
+		World other = world();
+		add("console", 0, 0, 1, 1);
+		assertTrue(near(other, 0, 0, 5).isEmpty());
+		assertTrue(near(null, 0, 0, 5).isEmpty());
+	}
+
+	@Test
+	public void remove() {
+		String a = add("a", 0, 0, 20, 1);
+		String b = add("b", 2, 2, 1, 1);
+		assertEquals(2, near(world, 0, 0, 5).size());
+		index.remove(a, world);
+		assertEquals(Collections.singletonList(b), near(world, 0, 0, 5));
+		assertTrue(near(world, 18, 0, 1).isEmpty());
+		index.remove(b, world);
+		assertTrue(near(world, 0, 0, 5).isEmpty());
+		// removing a console that isn't indexed does nothing
+		index.remove(b, world);
+	}
+}
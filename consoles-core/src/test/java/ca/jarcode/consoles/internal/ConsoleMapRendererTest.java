@@ -0,0 +1,63 @@
+package ca.jarcode.consoles.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConsoleMapRendererTest {
+
+	private static final int SIZE = ConsolePixelBuffer.SIZE;
+
+	private static final int[] FULL = {0, 0, SIZE, SIZE};
+
+	private static void set(byte[] data, int x, int y, byte color) {
+		data[x + (y * SIZE)] = color;
+	}
+
+	@Test
+	public void trimWithoutLastData() {
+		int[] region = {4, 5, 6, 7};
+		assertArrayEquals(region, ConsoleMapRenderer.trim(null, new byte[SIZE * SIZE], region));
+	}
+
+	@Test
+	public void trimUnchanged() {
+		byte[] last = new byte[SIZE * SIZE], data = new byte[SIZE * SIZE];
+		set(last, 3, 3, (byte) 5);
+		set(data, 3, 3, (byte) 5);
+		assertNull(ConsoleMapRenderer.trim(last, data, FULL));
+	}
+
+	@Test
+	public void trimToChangedPixels() {
+		byte[] last = new byte[SIZE * SIZE], data = new byte[SIZE * SIZE];
+		set(data, 10, 20, (byte) 1);
+		set(data, 15, 22, (byte) 1);
+		assertArrayEquals(new int[] {10, 20, 6, 3}, ConsoleMapRenderer.trim(last, data, FULL));
+		// a single pixel
+		assertArrayEquals(new int[] {10, 20, 1, 1}, ConsoleMapRenderer.trim(last, data, new int[] {0, 0, 12, 21}));
+		// corners of the section
+		set(data, 0, 0, (byte) 1);
+		set(data, SIZE - 1, SIZE - 1, (byte) 1);
+		assertArrayEquals(FULL, ConsoleMapRenderer.trim(last, data, FULL));
+	}
+
+	@Test
+	public void trimOnlyLooksInRegion() {
+		byte[] last = new byte[SIZE * SIZE], data = new byte[SIZE * SIZE];
+		set(data, 50, 50, (byte) 1);
+		assertNull(ConsoleMapRenderer.trim(last, data, new int[] {0, 0, 50, 128}));
+		assertNull(ConsoleMapRenderer.trim(last, data, new int[] {51, 0, 77, 128}));
+		assertArrayEquals(new int[] {50, 50, 1, 1}, ConsoleMapRenderer.trim(last, data, new int[] {40, 40, 20, 20}));
+	}
+
+	@Test
+	public void union() {
+		assertArrayEquals(new int[] {2, 3, 8, 9},
+				ConsoleMapRenderer.union(new int[] {2, 5, 3, 7}, new int[] {6, 3, 4, 2}));
+		// one region inside the other
+		assertArrayEquals(FULL, ConsoleMapRenderer.union(FULL, new int[] {10, 10, 1, 1}));
+		assertArrayEquals(new int[] {10, 10, 1, 1},
+				ConsoleMapRenderer.union(new int[] {10, 10, 1, 1}, new int[] {10, 10, 1, 1}));
+	}
+}
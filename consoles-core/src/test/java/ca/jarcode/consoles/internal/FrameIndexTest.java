@@ -0,0 +1,77 @@
+package ca.jarcode.consoles.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameIndexTest {
+
+	private final FrameIndex<String> index = new FrameIndex<>();
+
+	private static int[] range(int start, int count) {
+		int[] ids = new int[count];
+		for (int t = 0; t < count; t++)
+			ids[t] = start + t;
+		return ids;
+	}
+
+	@Test
+	public void lookup() {
+		String a = "a", b = "b";
+		index.put(a, range(100, 6));
+		index.put(b, new int[] {7, -3, 0});
+		assertSame(a, index.get(100));
+		assertSame(a, index.get(105));
+		assertSame(b, index.get(-3));
+		assertSame(b, index.get(0));
+		assertNull(index.get(106));
+		assertFalse(index.contains(1));
+		assertTrue(index.contains(7));
+	}
+
+	@Test
+	public void grows() {
+		String a = "a", b = "b";
+		// large consoles have hundreds of frames
+		index.put(a, range(0, 500));
+		index.put(b, range(10000, 500));
+		for (int t = 0; t < 500; t++) {
+			assertSame(a, index.get(t));
+			assertSame(b, index.get(10000 + t));
+		}
+		assertNull(index.get(500));
+		assertNull(index.get(9999));
+	}
+
+	@Test
+	public void remove() {
+		String a = "a", b = "b";
+		index.put(a, range(0, 50));
+		index.put(b, range(50, 50));
+		index.remove(a);
+		for (int t = 0; t < 50; t++) {
+			assertNull(index.get(t));
+			assertSame(b, index.get(50 + t));
+		}
+		// the ids can be used by another console
+		index.put(a, range(0, 10));
+		assertSame(a, index.get(5));
+	}
+
+	@Test
+	public void reassign() {
+		String a = "a", b = "b";
+		index.put(a, new int[] {1, 2});
+		index.put(b, new int[] {2});
+		assertSame(a, index.get(1));
+		assertSame(b, index.get(2));
+	}
+
+	@Test
+	public void clear() {
+		index.put("a", range(0, 100));
+		index.clear();
+		assertNull(index.get(0));
+		assertNull(index.get(99));
+	}
+}
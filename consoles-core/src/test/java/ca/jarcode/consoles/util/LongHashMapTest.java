@@ -0,0 +1,104 @@
+package ca.jarcode.consoles.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongHashMapTest {
+
+	@Test
+	public void keys() {
+		long key = LongHashMap.key(-5, 7);
+		assertEquals(-5, LongHashMap.keyX(key));
+		assertEquals(7, LongHashMap.keyZ(key));
+		key = LongHashMap.key(Integer.MAX_VALUE, Integer.MIN_VALUE);
+		assertEquals(Integer.MAX_VALUE, LongHashMap.keyX(key));
+		assertEquals(Integer.MIN_VALUE, LongHashMap.keyZ(key));
+		assertNotEquals(LongHashMap.key(1, 2), LongHashMap.key(2, 1));
+	}
+
+	@Test
+	public void putGetRemove() {
+		LongHashMap<String> map = new LongHashMap<>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-1, "b"));
+		assertNull(map.put(0, "c"));
+		assertEquals("a", map.put(1, "d"));
+		assertEquals(3, map.size());
+		assertEquals("d", map.get(1));
+		assertEquals("b", map.get(-1));
+		assertTrue(map.containsKey(0));
+		assertFalse(map.containsKey(2));
+		assertEquals("b", map.remove(-1));
+		assertNull(map.remove(-1));
+		assertNull(map.get(-1));
+		assertEquals(2, map.size());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void nullValues() {
+		new LongHashMap<String>().put(1, null);
+	}
+
+	@Test
+	public void clear() {
+		LongHashMap<String> map = new LongHashMap<>();
+		for (int t = 0; t < 100; t++)
+			map.put(t, "v");
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(5));
+		assertEquals(0, map.keys().length);
+	}
+
+	@Test
+	public void iteration() {
+		LongHashMap<Integer> map = new LongHashMap<>();
+		for (int t = 0; t < 50; t++)
+			map.put(LongHashMap.key(t, -t), t);
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		long[] expected = new long[50];
+		for (int t = 0; t < 50; t++)
+			expected[t] = LongHashMap.key(t, -t);
+		Arrays.sort(expected);
+		assertArrayEquals(expected, keys);
+
+		int[] sum = new int[1];
+		map.forEach((key, value) -> {
+			assertEquals(value.intValue(), LongHashMap.keyX(key));
+			sum[0] += value;
+		});
+		assertEquals(49 * 50 / 2, sum[0]);
+	}
+
+	// removal shifts entries back, which is easy to get wrong when probes wrap around the table
+	@Test
+	public void matchesHashMap() {
+		Random random = new Random(42);
+		LongHashMap<Long> map = new LongHashMap<>(4);
+		Map<Long, Long> expected = new HashMap<>();
+		for (int t = 0; t < 200000; t++) {
+			// a small key space, so there are lots of collisions and removals of present keys
+			long key = LongHashMap.key(random.nextInt(64) - 32, random.nextInt(64) - 32);
+			if (random.nextInt(3) == 0)
+				assertEquals(expected.remove(key), map.remove(key));
+			else
+				assertEquals(expected.put(key, (long) t), map.put(key, (long) t));
+			if (t % 1000 == 0) {
+				assertEquals(expected.size(), map.size());
+				for (Map.Entry<Long, Long> entry : expected.entrySet())
+					assertEquals(entry.getValue(), map.get(entry.getKey()));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (long key : map.keys())
+			assertEquals(expected.get(key), map.get(key));
+	}
+}
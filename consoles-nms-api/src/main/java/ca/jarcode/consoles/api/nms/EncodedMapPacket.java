@@ -0,0 +1,9 @@
+package ca.jarcode.consoles.api.nms;
+
+// a map packet that has already been serialized, and can be sent to any amount of clients
+public interface EncodedMapPacket {
+	// writes the packet to the client with the given map id, without serializing it again
+	void sendTo(ClientConnection connection, int id);
+	// releases the serialized data, the packet can't be sent after this
+	void release();
+}
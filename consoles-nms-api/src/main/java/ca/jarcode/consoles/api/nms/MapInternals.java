@@ -1,5 +1,6 @@
 package ca.jarcode.consoles.api.nms;
 
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
 
 public interface MapInternals {
@@ -9,8 +10,16 @@ public interface MapInternals {
 	void clearVanillaMapFiles();
 	Object mapItemNMS(short id);
 
-	boolean updateSection(MapInternals.PreparedMapSection section, World world, int centerX, int centerZ,
-	                                    int updateX, int updateZ, int scale);
+	// renders the area around an update position into the given colors (a 128x128 section),
+	// reading blocks from chunk snapshots. Chunks that have no snapshot are left alone.
+	// This does not touch the world, so it can be called from any thread.
+	boolean renderSection(byte[] colors, World world, ChunkSource chunks, int centerX, int centerZ,
+	                      int updateX, int updateZ, int scale);
+
+	interface ChunkSource {
+		// returns the snapshot of the chunk at the given chunk coordinates, or null if it isn't available
+		ChunkSnapshot getChunk(int x, int z);
+	}
 
 	class PreparedMapSection {
 		public final byte[] colors = new byte[128 * 128];
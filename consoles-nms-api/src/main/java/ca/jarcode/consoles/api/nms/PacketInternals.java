@@ -9,4 +9,8 @@ public interface PacketInternals {
 	void registerMapPacket(Object packet);
 	ClientConnection getConnection(Player player);
 	Object createMapPacket(byte[] data, int id);
+	// creates a packet that only updates the given region of the map, data is still the entire 128x128 section
+	Object createMapPacket(byte[] data, int id, int x, int y, int w, int h);
+	// serializes a map packet for the given region once, so it can be sent to many clients
+	EncodedMapPacket encodeMapPacket(byte[] data, int x, int y, int w, int h);
 }
@@ -1,12 +1,14 @@
 package ca.jarcode.consoles.v1_8_R2;
 
 import ca.jarcode.consoles.api.nms.ClientConnection;
+import ca.jarcode.consoles.api.nms.EncodedMapPacket;
 import ca.jarcode.consoles.api.nms.PacketInternals;
 import net.minecraft.server.v1_8_R2.Packet;
 import net.minecraft.server.v1_8_R2.PacketPlayOutEntityMetadata;
 import net.minecraft.server.v1_8_R2.PacketPlayOutMap;
 import org.bukkit.entity.Player;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -42,4 +44,23 @@ public class InternalPacketManager implements PacketInternals {
 	public Object createMapPacket(byte[] data, int id) {
 		return PacketFunctions.createUpdatePacket(data, id, packets);
 	}
+
+	@Override
+	public Object createMapPacket(byte[] data, int id, int x, int y, int w, int h) {
+		return PacketFunctions.createUpdatePacket(data, id, x, y, w, h, packets);
+	}
+
+	@Override
+	public EncodedMapPacket encodeMapPacket(byte[] data, int x, int y, int w, int h) {
+		// encoded packets are written straight to the channel, so they aren't registered
+		PacketPlayOutMap packet = PacketFunctions.createMapPacket(data, 0, x, y, w, h);
+		if (packet == null)
+			return null;
+		try {
+			return new SharedMapPacket(packet);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
 }
@@ -105,9 +105,9 @@ public class MapInjector extends WorldMap {
 		}
 
 		@Override
-		public boolean updateSection(PreparedMapSection section, org.bukkit.World world, int centerX,
+		public boolean renderSection(byte[] colors, org.bukkit.World world, ChunkSource chunks, int centerX,
 		                             int centerZ, int updateX, int updateZ, int scale) {
-			return ChunkMapper.updateSection(section, world, centerX, centerZ, updateX, updateZ, scale);
+			return ChunkMapper.renderSection(colors, world, chunks, centerX, centerZ, updateX, updateZ, scale);
 		}
 	};
 
@@ -25,6 +25,8 @@ public class PacketFunctions {
 	// we ignore a decent amount of fields for map packets there because we can leave them as their defaults (0).
 	private static final Field MAP_ID;
 	private static final Field MAP_ICONS;
+	private static final Field MAP_X;
+	private static final Field MAP_Y;
 	private static final Field MAP_WIDTH;
 	private static final Field MAP_HEIGHT;
 	private static final Field MAP_DATA;
@@ -34,11 +36,15 @@ public class PacketFunctions {
 			// set up fields that we access when creating new packets
 			MAP_ID = PacketPlayOutMap.class.getDeclaredField("a");
 			MAP_ICONS = PacketPlayOutMap.class.getDeclaredField("c");
+			MAP_X = PacketPlayOutMap.class.getDeclaredField("d");
+			MAP_Y = PacketPlayOutMap.class.getDeclaredField("e");
 			MAP_WIDTH = PacketPlayOutMap.class.getDeclaredField("f");
 			MAP_HEIGHT = PacketPlayOutMap.class.getDeclaredField("g");
 			MAP_DATA = PacketPlayOutMap.class.getDeclaredField("h");
 			MAP_ID.setAccessible(true);
 			MAP_ICONS.setAccessible(true);
+			MAP_X.setAccessible(true);
+			MAP_Y.setAccessible(true);
 			MAP_WIDTH.setAccessible(true);
 			MAP_HEIGHT.setAccessible(true);
 			MAP_DATA.setAccessible(true);
@@ -52,21 +58,46 @@ public class PacketFunctions {
 	// we avoid copying a buffer when creating the packet using reflection,
 	// so we can use the pixel buffer's sections directly.
 	public static PacketPlayOutMap createUpdatePacket(byte[] data, int id, List<Packet> packets) {
-		if (data == null) return null;
-		PacketPlayOutMap map = newMapPacket(packets);
+		return createUpdatePacket(data, id, 0, 0, 128, 128, packets);
+	}
+
+	// creates a packet that only updates a region of the map, the data passed is the entire 128x128
+	// section, and only the rows of the region are copied into the packet.
+	public static PacketPlayOutMap createUpdatePacket(byte[] data, int id, int x, int y, int w, int h,
+	                                                  List<Packet> packets) {
+		PacketPlayOutMap map = createMapPacket(data, id, x, y, w, h);
+		if (map != null)
+			packets.add(map);
+		return map;
+	}
+
+	// creates the packet without registering it, for packets that never go through the network manager
+	public static PacketPlayOutMap createMapPacket(byte[] data, int id, int x, int y, int w, int h) {
+		if (data == null || w <= 0 || h <= 0) return null;
+		byte[] region;
+		// when updating the entire map area, pass through the byte array directly
+		// this avoids a considerable amount of overhead from sending packets
+		if (x == 0 && y == 0 && w == 128 && h == 128)
+			region = data;
+		else {
+			region = new byte[w * h];
+			for (int j = 0; j < h; j++) {
+				System.arraycopy(data, x + ((y + j) * 128), region, j * w, w);
+			}
+		}
+		PacketPlayOutMap map = new PacketPlayOutMap();
 		try {
 			// map damage value
 			MAP_ID.set(map, id);
 			// initialize the icon array in the packet with an empty array
 			// we don't use any map icons, so this is fine to do.
 			MAP_ICONS.set(map, new MapIcon[0]);
-			// we always send packets that update the entire map area,
-			// so the dimensions are always 128x128
-			MAP_WIDTH.set(map, 128);
-			MAP_HEIGHT.set(map, 128);
-			// pass through the byte array directly
-			// this avoids a considerable amount of overhead from sending packets
-			MAP_DATA.set(map, data);
+			// the region of the map to update
+			MAP_X.set(map, x);
+			MAP_Y.set(map, y);
+			MAP_WIDTH.set(map, w);
+			MAP_HEIGHT.set(map, h);
+			MAP_DATA.set(map, region);
 		}
 		catch (IllegalAccessException e) {
 			e.printStackTrace();
@@ -0,0 +1,79 @@
+package ca.jarcode.consoles.v1_8_R2;
+
+import ca.jarcode.consoles.api.nms.ClientConnection;
+import ca.jarcode.consoles.api.nms.EncodedMapPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import net.minecraft.server.v1_8_R2.EnumProtocol;
+import net.minecraft.server.v1_8_R2.EnumProtocolDirection;
+import net.minecraft.server.v1_8_R2.NetworkManager;
+import net.minecraft.server.v1_8_R2.PacketDataSerializer;
+import net.minecraft.server.v1_8_R2.PacketPlayOutMap;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+
+A map packet that is serialized once, and written straight to the channel of every client
+it is sent to. Packets sent through the network manager are serialized again for every
+single client, which adds up when a lot of players are looking at the same console.
+
+Everything after the map id is shared between all clients. Each map id the packet is sent
+with gets a small header (the packet id and the map id) that is wrapped around the shared
+data without copying it. Compression, framing and encryption are still done by the
+channel pipeline, since the packet encoder passes buffers through as they are.
+
+ */
+public class SharedMapPacket implements EncodedMapPacket {
+
+	private static final int PACKET_ID =
+			EnumProtocol.PLAY.a(EnumProtocolDirection.CLIENTBOUND, new PacketPlayOutMap());
+
+	// the serialized packet, without the packet id and the map id
+	private final ByteBuf body;
+	// the packet for every map id it has been sent with
+	private final Map<Integer, ByteBuf> packets = new HashMap<>();
+	private boolean released = false;
+
+	// the packet has to be created with a map id of 0
+	SharedMapPacket(PacketPlayOutMap packet) throws IOException {
+		body = Unpooled.buffer();
+		packet.b(new PacketDataSerializer(body));
+		// skip the map id, which is a single byte for 0
+		body.readerIndex(1);
+	}
+
+	@Override
+	public synchronized void sendTo(ClientConnection connection, int id) {
+		if (released)
+			throw new IllegalStateException("packet has been released");
+		Channel channel = ((ConnectionWrapper) connection).channel();
+		// the packet id is only valid for clients that are in game
+		if (channel == null || !channel.isOpen() || channel.attr(NetworkManager.c).get() != EnumProtocol.PLAY)
+			return;
+		ByteBuf packet = packets.get(id);
+		if (packet == null) {
+			ByteBuf header = Unpooled.buffer(10);
+			PacketDataSerializer serializer = new PacketDataSerializer(header);
+			serializer.b(PACKET_ID);
+			serializer.b(id);
+			packet = Unpooled.wrappedBuffer(header, body.duplicate().retain());
+			packets.put(id, packet);
+		}
+		// the pipeline releases what it writes, so every client gets its own reference
+		channel.writeAndFlush(packet.duplicate().retain());
+	}
+
+	@Override
+	public synchronized void release() {
+		if (released)
+			return;
+		released = true;
+		packets.values().forEach(ByteBuf::release);
+		packets.clear();
+		body.release();
+	}
+}
@@ -1,24 +1,63 @@
 package ca.jarcode.consoles.v1_8_R3;
 
 import ca.jarcode.consoles.api.nms.MapInternals;
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Multisets;
 import net.minecraft.server.v1_8_R3.*;
-import net.minecraft.server.v1_8_R3.Chunk;
 import net.minecraft.server.v1_8_R3.World;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.craftbukkit.v1_8_R3.CraftWorld;
 
+import java.util.Arrays;
+
 public class ChunkMapper {
 
+	// map color index + 1 for each combined block id (id | data << 12), 0 if not looked up yet
+	private static final byte[] COLORS = new byte[1 << 16];
+	// 1 if the block is a liquid, 2 if not, 0 if not looked up yet
+	private static final byte[] LIQUIDS = new byte[1 << 12];
+
+	private static final int AIR_COLOR = MaterialMapColor.b.M;
+	private static final int WATER_COLOR = MaterialMapColor.n.M;
+
+	private static final int DIRT_COLOR = Blocks.DIRT.g(Blocks.DIRT.getBlockData()
+			.set(BlockDirt.VARIANT, BlockDirt.EnumDirtVariant.DIRT)).M;
+	private static final int STONE_COLOR = Blocks.STONE.g(Blocks.STONE.getBlockData()
+			.set(BlockStone.VARIANT, BlockStone.EnumStoneVariant.STONE)).M;
+
+	// counters for the map colors in a pixel, reused for every pixel
+	private static final ThreadLocal<int[]> COUNTERS = ThreadLocal.withInitial(() -> new int[64]);
+
+	// the lookup tables can be raced on, but the results are always the same
+	private static int color(ChunkSnapshot chunk, int x, int y, int z) {
+		int combined = (chunk.getBlockTypeId(x, y, z) & 0xFFF) | (chunk.getBlockData(x, y, z) << 12);
+		int color = COLORS[combined];
+		if (color == 0) {
+			IBlockData data = Block.getByCombinedId(combined);
+			color = data.getBlock().g(data).M + 1;
+			COLORS[combined] = (byte) color;
+		}
+		return color - 1;
+	}
+
+	private static boolean liquid(int id) {
+		id &= 0xFFF;
+		int liquid = LIQUIDS[id];
+		if (liquid == 0) {
+			liquid = Block.getById(id).getMaterial().isLiquid() ? 1 : 2;
+			LIQUIDS[id] = (byte) liquid;
+		}
+		return liquid == 1;
+	}
+
 	// most of this code is decompiled and extracted from the minecraft server
-	// I have not yet bothered to try to understand it completely. Most of this is
-	// difficult to read because of the decompiler used.
-	@SuppressWarnings({"unchecked", "ConstantConditions"})
-	public static boolean updateSection(MapInternals.PreparedMapSection section, org.bukkit.World bukkitWorld,
+	// I have not yet bothered to try to understand it completely. It has been changed
+	// to read from chunk snapshots, and to count map colors in an array instead of a multiset.
+	public static boolean renderSection(byte[] colors, org.bukkit.World bukkitWorld, MapInternals.ChunkSource chunks,
 	                                    int centerX, int centerZ,  int updateX, int updateZ, int scale) {
 
 		World world = ((CraftWorld) bukkitWorld).getHandle();
+		boolean noSky = world.worldProvider.o();
+
+		int[] counters = COUNTERS.get();
 
 		boolean updated = false;
 
@@ -32,125 +71,116 @@ public class ChunkMapper {
 		// update/render radius
 		int renderRadius = 128 / blockAmount;
 
-		// I have no idea
-		if(world.worldProvider.o()) {
+		if (noSky) {
 			renderRadius /= 2;
 		}
 
-		// yeah... I have no idea what the rest of this does, other than iterate through the
-		// section area.
-		for(int k1 = translatedX - renderRadius + 1; k1 < translatedX + renderRadius; ++k1) {
+		for (int k1 = translatedX - renderRadius + 1; k1 < translatedX + renderRadius; ++k1) {
 
-			// this variable in particular is confusing.
+			// height of the previous pixel, used for shading
 			double d0 = 0.0D;
 
-			for(int l1 = translatedZ - renderRadius - 1; l1 < translatedZ + renderRadius; ++l1) {
-				if(k1 >= 0 && l1 >= -1 && k1 < 128 && l1 < 128) {
+			for (int l1 = translatedZ - renderRadius - 1; l1 < translatedZ + renderRadius; ++l1) {
+				if (k1 >= 0 && l1 >= -1 && k1 < 128 && l1 < 128) {
 					int i2 = k1 - translatedX;
 					int j2 = l1 - translatedZ;
 					boolean flag1 = i2 * i2 + j2 * j2 > (renderRadius - 2) * (renderRadius - 2);
 					int k2 = (centerX / blockAmount + k1 - 64) * blockAmount;
 					int l2 = (centerZ / blockAmount + l1 - 64) * blockAmount;
-					HashMultiset hashmultiset = HashMultiset.create();
-					Chunk chunk = world.getChunkAt(k2 >> 4, l2 >> 4);
 
-					if (chunk.isEmpty()) {
-						world.getWorld().loadChunk(k2 >> 4, l2 >> 4, false);
-						chunk = world.getChunkAt(k2 >> 4, l2 >> 4);
-					}
+					// we never load chunks, unloaded areas are left as they are
+					ChunkSnapshot chunk = chunks.getChunk(k2 >> 4, l2 >> 4);
+					if (chunk == null)
+						continue;
+
+					Arrays.fill(counters, 0);
+					int best = AIR_COLOR;
 
 					int i3 = k2 & 15;
 					int j3 = l2 & 15;
 					int k3 = 0;
 					double d1 = 0.0D;
-					if(world.worldProvider.o()) {
+					if (noSky) {
 						int blockPosition = k2 + l2 * 231871;
 						blockPosition = blockPosition * blockPosition * 31287121 + blockPosition * 11;
-						if((blockPosition >> 20 & 1) == 0) {
-							hashmultiset.add(Blocks.DIRT.g(Blocks.DIRT.getBlockData().set(BlockDirt.VARIANT, BlockDirt.EnumDirtVariant.DIRT)), 10);
+						if ((blockPosition >> 20 & 1) == 0) {
+							best = DIRT_COLOR;
 						} else {
-							hashmultiset.add(Blocks.STONE.g(Blocks.STONE.getBlockData().set(BlockStone.VARIANT, BlockStone.EnumStoneVariant.STONE)), 100);
+							best = STONE_COLOR;
 						}
 
 						d1 = 100.0D;
 					} else {
-						BlockPosition.MutableBlockPosition var37 = new BlockPosition.MutableBlockPosition();
-
-						for(int i4 = 0; i4 < blockAmount; ++i4) {
-							for(int b0 = 0; b0 < blockAmount; ++b0) {
-								int height = chunk.b(i4 + i3, b0 + j3) + 1;
-								IBlockData b1 = Blocks.AIR.getBlockData();
-								if(height > 1) {
+						for (int i4 = 0; i4 < blockAmount; ++i4) {
+							for (int b0 = 0; b0 < blockAmount; ++b0) {
+								int height = chunk.getHighestBlockYAt(i4 + i3, b0 + j3) + 1;
+								int color = AIR_COLOR;
+								if (height > 1) {
 									do {
 										--height;
-										b1 = chunk.getBlockData(var37.c(i4 + i3, height, b0 + j3));
-									} while(b1.getBlock().g(b1) == MaterialMapColor.b && height > 0);
+										color = color(chunk, i4 + i3, height, b0 + j3);
+									} while (color == AIR_COLOR && height > 0);
 
-									if(height > 0 && b1.getBlock().getMaterial().isLiquid()) {
+									if (height > 0 && liquid(chunk.getBlockTypeId(i4 + i3, height, b0 + j3))) {
 										int b2 = height - 1;
 
-										Block block;
+										int block;
 										do {
-											block = chunk.getTypeAbs(i4 + i3, b2--, b0 + j3);
+											block = chunk.getBlockTypeId(i4 + i3, b2--, b0 + j3);
 											++k3;
-										} while(b2 > 0 && block.getMaterial().isLiquid());
+										} while (b2 > 0 && liquid(block));
 									}
 								}
 
-								d1 += (double)height / (double)(blockAmount * blockAmount);
-								hashmultiset.add(b1.getBlock().g(b1));
+								d1 += (double) height / (double) (blockAmount * blockAmount);
+								// the most common color wins, ties go to the color that was seen first
+								if (++counters[color] > counters[best])
+									best = color;
 							}
 						}
 					}
 
 					k3 /= blockAmount * blockAmount;
-					double d2 = (d1 - d0) * 4.0D / (double)(blockAmount + 4) + ((double)(k1 + l1 & 1) - 0.5D) * 0.4D;
+					double d2 = (d1 - d0) * 4.0D / (double) (blockAmount + 4) + ((double) (k1 + l1 & 1) - 0.5D) * 0.4D;
 					byte var38 = 1;
-					if(d2 > 0.6D) {
+					if (d2 > 0.6D) {
 						var38 = 2;
 					}
 
-					if(d2 < -0.6D) {
+					if (d2 < -0.6D) {
 						var38 = 0;
 					}
 
-					MaterialMapColor var39 = Iterables.getFirst(Multisets.copyHighestCountFirst(hashmultiset), MaterialMapColor.b);
-					if(var39 == MaterialMapColor.n) {
-						d2 = (double)k3 * 0.1D + (double)(k1 + l1 & 1) * 0.2D;
+					if (best == WATER_COLOR) {
+						d2 = (double) k3 * 0.1D + (double) (k1 + l1 & 1) * 0.2D;
 						var38 = 1;
-						if(d2 < 0.5D) {
+						if (d2 < 0.5D) {
 							var38 = 2;
 						}
 
-						if(d2 > 0.9D) {
+						if (d2 > 0.9D) {
 							var38 = 0;
 						}
 					}
 
 					d0 = d1;
 					// this check (with flag1) is used to create the pixel outline for the renders
-					if(l1 >= 0 && i2 * i2 + j2 * j2 < renderRadius * renderRadius && (!flag1 || (k1 + l1 & 1) != 0)) {
-						synchronized (section.LOCK) {
-
-							// sample color from this section
-							byte var40 = section.colors[k1 + l1 * 128];
-							assert var39 != null;
+					if (l1 >= 0 && i2 * i2 + j2 * j2 < renderRadius * renderRadius && (!flag1 || (k1 + l1 & 1) != 0)) {
 
-							// get color
-							byte var41 = (byte) (var39.M * 4 + var38);
+						// get color
+						byte var41 = (byte) (best * 4 + var38);
 
-							// if this color corresponds to unexplored space, even though
-							// it's in our radius, then there's no blocks at this position!
+						// if this color corresponds to unexplored space, even though
+						// it's in our radius, then there's no blocks at this position!
 
-							// I add a special pattern for missing blocks/unloaded chunks
-							if (var41 >= 0 && var41 <= 3)
-								var41 = (byte) ((k1 + l1 & 1) != 0 ? 44 : 46);
+						// I add a special pattern for missing blocks/unloaded chunks
+						if (var41 >= 0 && var41 <= 3)
+							var41 = (byte) ((k1 + l1 & 1) != 0 ? 44 : 46);
 
-							// if the color is different than the sampled color, add an update flag
-							if (var40 != var41) {
-								section.colors[k1 + l1 * 128] = var41;
-								updated = true;
-							}
+						// if the color is different than the sampled color, add an update flag
+						if (colors[k1 + l1 * 128] != var41) {
+							colors[k1 + l1 * 128] = var41;
+							updated = true;
 						}
 					}
 				}
@@ -1,6 +1,7 @@
 package ca.jarcode.consoles.v1_8_R3;
 
 import ca.jarcode.consoles.api.nms.ClientConnection;
+import io.netty.channel.Channel;
 import net.minecraft.server.v1_8_R3.Packet;
 import net.minecraft.server.v1_8_R3.PlayerConnection;
 import org.bukkit.craftbukkit.v1_8_R3.entity.CraftPlayer;
@@ -18,4 +19,8 @@ public class ConnectionWrapper implements ClientConnection {
 	public void sendPacket(Object packet) {
 		handle.sendPacket((Packet) packet);
 	}
+
+	Channel channel() {
+		return handle.networkManager.channel;
+	}
 }